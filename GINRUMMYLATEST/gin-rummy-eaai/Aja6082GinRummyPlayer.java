@@ -34,97 +34,6 @@ Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
  */
 public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 
-	static class state{
-		//State data
-		//The current state:
-		static int turn;
-		//No. of cards remaining in face-down deck:
-		static int remainingDeck;
-		//The top card of the discard pile:
-		static Card faceUp;
-		//List containing seen cards:
-		static ArrayList<Card> seen = new ArrayList<>();
-		//List of cards that were seen and the opponent drew:
-		static ArrayList<Card> opponentCards = new ArrayList<>();
-		//List of cards that the opponent discarded:
-		static ArrayList<Card> opponentDiscards = new ArrayList<>();
-
-		//State setters
-		static void increaseTurn(){
-			turn++;
-		}
-
-		static void setTurn(int val){
-			turn = val;
-		}
-
-		static void setRemainingDeck(int val){
-			remainingDeck = val;
-		}
-
-		static void decreaseRemainingDeck(){
-			remainingDeck--;
-		}
-
-		static void increaseRemainingDeck(){
-			remainingDeck++;
-		}
-
-		static void setFaceUp(Card card){
-			faceUp = card;
-		}
-
-		static void addSeen(Card seenCard){
-			seen.add(seenCard);
-		}
-
-		static void addOpponentCard(Card opponentCard){
-			opponentCards.add(opponentCard);
-		}
-
-		static void removeOpponentCard(Card opponentCard){
-			opponentCards.remove(opponentCard);
-		}
-
-		static void addOpponentDiscard(Card opponentCard){
-			opponentDiscards.add(opponentCard);
-		}
-
-		//Method to reset all values at the end of a round
-		static void reset(){
-			setTurn(0);
-			setRemainingDeck(52);
-			seen.clear();
-			opponentCards.clear();
-			opponentDiscards.clear();
-		}
-
-		//State getters
-		static int getTurn(){
-			return turn;
-		}
-
-		static int getRemainingDeck(){
-			return remainingDeck;
-		}
-
-		static Card getFaceUp(){
-			return faceUp;
-		}
-
-		static ArrayList<Card> getSeen(){
-			return seen;
-		}
-
-		static ArrayList<Card> getOpponentCards(){
-			return opponentCards;
-		}
-
-		static ArrayList<Card> getOpponentDiscards(){
-			return opponentDiscards;
-		}
-	}
-
 	protected int playerNum;
 	@SuppressWarnings("unused")
 	protected int startingPlayerNum;
@@ -133,17 +42,23 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 	protected boolean opponentKnocked = false;
 	Card faceUpCard, drawnCard;
 	ArrayList<Long> drawDiscardBitstrings = new ArrayList<Long>();
+	//What this player has learned about the current round
+	protected PlayerKnowledge knowledge = new PlayerKnowledge();
+	//Melds of the current hand, kept up to date on every draw and discard
+	protected IncrementalHandEvaluator evaluator = new IncrementalHandEvaluator();
+	//Probabilities of the cards in the opponent's hand, kept up to date on every draw and discard
+	protected OpponentModel opponentModel = new OpponentModel();
 
 	@Override
 	public void startGame(int playerNum, int startingPlayerNum, Card[] cards){
 		ArrayList<Card> sampleCards = new ArrayList<>();
 		//Initialize state of the game with turn = 0
-		state.setTurn(0);
+		knowledge.setTurn(0);
 		//Initialize deckRemaining with 32, since both players get 20 cards
-		state.setRemainingDeck(32);
+		knowledge.setRemainingDeck(32);
 		for(Card card: cards){
 			//Initialize seen cards with the bot's hand
-			state.addSeen(card);
+			knowledge.addSeen(card);
 		}
 		this.playerNum = playerNum;
 		this.startingPlayerNum = startingPlayerNum;
@@ -152,21 +67,16 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 			this.cards.add(card);
 
 		}
+		evaluator.set(this.cards);
+		opponentModel.startRound(playerNum, evaluator.getHandBitstring());
 		opponentKnocked = false;
 		drawDiscardBitstrings.clear();
-		System.out.println(GinRummyUtil.cardsToBestMeldSets(state.getSeen()));
 	}
 
 	@Override
 	public boolean willDrawFaceUpCard(Card card) {
 		// Return true if card would be a part of a meld, false otherwise.
-		if(state.getTurn() == 0){
-			//Not sure about this
-			state.setFaceUp(card);
-			state.addSeen(card);
-			state.decreaseRemainingDeck();
-		}
-		this.faceUpCard = card;
+		observeFaceUpCard(card);
 		//Check whether this card would give a significant drop in deadwood
 		int deadwoodDrop = MyGinRummyUtil.checkMeldAndDeadwoodDrop(cards, card);
 
@@ -184,25 +94,45 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 //		return false;
 	}
 
+	//Record the face-up card offered to this player; the first one of the round is also removed from the deck
+	protected void observeFaceUpCard(Card card) {
+		if(knowledge.getTurn() == 0){
+			//Not sure about this
+			knowledge.setFaceUp(card);
+			knowledge.addSeen(card);
+			knowledge.decreaseRemainingDeck();
+			opponentModel.setInitialFaceUpCard(card.getId());
+			//The non-starter offered the initial card before the opponent discarded knows the opponent declined it
+			if(playerNum != startingPlayerNum && knowledge.getOpponentDiscardsBitstring() == 0L)
+				opponentModel.opponentDeclined(card.getId());
+		}
+		this.faceUpCard = card;
+	}
+
 	@Override
 	public void reportDraw(int playerNum, Card drawnCard) {
+		//The starter drawing face down before any discard declined the initial card, and so did the opponent
+		if(playerNum == this.playerNum && playerNum == startingPlayerNum && knowledge.getTurn() == 0
+				&& knowledge.getOpponentDiscardsBitstring() == 0L && drawnCard != faceUpCard)
+			opponentModel.opponentDeclined(faceUpCard.getId());
+		opponentModel.reportDraw(playerNum, drawnCard == null ? -1 : drawnCard.getId());
 		// Ignore other player draws.  Add to cards if playerNum is this player.
 		if (playerNum == this.playerNum) {
 			cards.add(drawnCard);
+			evaluator.add(drawnCard);
 			this.drawnCard = drawnCard;
-			state.addSeen(drawnCard);
+			knowledge.addSeen(drawnCard);
 		}
 		else{
 			if(drawnCard == null)
-				state.decreaseRemainingDeck();
+				knowledge.decreaseRemainingDeck();
 			else {
-				state.addOpponentCard(drawnCard);
-				state.addSeen(drawnCard);
+				knowledge.addOpponentCard(drawnCard);
+				knowledge.addSeen(drawnCard);
 			}
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public Card getDiscard() {
 		//This method essentially decides which card would be the best discard
@@ -210,20 +140,10 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 		int minDeadwood = Integer.MAX_VALUE;
 		ArrayList<Card> candidateCards = new ArrayList<Card>();
 		for (Card card : cards) {
-			// Cannot draw and discard face up card.
-			if (card == drawnCard && drawnCard == faceUpCard)
-				continue;
-			// Disallow repeat of draw and discard.
-			ArrayList<Card> drawDiscard = new ArrayList<Card>();
-			drawDiscard.add(drawnCard);
-			drawDiscard.add(card);
-			if (drawDiscardBitstrings.contains(GinRummyUtil.cardsToBitstring(drawDiscard)))
+			if (!isLegalDiscard(card))
 				continue;
 
-			ArrayList<Card> remainingCards = (ArrayList<Card>) cards.clone();
-			remainingCards.remove(card);
-			ArrayList<ArrayList<ArrayList<Card>>> bestMeldSets = GinRummyUtil.cardsToBestMeldSets(remainingCards);
-			int deadwood = bestMeldSets.isEmpty() ? GinRummyUtil.getDeadwoodPoints(remainingCards) : GinRummyUtil.getDeadwoodPoints(bestMeldSets.get(0), remainingCards);
+			int deadwood = evaluator.getBestDeadwoodAfterDiscard(card);
 			if (deadwood <= minDeadwood) {
 				if (deadwood < minDeadwood) {
 					minDeadwood = deadwood;
@@ -263,7 +183,7 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 		if(singles.isEmpty()){
 			temp = candidateCards.get(0);
 			for(Card candidate: candidateCards){
-				if(candidate.getRank() > temp.getRank())
+				if(candidate.getRank() > temp.getRank() || candidate.getRank() == temp.getRank() && isSaferDiscard(candidate, temp))
 					temp = candidate;
 			}
 		}
@@ -271,35 +191,58 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 		else{
 			temp = singles.get(0);
 			for(Card single: singles){
-				if(single.getRank() > temp.getRank())
+				if(single.getRank() > temp.getRank() || single.getRank() == temp.getRank() && isSaferDiscard(single, temp))
 					temp = single;
 			}
 		}
 
 
 		Card discard = temp;
-		// Prevent future repeat of draw, discard pair.
+		recordDrawDiscard(discard);
+		return discard;
+	}
+
+	//Whether the opponent is less likely to meld the card than the other card
+	protected boolean isSaferDiscard(Card card, Card other) {
+		return opponentModel.getMeldProbability(card.getId()) < opponentModel.getMeldProbability(other.getId());
+	}
+
+	//Whether the card may be discarded after the last draw
+	protected boolean isLegalDiscard(Card card) {
+		// Cannot draw and discard face up card.
+		if (card == drawnCard && drawnCard == faceUpCard)
+			return false;
+		// Disallow repeat of draw and discard.
+		ArrayList<Card> drawDiscard = new ArrayList<Card>();
+		drawDiscard.add(drawnCard);
+		drawDiscard.add(card);
+		return !drawDiscardBitstrings.contains(GinRummyUtil.cardsToBitstring(drawDiscard));
+	}
+
+	//Prevent future repeat of the draw, discard pair.
+	protected void recordDrawDiscard(Card discard) {
 		ArrayList<Card> drawDiscard = new ArrayList<Card>();
 		drawDiscard.add(drawnCard);
 		drawDiscard.add(discard);
 		drawDiscardBitstrings.add(GinRummyUtil.cardsToBitstring(drawDiscard));
-		return discard;
 	}
 
 	@Override
 	public void reportDiscard(int playerNum, Card discardedCard) {
+		opponentModel.reportDiscard(playerNum, discardedCard.getId());
 		// Ignore other player discards.  Remove from cards if playerNum is this player.
 		if (playerNum == this.playerNum) {
 			cards.remove(discardedCard);
+			evaluator.remove(discardedCard);
 			//Increase turn after this bot discards
-			state.increaseTurn();
-			state.setFaceUp(discardedCard);
+			knowledge.increaseTurn();
+			knowledge.setFaceUp(discardedCard);
 		}
 		else{//if opponent discards:
-			state.setFaceUp(discardedCard);
-			state.removeOpponentCard(discardedCard);
-			state.addOpponentDiscard(discardedCard);
-			state.addSeen(discardedCard);
+			knowledge.setFaceUp(discardedCard);
+			knowledge.removeOpponentCard(discardedCard);
+			knowledge.addOpponentDiscard(discardedCard);
+			knowledge.addSeen(discardedCard);
 		}
 	}
 
@@ -315,7 +258,7 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 	@Override
 	public void reportFinalMelds(int playerNum, ArrayList<ArrayList<Card>> melds) {
 		// Melds ignored by simple player, but could affect which melds to make for complex player.
-		state.reset();
+		knowledge.reset();
 		if (playerNum != this.playerNum)
 			opponentKnocked = true;
 
@@ -336,7 +279,7 @@ public class Aja6082GinRummyPlayer implements GinRummyPlayer {
 	@Override
 	public void reportFinalHand(int playerNum, ArrayList<Card> hand) {
 		// Ignored by simple player, but could affect strategy of more complex player.
-		state.reset();
+		knowledge.reset();
 	}
 
 }
@@ -0,0 +1,240 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache from hand bitstrings to best deadwood points, used by GinRummyUtil.getBestDeadwood.
+ *
+ * The cache is an open-addressing hash table of primitive longs.  Since a hand bitstring only uses the
+ * low Card.NUM_CARDS bits, each entry packs the hand bitstring and its deadwood points into a single long,
+ * so lookups never box and an entry can never be read half-written.  A cached value is a pure function of
+ * its key, so a cache may be shared by any number of threads without locking: a racing write or eviction
+ * can only lose an entry, never make one wrong.
+ *
+ * When all slots probed for a new entry are in use, the cache either replaces the entry in the first
+ * probed slot (Eviction.REPLACE) or empties the whole table (Eviction.CLEAR).
+ */
+public class DeadwoodCache {
+	/**
+	 * Policies for making room when all probed slots are in use
+	 */
+	public enum Eviction {
+		/** replace the entry in the first probed slot */
+		REPLACE,
+		/** empty the whole table */
+		CLEAR
+	}
+
+	/**
+	 * Default number of entries
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	/**
+	 * Maximum number of slots probed for a key
+	 */
+	private static final int MAX_PROBES = 8;
+	/**
+	 * Mask of the hand bitstring bits of an entry
+	 */
+	private static final long KEY_MASK = (1L << Card.NUM_CARDS) - 1;
+	/**
+	 * Access to table slots with single-copy atomicity for sharing across threads
+	 */
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+	/**
+	 * Hash table of entries, each the hand bitstring with the deadwood points plus one in the bits above it.  0L marks an empty slot.
+	 */
+	private final long[] table;
+	/**
+	 * Number of bits of a slot index
+	 */
+	private final int indexBits;
+	/**
+	 * Policy for making room for new entries
+	 */
+	private final Eviction eviction;
+	/**
+	 * Whether or not the cache is intended to be used by multiple threads
+	 */
+	private final boolean shared;
+	/**
+	 * Hit and miss counters of an unshared cache
+	 */
+	private long hits, misses;
+	/**
+	 * Hit and miss counters of a shared cache
+	 */
+	private final LongAdder sharedHits, sharedMisses;
+
+	/**
+	 * Create an unshared cache of the given capacity replacing entries when full.
+	 * @param capacity number of entries, rounded up to a power of two
+	 */
+	public DeadwoodCache(int capacity) {
+		this(capacity, Eviction.REPLACE, false);
+	}
+
+	/**
+	 * Create a cache of the given capacity.
+	 * @param capacity number of entries, rounded up to a power of two
+	 * @param eviction policy for making room for new entries
+	 * @param shared whether or not the cache will be used by multiple threads
+	 */
+	public DeadwoodCache(int capacity, Eviction eviction, boolean shared) {
+		if (capacity < 2 || capacity > 1 << 30)
+			throw new IllegalArgumentException("capacity out of range: " + capacity);
+		indexBits = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+		table = new long[1 << indexBits];
+		this.eviction = eviction;
+		this.shared = shared;
+		sharedHits = shared ? new LongAdder() : null;
+		sharedMisses = shared ? new LongAdder() : null;
+	}
+
+	/**
+	 * Return the cached best deadwood points for a hand bitstring, or -1 if not cached.
+	 * @param handBitstring card set bitstring of the hand
+	 * @return the cached best deadwood points, or -1 if not cached
+	 */
+	public int get(long handBitstring) {
+		int index = homeIndex(handBitstring);
+		for (int probe = 0; probe < MAX_PROBES; probe++) {
+			long entry = (long) SLOT.getOpaque(table, index);
+			if (entry == 0L)
+				break;
+			if ((entry & KEY_MASK) == handBitstring) {
+				countHit();
+				return (int) (entry >>> Card.NUM_CARDS) - 1;
+			}
+			index = (index + 1) & (table.length - 1);
+		}
+		countMiss();
+		return -1;
+	}
+
+	/**
+	 * Cache the best deadwood points of a hand bitstring.
+	 * @param handBitstring card set bitstring of the hand
+	 * @param deadwood best deadwood points of the hand
+	 */
+	public void put(long handBitstring, int deadwood) {
+		long entry = handBitstring | (long) (deadwood + 1) << Card.NUM_CARDS;
+		int home = homeIndex(handBitstring);
+		int index = home;
+		for (int probe = 0; probe < MAX_PROBES; probe++) {
+			long oldEntry = (long) SLOT.getOpaque(table, index);
+			if (oldEntry == 0L || (oldEntry & KEY_MASK) == handBitstring) {
+				SLOT.setOpaque(table, index, entry);
+				return;
+			}
+			index = (index + 1) & (table.length - 1);
+		}
+		if (eviction == Eviction.CLEAR)
+			Arrays.fill(table, 0L);
+		SLOT.setOpaque(table, home, entry);
+	}
+
+	/**
+	 * Remove all entries.  Statistics are kept.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0L);
+	}
+
+	/**
+	 * Return the number of entries the cache can hold.
+	 * @return the number of entries the cache can hold
+	 */
+	public int getCapacity() {
+		return table.length;
+	}
+
+	/**
+	 * Return the number of cached entries.  This scans the whole table.
+	 * @return the number of cached entries
+	 */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < table.length; i++)
+			if ((long) SLOT.getOpaque(table, i) != 0L)
+				size++;
+		return size;
+	}
+
+	/**
+	 * Return whether or not the cache is intended to be used by multiple threads.
+	 * @return whether or not the cache is intended to be used by multiple threads
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * Return the number of lookups that found a cached value.
+	 * @return the number of lookups that found a cached value
+	 */
+	public long getHits() {
+		return shared ? sharedHits.sum() : hits;
+	}
+
+	/**
+	 * Return the number of lookups that found no cached value.
+	 * @return the number of lookups that found no cached value
+	 */
+	public long getMisses() {
+		return shared ? sharedMisses.sum() : misses;
+	}
+
+	/**
+	 * Return the fraction of lookups that found a cached value, or 0 if there were no lookups.
+	 * @return the fraction of lookups that found a cached value
+	 */
+	public double getHitRate() {
+		long hits = getHits(), lookups = hits + getMisses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Reset hit and miss counters to zero.
+	 */
+	public void resetStatistics() {
+		if (shared) {
+			sharedHits.reset();
+			sharedMisses.reset();
+		}
+		else
+			hits = misses = 0;
+	}
+
+	private void countHit() {
+		if (shared)
+			sharedHits.increment();
+		else
+			hits++;
+	}
+
+	private void countMiss() {
+		if (shared)
+			sharedMisses.increment();
+		else
+			misses++;
+	}
+
+	/**
+	 * Return the first slot probed for a hand bitstring (Fibonacci hashing).
+	 * @param handBitstring card set bitstring of the hand
+	 * @return the first slot probed for the hand bitstring
+	 */
+	private int homeIndex(long handBitstring) {
+		return (int) ((handBitstring * 0x9E3779B97F4A7C15L) >>> (64 - indexBits));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return String.format("DeadwoodCache[capacity=%d, hits=%d, misses=%d, hitRate=%.3f]", getCapacity(), getHits(), getMisses(), getHitRate());
+	}
+}
@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only table of the best deadwood of every 10-card hand drawn from a fixed set of cards (the universe),
+ * memory-mapped from a file written by DeadwoodTableGenerator.
+ *
+ * A hand is indexed by its rank in the combinatorial number system: with the universe cards numbered 0, 1, ...
+ * in increasing card id order and the hand's cards at universe positions c1 &lt; c2 &lt; ... &lt; c10, the rank is
+ * C(c1, 1) + C(c2, 2) + ... + C(c10, 10).  Ranks are dense, so every hand has exactly one byte holding its best
+ * deadwood and no keys are stored.  Lookups compute the rank with a precomputed binomial table and read one
+ * byte of the mapped file, allocating nothing.  Hands that are not 10-card hands of the universe are solved
+ * by GinRummyUtil.getBestDeadwood.
+ *
+ * The universe of all 52 cards has C(52, 10) = 15,820,024,220 hands, a table of 15.8 GB mapped in 1 GB segments;
+ * universes of the lowest ranks of all suits make much smaller tables (e.g. 13,123,110 bytes for ranks A-7).
+ *
+ * File format (big-endian): int magic "GRDW", int version, int hand size, int reserved, long universe bitstring,
+ * long number of entries, then one byte per hand in rank order.
+ */
+public class DeadwoodTable {
+
+	/**
+	 * File magic number ("GRDW") and format version
+	 */
+	public static final int MAGIC = 0x47524457, VERSION = 1;
+
+	/**
+	 * Number of cards in the hands of the table
+	 */
+	public static final int HAND_SIZE = 10;
+
+	/**
+	 * Size of the file header in bytes
+	 */
+	public static final int HEADER_SIZE = 32;
+
+	/**
+	 * Number of entries per mapped segment (1 GB)
+	 */
+	static final long SEGMENT_SIZE = 1L << 30;
+
+	/**
+	 * Binomial coefficients C(n, k) for n up to 52 and k up to HAND_SIZE
+	 */
+	static final long[][] BINOMIAL = new long[Card.NUM_CARDS + 1][HAND_SIZE + 1];
+
+	static {
+		for (int n = 0; n <= Card.NUM_CARDS; n++) {
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= Math.min(n, HAND_SIZE); k++)
+				BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k < n ? BINOMIAL[n - 1][k] : 0);
+		}
+	}
+
+	/**
+	 * Return the bitstring of the cards of the given number of lowest ranks (starting with ace) in all suits.
+	 * @param numRanks number of ranks (1 - 13)
+	 * @return the bitstring of the cards of the lowest ranks
+	 */
+	public static long lowRanksUniverse(int numRanks) {
+		if (numRanks < 1 || numRanks > Card.NUM_RANKS)
+			throw new IllegalArgumentException("number of ranks must be between 1 and " + Card.NUM_RANKS + ": " + numRanks);
+		long suitRanks = (1L << numRanks) - 1, universe = 0L;
+		for (int suit = 0; suit < Card.NUM_SUITS; suit++)
+			universe |= suitRanks << (suit * Card.NUM_RANKS);
+		return universe;
+	}
+
+	/**
+	 * Return the number of 10-card hands drawn from the given universe, i.e. the number of table entries.
+	 * @param universe bitstring of the universe cards
+	 * @return the number of 10-card hands drawn from the universe
+	 */
+	public static long getNumHands(long universe) {
+		return BINOMIAL[Long.bitCount(universe)][HAND_SIZE];
+	}
+
+	/**
+	 * Bitstring of the cards of the universe
+	 */
+	private final long universe;
+
+	/**
+	 * Position of each card in the universe, indexed by card id number, or -1 for cards outside the universe
+	 */
+	private final int[] positions = new int[Card.NUM_CARDS];
+
+	/**
+	 * Number of entries
+	 */
+	private final long numHands;
+
+	/**
+	 * Mapped segments of SEGMENT_SIZE entries (the last possibly shorter)
+	 */
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * Map the table of the given file.
+	 * @param file table file written by DeadwoodTableGenerator
+	 * @throws IOException if the file cannot be read or is not a table file
+	 */
+	public DeadwoodTable(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+			while (header.hasRemaining())
+				if (channel.read(header, header.position()) < 0)
+					throw new IOException("truncated deadwood table header: " + file);
+			header.flip();
+			if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != HAND_SIZE)
+				throw new IOException("not a deadwood table of version " + VERSION + ": " + file);
+			header.getInt();
+			universe = header.getLong();
+			numHands = header.getLong();
+			if (numHands != getNumHands(universe) || channel.size() < HEADER_SIZE + numHands)
+				throw new IOException("inconsistent deadwood table size: " + file);
+			segments = new MappedByteBuffer[(int) ((numHands + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+			for (int s = 0; s < segments.length; s++) {
+				long start = s * SEGMENT_SIZE;
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start, Math.min(SEGMENT_SIZE, numHands - start));
+			}
+		}
+		int position = 0;
+		for (int id = 0; id < Card.NUM_CARDS; id++)
+			positions[id] = (universe & 1L << id) != 0L ? position++ : -1;
+	}
+
+	/**
+	 * Return the bitstring of the cards of the universe.
+	 * @return the bitstring of the cards of the universe
+	 */
+	public long getUniverse() {
+		return universe;
+	}
+
+	/**
+	 * Return the number of entries of the table.
+	 * @return the number of entries of the table
+	 */
+	public long getNumHands() {
+		return numHands;
+	}
+
+	/**
+	 * Return whether or not the given hand has an entry in the table.
+	 * @param handBitstring card set bitstring of the hand
+	 * @return whether or not the hand is a 10-card hand of the universe
+	 */
+	public boolean contains(long handBitstring) {
+		return Long.bitCount(handBitstring) == HAND_SIZE && (handBitstring & ~universe) == 0L;
+	}
+
+	/**
+	 * Return the combinatorial rank of a 10-card hand of the universe.
+	 * @param handBitstring card set bitstring of a 10-card hand of the universe
+	 * @return the combinatorial rank of the hand
+	 */
+	public long rank(long handBitstring) {
+		long rank = 0;
+		int k = 1;
+		for (long cards = handBitstring; cards != 0L; cards &= cards - 1)
+			rank += BINOMIAL[positions[Long.numberOfTrailingZeros(cards)]][k++];
+		return rank;
+	}
+
+	/**
+	 * Return the minimum deadwood points of a hand, from the table if the hand has an entry, and from
+	 * GinRummyUtil.getBestDeadwood otherwise.
+	 * @param handBitstring card set bitstring of the hand
+	 * @return the minimum deadwood points for the hand
+	 */
+	public int getBestDeadwood(long handBitstring) {
+		if (!contains(handBitstring))
+			return GinRummyUtil.getBestDeadwood(handBitstring);
+		long rank = rank(handBitstring);
+		return segments[(int) (rank / SEGMENT_SIZE)].get((int) (rank % SEGMENT_SIZE)) & 0xFF;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return String.format("DeadwoodTable[%d hands of %s]", numHands, GinRummyUtil.bitstringToCards(universe));
+	}
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Offline generator of DeadwoodTable files: computes the best deadwood of every 10-card hand of a universe of
+ * cards in parallel and writes it at the hand's combinatorial rank into a memory-mapped file.
+ *
+ * Ranks are split recursively on a ForkJoinPool until ranges are small enough.  Each range unranks its first hand
+ * and then steps through consecutive ranks with Gosper's hack on universe positions (the next larger integer with
+ * the same number of one bits is the hand of the next rank), so each hand costs one uncached solve
+ * (GinRummyUtil.computeBestDeadwood) and a few bitwise operations.
+ */
+public class DeadwoodTableGenerator {
+
+	/**
+	 * Number of ranks below which a range is not split further
+	 */
+	private static final long RANGE_SIZE = 1L << 16;
+
+	/**
+	 * Write the table of the given universe to the given file, replacing any existing file.
+	 * @param file table file
+	 * @param universe bitstring of the universe cards (at least 10)
+	 * @param parallelism number of threads
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void generate(Path file, long universe, int parallelism) throws IOException {
+		int numCards = Long.bitCount(universe);
+		if (numCards < DeadwoodTable.HAND_SIZE)
+			throw new IllegalArgumentException("universe must have at least " + DeadwoodTable.HAND_SIZE + " cards: " + numCards);
+		long numHands = DeadwoodTable.getNumHands(universe);
+		// universe card bitstrings indexed by universe position
+		long[] positionBits = new long[numCards];
+		int position = 0;
+		for (long cards = universe; cards != 0L; cards &= cards - 1)
+			positionBits[position++] = cards & -cards;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(DeadwoodTable.HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+			header.putInt(DeadwoodTable.MAGIC).putInt(DeadwoodTable.VERSION).putInt(DeadwoodTable.HAND_SIZE).putInt(0);
+			header.putLong(universe).putLong(numHands).flip();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				for (long start = 0; start < numHands; start += DeadwoodTable.SEGMENT_SIZE) {
+					long end = Math.min(numHands, start + DeadwoodTable.SEGMENT_SIZE);
+					MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, DeadwoodTable.HEADER_SIZE + start, end - start);
+					pool.invoke(new RangeTask(segment, start, start, end, positionBits));
+					segment.force();
+				}
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Return the bitstring of universe positions of the hand of the given rank, i.e. the rank-th 10-subset
+	 * of positions in colexicographic order.
+	 * @param rank combinatorial rank
+	 * @param numCards number of universe cards
+	 * @return the bitstring of universe positions of the hand
+	 */
+	static long unrank(long rank, int numCards) {
+		long positions = 0L;
+		int n = numCards;
+		for (int k = DeadwoodTable.HAND_SIZE; k >= 1; k--) {
+			// largest position c with C(c, k) <= rank
+			do
+				n--;
+			while (DeadwoodTable.BINOMIAL[n][k] > rank);
+			positions |= 1L << n;
+			rank -= DeadwoodTable.BINOMIAL[n][k];
+		}
+		return positions;
+	}
+
+	/**
+	 * Task computing the entries of a range of ranks within one mapped segment
+	 */
+	private static class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final MappedByteBuffer segment;
+		private final long segmentStart, start, end;
+		private final long[] positionBits;
+
+		RangeTask(MappedByteBuffer segment, long segmentStart, long start, long end, long[] positionBits) {
+			this.segment = segment;
+			this.segmentStart = segmentStart;
+			this.start = start;
+			this.end = end;
+			this.positionBits = positionBits;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > RANGE_SIZE) {
+				long middle = (start + end) >>> 1;
+				invokeAll(new RangeTask(segment, segmentStart, start, middle, positionBits),
+						new RangeTask(segment, segmentStart, middle, end, positionBits));
+				return;
+			}
+			long positions = unrank(start, positionBits.length);
+			for (long rank = start; rank < end; rank++) {
+				long hand = 0L;
+				for (long bits = positions; bits != 0L; bits &= bits - 1)
+					hand |= positionBits[Long.numberOfTrailingZeros(bits)];
+				segment.put((int) (rank - segmentStart), (byte) GinRummyUtil.computeBestDeadwood(hand));
+				// Gosper's hack: next larger bitstring with the same number of one bits
+				long lowest = positions & -positions;
+				long ripple = positions + lowest;
+				positions = ripple | (((positions ^ ripple) >>> 2) / lowest);
+			}
+		}
+	}
+
+	/**
+	 * Generate a table file, then check it against the solver on random hands.
+	 * @param args table file, optional number of lowest ranks in the universe (default 7, i.e. ace to seven;
+	 * 13 for the full deck), optional number of threads (default: available processors)
+	 * @throws IOException if the file cannot be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: java DeadwoodTableGenerator <file> [numRanks] [threads]");
+			System.exit(1);
+		}
+		Path file = Paths.get(args[0]);
+		long universe = DeadwoodTable.lowRanksUniverse(args.length > 1 ? Integer.parseInt(args[1]) : 7);
+		int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long startNs = System.nanoTime();
+		generate(file, universe, parallelism);
+		long elapsedNs = System.nanoTime() - startNs;
+		DeadwoodTable table = new DeadwoodTable(file);
+		System.out.printf("%s generated in %d ms (%.0f hands/s).%n", table, elapsedNs / 1000000, table.getNumHands() * 1e9 / elapsedNs);
+		SplittableRandom random = new SplittableRandom(0);
+		long[] ids = new long[Long.bitCount(universe)];
+		int n = 0;
+		for (long cards = universe; cards != 0L; cards &= cards - 1)
+			ids[n++] = cards & -cards;
+		for (int i = 0; i < 100000; i++) {
+			long hand = 0L;
+			while (Long.bitCount(hand) < DeadwoodTable.HAND_SIZE)
+				hand |= ids[random.nextInt(n)];
+			if (table.getBestDeadwood(hand) != GinRummyUtil.computeBestDeadwood(hand))
+				throw new IllegalStateException("table mismatch for " + GinRummyUtil.bitstringToCards(hand));
+		}
+		System.out.println("100000 random hands match the solver.");
+	}
+}
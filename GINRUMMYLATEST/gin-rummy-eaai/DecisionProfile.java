@@ -0,0 +1,169 @@
+import java.util.Locale;
+
+/**
+ * Per-callback latency histograms (in nanoseconds) and allocated bytes of a player, recorded by an
+ * InstrumentedGinRummyPlayer.  Profiles of players of the same kind merge with add, so the profiles of all
+ * batches of a tournament can be combined and exported as CSV or JSON at the end.
+ *
+ * A profile is not thread-safe; each instrumented player records into its own profile.
+ */
+public class DecisionProfile {
+
+	/**
+	 * Callback numbers, in the order of the FastGinRummyPlayer interface
+	 */
+	public static final int START_GAME = 0, WILL_DRAW_FACE_UP_CARD = 1, REPORT_DRAW = 2, GET_DISCARD = 3, REPORT_DISCARD = 4,
+			GET_FINAL_MELDS = 5, REPORT_FINAL_MELDS = 6, REPORT_SCORES = 7, REPORT_LAYOFF = 8, REPORT_FINAL_HAND = 9;
+
+	/**
+	 * Callback names, indexed by callback number
+	 */
+	public static final String[] CALLBACK_NAMES = {"startGame", "willDrawFaceUpCard", "reportDraw", "getDiscard", "reportDiscard",
+			"getFinalMelds", "reportFinalMelds", "reportScores", "reportLayoff", "reportFinalHand"};
+
+	/**
+	 * Number of callbacks
+	 */
+	public static final int NUM_CALLBACKS = CALLBACK_NAMES.length;
+
+	/**
+	 * Latency histogram of each callback in nanoseconds
+	 */
+	private final LatencyHistogram[] latencies = new LatencyHistogram[NUM_CALLBACKS];
+
+	/**
+	 * Total bytes allocated by each callback (0 where allocation is not measured)
+	 */
+	private final long[] allocatedBytes = new long[NUM_CALLBACKS];
+
+	/**
+	 * Create an empty profile.
+	 */
+	public DecisionProfile() {
+		for (int i = 0; i < NUM_CALLBACKS; i++)
+			latencies[i] = new LatencyHistogram();
+	}
+
+	/**
+	 * Record one call of a callback.
+	 * @param callback callback number
+	 * @param latencyNs latency of the call in nanoseconds
+	 * @param bytes bytes allocated by the call, or -1 if not measured
+	 */
+	public void record(int callback, long latencyNs, long bytes) {
+		latencies[callback].record(latencyNs);
+		if (bytes >= 0)
+			allocatedBytes[callback] += bytes;
+	}
+
+	/**
+	 * Add the calls recorded in another profile to this one.
+	 * @param other other profile
+	 */
+	public void add(DecisionProfile other) {
+		for (int i = 0; i < NUM_CALLBACKS; i++) {
+			latencies[i].add(other.latencies[i]);
+			allocatedBytes[i] += other.allocatedBytes[i];
+		}
+	}
+
+	/**
+	 * Remove all recorded calls.
+	 */
+	public void reset() {
+		for (int i = 0; i < NUM_CALLBACKS; i++) {
+			latencies[i].reset();
+			allocatedBytes[i] = 0;
+		}
+	}
+
+	/**
+	 * Return the latency histogram of a callback in nanoseconds.
+	 * @param callback callback number
+	 * @return the latency histogram of the callback
+	 */
+	public LatencyHistogram getLatencies(int callback) {
+		return latencies[callback];
+	}
+
+	/**
+	 * Return the number of calls of a callback.
+	 * @param callback callback number
+	 * @return the number of calls of the callback
+	 */
+	public long getCount(int callback) {
+		return latencies[callback].getCount();
+	}
+
+	/**
+	 * Return the total bytes allocated by calls of a callback.
+	 * @param callback callback number
+	 * @return the total bytes allocated by calls of the callback
+	 */
+	public long getAllocatedBytes(int callback) {
+		return allocatedBytes[callback];
+	}
+
+	/**
+	 * Return the mean bytes allocated per call of a callback.
+	 * @param callback callback number
+	 * @return the mean bytes allocated per call of the callback
+	 */
+	public double getAllocatedBytesPerCall(int callback) {
+		long count = getCount(callback);
+		return count == 0 ? 0 : (double) allocatedBytes[callback] / count;
+	}
+
+	/**
+	 * Return the CSV header matching the rows of appendCsv.
+	 * @return the CSV header line, without line terminator
+	 */
+	public static String getCsvHeader() {
+		return "player,callback,count,mean_ns,p50_ns,p99_ns,max_ns,bytes_per_call";
+	}
+
+	/**
+	 * Append one CSV row per called callback to the given builder.
+	 * @param player player label of the rows
+	 * @param sb builder receiving the rows
+	 */
+	public void appendCsv(String player, StringBuilder sb) {
+		for (int i = 0; i < NUM_CALLBACKS; i++) {
+			LatencyHistogram h = latencies[i];
+			if (h.getCount() == 0)
+				continue;
+			sb.append(String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%d,%d,%.1f%n", player, CALLBACK_NAMES[i], h.getCount(), h.getMean(),
+					h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getMax(), getAllocatedBytesPerCall(i)));
+		}
+	}
+
+	/**
+	 * Return the profile as a JSON object keyed by callback name, omitting callbacks never called.
+	 * @return the profile as a JSON object
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < NUM_CALLBACKS; i++) {
+			LatencyHistogram h = latencies[i];
+			if (h.getCount() == 0)
+				continue;
+			if (sb.length() > 1)
+				sb.append(",");
+			sb.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"meanNs\":%.1f,\"p50Ns\":%d,\"p99Ns\":%d,\"maxNs\":%d,\"bytesPerCall\":%.1f}",
+					CALLBACK_NAMES[i], h.getCount(), h.getMean(), h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getMax(),
+					getAllocatedBytesPerCall(i)));
+		}
+		return sb.append("}").toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < NUM_CALLBACKS; i++)
+			if (latencies[i].getCount() > 0)
+				sb.append(String.format("%-18s %s bytes/call=%.1f%n", CALLBACK_NAMES[i], latencies[i], getAllocatedBytesPerCall(i)));
+		return sb.toString();
+	}
+}
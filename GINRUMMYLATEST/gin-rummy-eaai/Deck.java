@@ -0,0 +1,137 @@
+import java.util.SplittableRandom;
+
+/**
+ * A draw pile of cards stored as card id numbers in a byte array, with the top of the pile at the end.
+ * Shuffling refills the array with all cards and permutes it in place (Fisher-Yates) with a given
+ * SplittableRandom, so a Deck is reused for every round without allocation and the order of the cards is
+ * a pure function of the state of the generator.
+ */
+public class Deck {
+
+	/**
+	 * Card id numbers of the pile, bottom first, in the first size entries
+	 */
+	private final byte[] cardIds = new byte[Card.NUM_CARDS];
+
+	/**
+	 * Number of cards in the pile
+	 */
+	private int size = 0;
+
+	/**
+	 * Refill the pile with all cards in random order.
+	 * @param random random number generator determining the order
+	 */
+	public void shuffle(SplittableRandom random) {
+		for (int i = 0; i < Card.NUM_CARDS; i++)
+			cardIds[i] = (byte) i;
+		for (int i = Card.NUM_CARDS - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			byte id = cardIds[i];
+			cardIds[i] = cardIds[j];
+			cardIds[j] = id;
+		}
+		size = Card.NUM_CARDS;
+	}
+
+	/**
+	 * Return the number of cards in the pile.
+	 * @return the number of cards in the pile
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return whether or not the pile is empty.
+	 * @return whether or not the pile is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove the top card of the pile and return its id number.
+	 * @return the id number of the removed top card
+	 */
+	public int popId() {
+		return cardIds[--size];
+	}
+
+	/**
+	 * Remove and return the top card of the pile.
+	 * @return the removed top card
+	 */
+	public Card pop() {
+		return Card.allCards[popId()];
+	}
+
+	/**
+	 * Put the most recently removed card back on top of the pile, undoing popId().  Removed cards stay in the
+	 * array, so any number of removals can be undone in reverse order until the next shuffle.
+	 * @return the id number of the card put back
+	 */
+	public int unpopId() {
+		return cardIds[size++];
+	}
+
+	/**
+	 * Refill the pile with the given cards in the given order.
+	 * @param cardIds card id numbers, bottom first, in the first size entries
+	 * @param size number of cards
+	 */
+	public void set(byte[] cardIds, int size) {
+		System.arraycopy(cardIds, 0, this.cardIds, 0, size);
+		this.size = size;
+	}
+
+	/**
+	 * Make this pile a copy of another pile.
+	 * @param deck pile to copy
+	 */
+	public void copy(Deck deck) {
+		System.arraycopy(deck.cardIds, 0, cardIds, 0, Card.NUM_CARDS);
+		size = deck.size;
+	}
+
+	/**
+	 * Return the id number of the top card of the pile without removing it.
+	 * @return the id number of the top card
+	 */
+	public int peekId() {
+		return cardIds[size - 1];
+	}
+
+	/**
+	 * Return the bitstring (see GinRummyUtil) of the cards in the pile.
+	 * @return the bitstring of the cards in the pile
+	 */
+	public long getBitstring() {
+		long bitstring = 0L;
+		for (int i = 0; i < size; i++)
+			bitstring |= 1L << cardIds[i];
+		return bitstring;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++)
+			sb.append(i == 0 ? "" : ", ").append(Card.allCards[cardIds[i]]);
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * Show that equal seeds give equal shuffles.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		Deck deck = new Deck();
+		for (int i = 0; i < 2; i++) {
+			deck.shuffle(new SplittableRandom(617));
+			System.out.println(deck);
+		}
+	}
+}
@@ -0,0 +1,267 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Table of the best deadwood of a hand after drawing each card not in the hand and making the best discard, e.g. for
+ * a 10-card hand and each of the 42 cards that may be drawn.  The face-up draw decision and estimates of the value of
+ * a face-down draw then take one table lookup per card.
+ *
+ * The table is computed in one enumeration of the sets of disjoint melds of the hand and one other card: melds with at
+ * most one card not in the hand, all such cards in a set being the same card c.  Drawing c and discarding card d of the
+ * hand leaves the deadwood points of the hand plus the points of c minus the points of d minus the most points covered
+ * by a meld set of the hand and c not using d; discarding c itself leaves the best deadwood of the hand.  Sets without
+ * a card outside the hand are shared by all drawn cards, so the enumeration costs about as much as solving the hand
+ * with each of the cards making a meld with it.
+ *
+ * set(long) recomputes the table only when the hand differs from the last hand set, so one table per player or thread
+ * (see GinRummyUtil.getDrawValueTable) memoizes the table of the hand between calls of a turn.  Not thread-safe.
+ */
+public class DrawValueTable {
+	/**
+	 * Bitstring of the cards of the hand, or -1L if no hand was set
+	 */
+	private long hand = -1L;
+	/**
+	 * Deadwood points of the hand
+	 */
+	private int handPoints;
+	/**
+	 * Melds with at most one card not in the hand, the bitstrings of those cards (0L if none) and the deadwood points of
+	 * the melds in their first numMelds entries
+	 */
+	private final long[] melds = new long[GinRummyUtil.getNumMelds()];
+	private final long[] drawnCards = new long[melds.length];
+	private final int[] meldPoints = new int[melds.length];
+	private int numMelds;
+	/**
+	 * Bitstring of the cards not in the hand making a meld with cards of the hand
+	 */
+	private long meldingCards;
+	/**
+	 * Most points covered by any set of disjoint melds of the hand, in total and without each card of the hand
+	 * (indexed by card id number)
+	 */
+	private int maxCoveredPoints;
+	private final int[] maxCoveredPointsWithout = new int[Card.NUM_CARDS];
+	/**
+	 * Most points covered by any set of disjoint melds of the hand and a drawn card not using a card of the hand,
+	 * indexed by the drawn card's and the hand card's id numbers; only rows of melding cards are used
+	 */
+	private final int[][] maxDrawCoveredPointsWithout = new int[Card.NUM_CARDS][Card.NUM_CARDS];
+	/**
+	 * Best deadwood after drawing each card not in the hand, indexed by card id number
+	 */
+	private final int[] drawDeadwood = new int[Card.NUM_CARDS];
+	/**
+	 * Best deadwood of the hand and after discarding one of its cards
+	 */
+	private int bestDeadwood, bestDiscardDeadwood;
+
+	/**
+	 * Set the hand of the table, computing the table unless the hand is the hand already set.
+	 * @param handBitstring bitstring of the hand
+	 */
+	public void set(long handBitstring) {
+		if (handBitstring == hand)
+			return;
+		hand = handBitstring;
+		handPoints = GinRummyUtil.getDeadwoodPoints(handBitstring);
+		collectMelds();
+		maxCoveredPoints = 0;
+		for (long cards = hand; cards != 0L; cards &= cards - 1)
+			maxCoveredPointsWithout[Long.numberOfTrailingZeros(cards)] = 0;
+		for (long cards = meldingCards; cards != 0L; cards &= cards - 1)
+			Arrays.fill(maxDrawCoveredPointsWithout[Long.numberOfTrailingZeros(cards)], 0);
+		enumerate(0, 0L, 0, 0L);
+
+		bestDeadwood = handPoints - maxCoveredPoints;
+		bestDiscardDeadwood = Integer.MAX_VALUE;
+		for (long cards = hand; cards != 0L; cards &= cards - 1) {
+			int id = Long.numberOfTrailingZeros(cards);
+			bestDiscardDeadwood = Math.min(bestDiscardDeadwood, handPoints - GinRummyUtil.getDeadwoodPoints(1L << id) - maxCoveredPointsWithout[id]);
+		}
+		for (int c = 0; c < Card.NUM_CARDS; c++) {
+			if ((hand & 1L << c) != 0L)
+				continue;
+			int best = bestDeadwood; // discarding the drawn card
+			int drawnPoints = handPoints + GinRummyUtil.getDeadwoodPoints(1L << c);
+			int[] drawCovered = (meldingCards & 1L << c) != 0L ? maxDrawCoveredPointsWithout[c] : null;
+			for (long cards = hand; cards != 0L; cards &= cards - 1) {
+				int d = Long.numberOfTrailingZeros(cards);
+				int covered = drawCovered == null ? maxCoveredPointsWithout[d] : Math.max(maxCoveredPointsWithout[d], drawCovered[d]);
+				best = Math.min(best, drawnPoints - GinRummyUtil.getDeadwoodPoints(1L << d) - covered);
+			}
+			drawDeadwood[c] = best;
+		}
+	}
+
+	/**
+	 * Return the bitstring of the hand of the table.
+	 * @return the bitstring of the hand, or -1L if no hand was set
+	 */
+	public long getHandBitstring() {
+		return hand;
+	}
+
+	/**
+	 * Return the minimum deadwood points of the hand.
+	 * @return the minimum deadwood points of the hand
+	 */
+	public int getBestDeadwood() {
+		return bestDeadwood;
+	}
+
+	/**
+	 * Return the minimum deadwood points after discarding any one card of the hand.
+	 * @return the minimum deadwood points after discarding any one card of the hand
+	 */
+	public int getBestDeadwoodAfterDiscard() {
+		return bestDiscardDeadwood;
+	}
+
+	/**
+	 * Return the minimum deadwood points after drawing a card not in the hand and discarding any one card.
+	 * @param cardId id number of the card drawn
+	 * @return the minimum deadwood points after drawing the card and the best discard
+	 */
+	public int getBestDeadwoodAfterDraw(int cardId) {
+		if ((hand & 1L << cardId) != 0L)
+			throw new IllegalArgumentException("card in hand: " + Card.getCard(cardId));
+		return drawDeadwood[cardId];
+	}
+
+	/**
+	 * Store the minimum deadwood points after drawing each card not in the hand and discarding any one card.
+	 * Entries of the cards of the hand are not changed.
+	 * @param deadwood array receiving the minimum deadwood points, indexed by the id number of the card drawn
+	 */
+	public void getBestDeadwoodAfterDraws(int[] deadwood) {
+		for (int c = 0; c < Card.NUM_CARDS; c++)
+			if ((hand & 1L << c) == 0L)
+				deadwood[c] = drawDeadwood[c];
+	}
+
+	/**
+	 * Return the bitstring of the cards not in the hand making a meld with cards of the hand.
+	 * @return the bitstring of the cards making a meld with cards of the hand
+	 */
+	public long getMeldingCards() {
+		return meldingCards;
+	}
+
+	/**
+	 * Return whether or not the hand contains a meld.
+	 * @return whether or not the hand contains a meld
+	 */
+	public boolean hasMeld() {
+		return bestDeadwood < handPoints;
+	}
+
+	/**
+	 * Collect the melds with at most one card not in the hand, and the cards not in the hand making melds.
+	 */
+	private void collectMelds() {
+		numMelds = 0;
+		meldingCards = 0L;
+		for (long cards = hand; cards != 0L; cards &= cards - 1) {
+			int id = Long.numberOfTrailingZeros(cards);
+			for (int i = 0, n = GinRummyUtil.getNumCardMelds(id); i < n; i++) {
+				long meld = GinRummyUtil.getCardMeldBitstring(id, i), drawn = meld & ~hand;
+				// each meld once, from its lowest card in the hand
+				if (Long.bitCount(drawn) > 1 || Long.numberOfTrailingZeros(meld & hand) != id)
+					continue;
+				melds[numMelds] = meld;
+				drawnCards[numMelds] = drawn;
+				meldPoints[numMelds] = GinRummyUtil.getDeadwoodPoints(meld);
+				numMelds++;
+				meldingCards |= drawn;
+			}
+		}
+	}
+
+	/**
+	 * Record the covered points of the current set of disjoint melds and extend it with melds of higher index using
+	 * no drawn card other than the set's.
+	 * @param start index of the first meld that may be added to the current set
+	 * @param covered bitstring of the cards in the current set of melds
+	 * @param coveredPoints deadwood points of the cards in the current set of melds
+	 * @param drawn bitstring of the drawn card of the current set, or 0L if it has none
+	 */
+	private void enumerate(int start, long covered, int coveredPoints, long drawn) {
+		int[] without;
+		if (drawn == 0L) {
+			if (coveredPoints > maxCoveredPoints)
+				maxCoveredPoints = coveredPoints;
+			without = maxCoveredPointsWithout;
+		}
+		else
+			without = maxDrawCoveredPointsWithout[Long.numberOfTrailingZeros(drawn)];
+		for (long cards = hand & ~covered; cards != 0L; cards &= cards - 1) {
+			int id = Long.numberOfTrailingZeros(cards);
+			if (coveredPoints > without[id])
+				without[id] = coveredPoints;
+		}
+		for (int i = start; i < numMelds; i++)
+			if ((melds[i] & covered) == 0L && (drawn == 0L || drawnCards[i] == 0L || drawnCards[i] == drawn))
+				enumerate(i + 1, covered | melds[i], coveredPoints + meldPoints[i], drawn | drawnCards[i]);
+	}
+
+	/**
+	 * Check the tables of random 10-card hands against brute force: best deadwood solved by
+	 * GinRummyUtil.computeBestDeadwood for the hand, after each discard, and after each draw and discard, and the melding
+	 * cards found from the melds of each card.  Exits with status 1 on the first mismatch.
+	 * @param args number of hands (default 30000) and random seed (default 617)
+	 */
+	public static void main(String[] args) {
+		int numHands = args.length > 0 ? Integer.parseInt(args[0]) : 30000;
+		SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 617);
+		DrawValueTable table = new DrawValueTable();
+		for (int n = 0; n < numHands; n++) {
+			long hand = 0L;
+			while (Long.bitCount(hand) < 10)
+				hand |= 1L << random.nextInt(Card.NUM_CARDS);
+			table.set(hand);
+			int bestDeadwood = GinRummyUtil.computeBestDeadwood(hand);
+			check(table.getBestDeadwood() == bestDeadwood, hand, "best deadwood");
+			check(table.hasMeld() == bestDeadwood < GinRummyUtil.getDeadwoodPoints(hand), hand, "hasMeld");
+			check(table.getBestDeadwoodAfterDiscard() == bestDeadwoodAfterDiscard(hand), hand, "best deadwood after discard");
+			long meldingCards = 0L;
+			for (int c = 0; c < Card.NUM_CARDS; c++) {
+				if ((hand & 1L << c) != 0L)
+					continue;
+				for (int i = 0; i < GinRummyUtil.getNumCardMelds(c); i++)
+					if ((GinRummyUtil.getCardMeldBitstring(c, i) & ~hand) == 1L << c)
+						meldingCards |= 1L << c;
+				check(table.getBestDeadwoodAfterDraw(c) == bestDeadwoodAfterDiscard(hand | 1L << c), hand,
+						"best deadwood after drawing " + Card.getCard(c));
+			}
+			check(table.getMeldingCards() == meldingCards, hand, "melding cards");
+		}
+		System.out.printf("%d hands checked.\n", numHands);
+	}
+
+	/**
+	 * Return the minimum over the discards of a hand of the best deadwood left, solving each discard separately.
+	 * @param hand bitstring of the hand
+	 * @return the minimum deadwood points after discarding any one card
+	 */
+	private static int bestDeadwoodAfterDiscard(long hand) {
+		int best = Integer.MAX_VALUE;
+		for (long cards = hand; cards != 0L; cards &= cards - 1)
+			best = Math.min(best, GinRummyUtil.computeBestDeadwood(hand & ~Long.lowestOneBit(cards)));
+		return best;
+	}
+
+	/**
+	 * Report a mismatch and exit with status 1 unless a check holds.
+	 * @param holds whether or not the check holds
+	 * @param hand bitstring of the hand checked
+	 * @param what value checked
+	 */
+	private static void check(boolean holds, long hand, String what) {
+		if (holds)
+			return;
+		System.out.printf("%s: %s differs.\n", GinRummyUtil.bitstringToCards(hand), what);
+		System.exit(1);
+	}
+}
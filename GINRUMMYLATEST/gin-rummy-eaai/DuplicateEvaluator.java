@@ -0,0 +1,330 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Compares two kinds of players, A and B, by duplicate deals: each game seed is played twice, once with A as Player 0
+ * and once with A as Player 1.  A game seed determines the starting player and the shuffle of every round (see
+ * GinRummyGame.play(long)), so both games of a deal see the same cards in each round with the seats swapped, and the
+ * luck of the deal largely cancels out of the pair.  The win rate of A is estimated from the per-deal means, whose
+ * variance is usually well below that of independent games, so a significant verdict takes fewer games.
+ *
+ * Deals are split into batches played in parallel as in TournamentRunner: each batch creates its own players and
+ * games, and deal i is dealt from the same seed regardless of the number of threads.
+ */
+public class DuplicateEvaluator {
+
+	/**
+	 * Number of batches per thread, so that threads finishing early can take further batches
+	 */
+	private static final int BATCHES_PER_THREAD = 4;
+
+	/**
+	 * Normal quantile of 95% two-sided confidence intervals
+	 */
+	public static final double Z95 = 1.959964;
+
+	/**
+	 * Factories creating players A and B for each batch of deals
+	 */
+	private final Supplier<GinRummyPlayer> playerAFactory, playerBFactory;
+
+	/**
+	 * Number of threads of the default ForkJoinPool and basis of the number of batches
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Executor running batches of deals, or null to use a ForkJoinPool for each evaluation
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Evaluation seed from which game seeds are derived
+	 */
+	private long seed = System.nanoTime();
+
+	/**
+	 * Create an evaluator of players created by the given factories.
+	 * @param playerAFactory factory creating player A for each batch of deals
+	 * @param playerBFactory factory creating player B for each batch of deals
+	 */
+	public DuplicateEvaluator(Supplier<GinRummyPlayer> playerAFactory, Supplier<GinRummyPlayer> playerBFactory) {
+		this.playerAFactory = playerAFactory;
+		this.playerBFactory = playerBFactory;
+	}
+
+	/**
+	 * Set the number of threads used when no executor is given.
+	 * @param parallelism number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Set the executor running batches of deals, or null to use a ForkJoinPool for each evaluation.
+	 * The executor is not shut down by the evaluator.
+	 * @param executor executor running batches of deals
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the evaluation seed from which game seeds are derived.
+	 * @param seed evaluation seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Play each of the given number of deals with both seatings and return the aggregated results.
+	 * @param numDeals number of deals (half the number of games)
+	 * @return the aggregated results
+	 */
+	public Result run(int numDeals) {
+		SplittableRandom seeds = new SplittableRandom(seed);
+		long[] gameSeeds = new long[numDeals];
+		for (int i = 0; i < numDeals; i++)
+			gameSeeds[i] = seeds.nextLong();
+		int numBatches = Math.max(1, Math.min(numDeals, parallelism * BATCHES_PER_THREAD));
+		ExecutorService service = executor != null ? executor : new ForkJoinPool(parallelism);
+		long startNs = System.nanoTime();
+		try {
+			ArrayList<Future<Result>> batches = new ArrayList<Future<Result>>();
+			for (int b = 0; b < numBatches; b++) {
+				int first = (int) ((long) numDeals * b / numBatches);
+				int last = (int) ((long) numDeals * (b + 1) / numBatches);
+				batches.add(service.submit(() -> playBatch(gameSeeds, first, last)));
+			}
+			Result result = new Result();
+			for (Future<Result> batch : batches)
+				result.add(batch.get());
+			result.elapsedNs = System.nanoTime() - startNs;
+			return result;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("evaluation interrupted", e);
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("game failed", e.getCause());
+		}
+		finally {
+			if (service != executor)
+				service.shutdown();
+		}
+	}
+
+	/**
+	 * Play a batch of deals with newly created players, each deal with A as Player 0 and then as Player 1.
+	 * @param gameSeeds seeds of all deals of the evaluation
+	 * @param first number of the first deal of the batch
+	 * @param last number after the last deal of the batch
+	 * @return the results of the batch
+	 */
+	private Result playBatch(long[] gameSeeds, int first, int last) {
+		FastGinRummyPlayer playerA = GinRummyPlayerAdapter.adapt(playerAFactory.get());
+		FastGinRummyPlayer playerB = GinRummyPlayerAdapter.adapt(playerBFactory.get());
+		GinRummyGame[] games = {new GinRummyGame(playerA, playerB), new GinRummyGame(playerB, playerA)};
+		Result result = new Result();
+		for (int i = first; i < last; i++) {
+			int winsA = 0, marginA = 0;
+			for (int seatA = 0; seatA < 2; seatA++) {
+				GinRummyGame game = games[seatA];
+				game.setVerbose(false);
+				if (game.play(gameSeeds[i]) == seatA)
+					winsA++;
+				int[] scores = game.getScores();
+				marginA += scores[seatA] - scores[1 - seatA];
+			}
+			result.addDeal(winsA, marginA);
+		}
+		return result;
+	}
+
+	/**
+	 * Aggregated results of an evaluation, from the point of view of player A
+	 */
+	public static class Result {
+		/**
+		 * Number of deals played (each twice)
+		 */
+		public int numDeals;
+		/**
+		 * Number of deals of which A won both games, one game and no game
+		 */
+		public final int[] dealsByWins = new int[3];
+		/**
+		 * Sum and sum of squares over deals of A's score margin (A's final score minus B's) summed over both games
+		 */
+		public long marginSum, marginSquares;
+		/**
+		 * Wall-clock time of the evaluation in nanoseconds
+		 */
+		public long elapsedNs;
+
+		/**
+		 * Add the outcome of a deal.
+		 * @param winsA number of the deal's two games won by A
+		 * @param marginA A's score margin summed over both games
+		 */
+		void addDeal(int winsA, int marginA) {
+			numDeals++;
+			dealsByWins[winsA]++;
+			marginSum += marginA;
+			marginSquares += (long) marginA * marginA;
+		}
+
+		/**
+		 * Add the counts of other results to these.
+		 * @param other other results
+		 */
+		void add(Result other) {
+			numDeals += other.numDeals;
+			for (int i = 0; i < 3; i++)
+				dealsByWins[i] += other.dealsByWins[i];
+			marginSum += other.marginSum;
+			marginSquares += other.marginSquares;
+		}
+
+		/**
+		 * Return the number of games played.
+		 * @return the number of games played
+		 */
+		public int getNumGames() {
+			return 2 * numDeals;
+		}
+
+		/**
+		 * Return the fraction of games won by A.
+		 * @return the win rate of A
+		 */
+		public double getWinRate() {
+			return numDeals == 0 ? 0 : (dealsByWins[1] + 2.0 * dealsByWins[2]) / getNumGames();
+		}
+
+		/**
+		 * Return the standard error of the win rate from the variance of the per-deal win rates (0, 1/2 or 1).
+		 * @return the standard error of the win rate
+		 */
+		public double getStandardError() {
+			if (numDeals < 2)
+				return Double.NaN;
+			double p = getWinRate();
+			double squares = (dealsByWins[1] * 0.25 + dealsByWins[2]) / numDeals;
+			return Math.sqrt((squares - p * p) * numDeals / (numDeals - 1) / numDeals);
+		}
+
+		/**
+		 * Return the standard error the win rate would have from the same number of independent games.
+		 * @return the standard error of the win rate of independent games
+		 */
+		public double getIndependentStandardError() {
+			double p = getWinRate();
+			return Math.sqrt(p * (1 - p) / getNumGames());
+		}
+
+		/**
+		 * Return the number of independent games giving the same standard error as the games played, i.e. the number
+		 * of games played times the variance reduction of duplicate deals.  The number is undefined if the per-deal win
+		 * rates do not vary, e.g. if every deal was split one game each.
+		 * @return the number of equivalent independent games, or NaN if undefined
+		 */
+		public double getEquivalentIndependentGames() {
+			double se = getStandardError(), independentSe = getIndependentStandardError();
+			if (!(se > 0))
+				return Double.NaN;
+			return getNumGames() * (independentSe * independentSe) / (se * se);
+		}
+
+		/**
+		 * Return a two-sided confidence interval of the win rate by the normal approximation.
+		 * @param z normal quantile of the confidence level, e.g. Z95
+		 * @return the lower and upper bounds of the interval
+		 */
+		public double[] getWinRateInterval(double z) {
+			double p = getWinRate(), se = getStandardError();
+			return new double[] {p - z * se, p + z * se};
+		}
+
+		/**
+		 * Return A's mean score margin per game.
+		 * @return A's mean score margin per game
+		 */
+		public double getMeanMargin() {
+			return numDeals == 0 ? 0 : marginSum / (2.0 * numDeals);
+		}
+
+		/**
+		 * Return the standard error of A's mean score margin per game.
+		 * @return the standard error of the mean margin
+		 */
+		public double getMarginStandardError() {
+			if (numDeals < 2)
+				return Double.NaN;
+			double mean = (double) marginSum / numDeals;
+			double variance = ((double) marginSquares / numDeals - mean * mean) * numDeals / (numDeals - 1);
+			return Math.sqrt(variance / numDeals) / 2;
+		}
+
+		/**
+		 * Return which player is significantly stronger at the given confidence, by the win rate interval.
+		 * @param z normal quantile of the confidence level, e.g. Z95
+		 * @return "A" or "B" if the interval lies above or below one half, or null if neither is significantly stronger
+		 */
+		public String getVerdict(double z) {
+			double[] interval = getWinRateInterval(z);
+			return interval[0] > 0.5 ? "A" : interval[1] < 0.5 ? "B" : null;
+		}
+
+		/**
+		 * Return the number of games played per second of wall-clock time.
+		 * @return the number of games played per second of wall-clock time
+		 */
+		public double getGamesPerSecond() {
+			return elapsedNs == 0 ? 0 : getNumGames() * 1e9 / elapsedNs;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			double[] interval = getWinRateInterval(Z95);
+			String verdict = getVerdict(Z95);
+			return String.format("%d deals (%d games) played in %d ms (%.1f games/s).\n"
+					+ "Deals won by A: both %d, one %d, none %d.\n"
+					+ "Win rate of A: %.4f, 95%% CI [%.4f, %.4f], standard error %.4f (%.4f for independent games).\n"
+					+ "Equivalent independent games: %s.\n"
+					+ "Mean score margin of A per game: %.2f +/- %.2f.\n"
+					+ "Verdict at 95%%: %s.",
+					numDeals, getNumGames(), elapsedNs / 1000000, getGamesPerSecond(),
+					dealsByWins[2], dealsByWins[1], dealsByWins[0],
+					getWinRate(), interval[0], interval[1], getStandardError(), getIndependentStandardError(),
+					Double.isNaN(getEquivalentIndependentGames()) ? "undefined (per-deal win rates do not vary)"
+							: String.format("%.0f", getEquivalentIndependentGames()),
+					getMeanMargin(), Z95 * getMarginStandardError(),
+					verdict == null ? "no significant difference" : verdict + " is stronger");
+		}
+	}
+
+	/**
+	 * Compare SimpleGinRummyPlayer (A) with Aja6082GinRummyPlayer (B) by duplicate deals on all available processors.
+	 * @param args optional number of deals and optional evaluation seed
+	 */
+	public static void main(String[] args) {
+		int numDeals = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		DuplicateEvaluator evaluator = new DuplicateEvaluator(SimpleGinRummyPlayer::new, Aja6082GinRummyPlayer::new);
+		if (args.length > 1)
+			evaluator.setSeed(Long.parseLong(args[1]));
+		System.out.println(evaluator.run(numDeals));
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * FastGinRummyPlayer - variant of the GinRummyPlayer interface for simulation without allocation
+ *
+The game outline is the same as for GinRummyPlayer.  Cards are passed as card id numbers (0 - 51, see Card)
+and sets of cards (hands and melds) as bitstrings (see GinRummyUtil), so that GinRummyGame allocates no lists
+and clones nothing to call the player.  In return, arrays passed to a player belong to the game: a player
+must neither modify them nor keep references to them after the call returns.
+
+GinRummyGame uses a player implementing this interface directly, and wraps any other GinRummyPlayer
+in a GinRummyPlayerAdapter.
+
+ */
+
+public interface FastGinRummyPlayer {
+
+	/**
+	 * Inform player of 0-based player number (0/1), starting player number (0/1), and dealt cards
+	 * @param playerNum player's 0-based player number (0/1)
+	 * @param startingPlayerNum starting player number (0/1)
+	 * @param hand bitstring of the dealt cards
+	 */
+	void startGame(int playerNum, int startingPlayerNum, long hand);
+
+	/**
+	 * Return whether or not player will draw the given face-up card on the draw pile.
+	 * @param cardId id number of the face-up card on the draw pile
+	 * @return whether or not player will draw the given face-up card on the draw pile
+	 */
+	boolean willDrawFaceUpCard(int cardId);
+
+	/**
+	 * Report that the given player has drawn a given card and, if known, what the card is.
+	 * If the card is unknown because it is drawn from the face-down draw pile, the card id number is -1.
+	 * @param playerNum player drawing a card
+	 * @param cardId id number of the card drawn, or -1 if unknown to the player
+	 */
+	void reportDraw(int playerNum, int cardId);
+
+	/**
+	 * Get the player's discarded card.  If you took the top card from the discard pile,
+	 * you must discard a different card.
+	 * If this is not a card in the player's possession, the player forfeits the game.
+	 * @return the id number of the player's chosen card for discarding
+	 */
+	int getDiscard();
+
+	/**
+	 * Report that the given player has discarded a given card.
+	 * @param playerNum the discarding player
+	 * @param cardId id number of the card that was discarded
+	 */
+	void reportDiscard(int playerNum, int cardId);
+
+	/**
+	 * At the end of each turn, this method is called and the player that cannot (or will not) end the round returns -1.
+	 * The first player to knock, and then their opponent, store the bitstrings of their melds at the start of the given
+	 * array and return the number of melds.  All other cards are deadwood, unless they can be laid off.
+	 * @param melds array of GinRummyUtil.MAX_MELDS entries receiving meld bitstrings
+	 * @return -1 if continuing play and opponent hasn't melded, or the number of melds stored
+	 */
+	int getFinalMelds(long[] melds);
+
+	/**
+	 * When a player has ended play and formed melds, the melds are reported to both players.
+	 * @param playerNum player that has revealed melds
+	 * @param melds meld bitstrings in the first numMelds entries
+	 * @param numMelds number of melds
+	 */
+	void reportFinalMelds(int playerNum, long[] melds, int numMelds);
+
+	/**
+	 * Report current player scores, indexed by 0-based player number.
+	 * @param scores current player scores, indexed by 0-based player number
+	 */
+	void reportScores(int[] scores);
+
+	/**
+	 * Report layoff actions.
+	 * @param playerNum player laying off cards
+	 * @param cardId id number of the card being laid off
+	 * @param opponentMeld bitstring of the opponent meld that card is being added to
+	 */
+	void reportLayoff(int playerNum, int cardId, long opponentMeld);
+
+	/**
+	 * Report the final hands of players.
+	 * @param playerNum player of hand reported
+	 * @param hand bitstring of the complete hand of given player
+	 */
+	void reportFinalHand(int playerNum, long hand);
+
+}
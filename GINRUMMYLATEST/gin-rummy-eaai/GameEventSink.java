@@ -0,0 +1,91 @@
+/**
+ * Receiver of the events of games played by GinRummyGame (see GinRummyGame.setEventSink).
+ *
+ * Cards are card id numbers and sets of cards are bitstrings, as for FastGinRummyPlayer.  Arrays passed to a sink
+ * belong to the caller: a sink must neither modify them nor keep references to them after the call returns.
+ * Events of a game arrive in play order: gameStart, then for each round roundStart, the declines, draws and
+ * discards of play, then knock, opponentMelds and layoffs if a player knocked, and roundEnd; forfeit if a player
+ * forfeits; and finally gameEnd.
+ */
+public interface GameEventSink {
+
+	/**
+	 * A game starts.
+	 * @param gameSeed seed of the game (see GinRummyGame.play(long))
+	 */
+	void gameStart(long gameSeed);
+
+	/**
+	 * A round is dealt.
+	 * @param startingPlayer player number of the starting player
+	 * @param hand0 bitstring of the cards dealt to Player 0
+	 * @param hand1 bitstring of the cards dealt to Player 1
+	 * @param faceUpCard id number of the initial face-up card
+	 */
+	void roundStart(int startingPlayer, long hand0, long hand1, int faceUpCard);
+
+	/**
+	 * A player declines the initial face-up card.
+	 * @param player player declining
+	 * @param cardId id number of the face-up card
+	 */
+	void decline(int player, int cardId);
+
+	/**
+	 * A player draws a card.
+	 * @param player player drawing
+	 * @param cardId id number of the card drawn
+	 * @param faceUp whether the face-up card was drawn rather than the top of the draw pile
+	 */
+	void draw(int player, int cardId, boolean faceUp);
+
+	/**
+	 * A player discards a card.
+	 * @param player player discarding
+	 * @param cardId id number of the card discarded
+	 */
+	void discard(int player, int cardId);
+
+	/**
+	 * A player knocks with the given melds.
+	 * @param player knocking player
+	 * @param melds meld bitstrings in the first numMelds entries
+	 * @param numMelds number of melds
+	 */
+	void knock(int player, long[] melds, int numMelds);
+
+	/**
+	 * The opponent of the knocking player reveals melds.
+	 * @param player opponent of the knocking player
+	 * @param melds meld bitstrings in the first numMelds entries
+	 * @param numMelds number of melds
+	 */
+	void opponentMelds(int player, long[] melds, int numMelds);
+
+	/**
+	 * The opponent of the knocking player lays off a card.
+	 * @param player player laying off
+	 * @param cardId id number of the card laid off
+	 * @param meld bitstring of the knocking meld before the card is laid off
+	 */
+	void layoff(int player, int cardId, long meld);
+
+	/**
+	 * A round ends, by a knock or by the draw pile being reduced to two cards.
+	 * @param scores player scores after the round, indexed by player number
+	 */
+	void roundEnd(int[] scores);
+
+	/**
+	 * A player forfeits by an illegal discard or meld.
+	 * @param player forfeiting player
+	 */
+	void forfeit(int player);
+
+	/**
+	 * A game ends.
+	 * @param winner winning player number
+	 */
+	void gameEnd(int winner);
+
+}
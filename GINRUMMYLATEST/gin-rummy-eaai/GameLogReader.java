@@ -0,0 +1,345 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reader of game logs written by GameLogWriter (see there for the format).  Each call of next(GameEventSink)
+ * replays the events of the next game to a sink in the order they were played, so a log can be fed to any
+ * GameEventSink, e.g. another GameLogWriter or a checker, and replays are the same however often they are made.
+ * Since a game record starts with its game seed, GinRummyGame.play(long) deals the same cards again, and players
+ * whose choices do not depend on unseeded randomness play the same game again.
+ */
+public class GameLogReader implements Closeable {
+
+	/**
+	 * Size of the channel buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Channel read from
+	 */
+	private final ReadableByteChannel channel;
+
+	/**
+	 * Buffer of bytes read from the channel and not yet consumed
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * Encoded events of the current game in the first gameSize entries
+	 */
+	private byte[] game = new byte[1024];
+
+	/**
+	 * Number of bytes of the current game, and position of the next byte to decode
+	 */
+	private int gameSize, position;
+
+	/**
+	 * Scratch arrays of melds and scores passed to sinks
+	 */
+	private final long[] melds = new long[GinRummyUtil.MAX_MELDS];
+	private final int[] scores = new int[2];
+
+	/**
+	 * Open a log file.
+	 * @param file log file
+	 * @throws IOException if the file cannot be read or is not a game log
+	 */
+	public GameLogReader(Path file) throws IOException {
+		this(FileChannel.open(file, StandardOpenOption.READ));
+	}
+
+	/**
+	 * Open a log reading from the given channel, which is closed by close().
+	 * @param channel channel read from
+	 * @throws IOException if the channel cannot be read or does not start with a game log header
+	 */
+	public GameLogReader(ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer.flip();
+		if (!fill(5) || buffer.getInt() != GameLogWriter.MAGIC || buffer.get() != GameLogWriter.VERSION)
+			throw new IOException("not a game log of version " + GameLogWriter.VERSION);
+	}
+
+	/**
+	 * Replay the events of the next game to the given sink.
+	 * @param sink receiver of the events
+	 * @return whether or not there was a next game
+	 * @throws IOException if the log cannot be read or is malformed
+	 */
+	public boolean next(GameEventSink sink) throws IOException {
+		if (!readGame())
+			return false;
+		position = 0;
+		try {
+			while (position < gameSize) {
+				int tag = getByte();
+				int player = tag & 1;
+				switch (tag & ~1) {
+				case GameLogWriter.GAME_START:
+					long seed = 0L;
+					for (int i = 0; i < 8; i++)
+						seed = seed << 8 | getByte();
+					sink.gameStart(seed);
+					break;
+				case GameLogWriter.ROUND_START:
+					long hand0 = getCards(), hand1 = getCards();
+					sink.roundStart(player, hand0, hand1, getCard());
+					break;
+				case GameLogWriter.DECLINE:
+					sink.decline(player, getCard());
+					break;
+				case GameLogWriter.DRAW_FACE_UP:
+					sink.draw(player, getCard(), true);
+					break;
+				case GameLogWriter.DRAW_FACE_DOWN:
+					sink.draw(player, getCard(), false);
+					break;
+				case GameLogWriter.DISCARD:
+					sink.discard(player, getCard());
+					break;
+				case GameLogWriter.KNOCK:
+					sink.knock(player, melds, getMelds());
+					break;
+				case GameLogWriter.OPPONENT_MELDS:
+					sink.opponentMelds(player, melds, getMelds());
+					break;
+				case GameLogWriter.LAYOFF:
+					int card = getCard();
+					sink.layoff(player, card, getCards());
+					break;
+				case GameLogWriter.ROUND_END:
+					scores[0] = getVarint();
+					scores[1] = getVarint();
+					sink.roundEnd(scores);
+					break;
+				case GameLogWriter.FORFEIT:
+					sink.forfeit(player);
+					break;
+				case GameLogWriter.GAME_END:
+					sink.gameEnd(player);
+					break;
+				default:
+					throw new IOException("unknown game log event tag " + tag);
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("truncated game log record", e);
+		}
+		return true;
+	}
+
+	/**
+	 * Skip the next game without decoding its events.
+	 * @return whether or not there was a next game
+	 * @throws IOException if the log cannot be read
+	 */
+	public boolean skipGame() throws IOException {
+		return readGame();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Read the record of the next game into the game array.
+	 * @return whether or not there was a next game
+	 * @throws IOException if the log cannot be read or ends within a record
+	 */
+	private boolean readGame() throws IOException {
+		if (!fill(1))
+			return false;
+		int length = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (!fill(1) || shift > 28)
+				throw new EOFException("truncated game log record length");
+			int b = buffer.get();
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				break;
+		}
+		if (length > game.length)
+			game = Arrays.copyOf(game, Math.max(length, 2 * game.length));
+		for (int offset = 0; offset < length; ) {
+			if (!fill(1))
+				throw new EOFException("truncated game log record");
+			int n = Math.min(buffer.remaining(), length - offset);
+			buffer.get(game, offset, n);
+			offset += n;
+		}
+		gameSize = length;
+		return true;
+	}
+
+	/**
+	 * Read from the channel until the buffer holds at least the given number of bytes or the channel ends.
+	 * @param bytes number of bytes needed (at most BUFFER_SIZE)
+	 * @return whether or not the buffer holds the given number of bytes
+	 * @throws IOException if the channel cannot be read
+	 */
+	private boolean fill(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes)
+			return true;
+		buffer.compact();
+		try {
+			while (buffer.position() < bytes)
+				if (channel.read(buffer) < 0)
+					return false;
+			return true;
+		}
+		finally {
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Decode the next byte of the current game.
+	 * @return the byte value (0 - 255)
+	 */
+	private int getByte() {
+		if (position >= gameSize)
+			throw new ArrayIndexOutOfBoundsException(position);
+		return game[position++] & 0xFF;
+	}
+
+	/**
+	 * Decode the next card id of the current game.
+	 * @return the card id number
+	 * @throws IOException if the byte is not a card id number
+	 */
+	private int getCard() throws IOException {
+		int card = getByte();
+		if (card >= Card.NUM_CARDS)
+			throw new IOException("invalid card id " + card + " in game log");
+		return card;
+	}
+
+	/**
+	 * Decode the next unsigned LEB128 varint of the current game.
+	 * @return the value
+	 */
+	private int getVarint() {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = getByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	/**
+	 * Decode the next set of cards of the current game.
+	 * @return the card set bitstring
+	 * @throws IOException if a card is not a card id number
+	 */
+	private long getCards() throws IOException {
+		long cards = 0L;
+		for (int n = getVarint(); n > 0; n--)
+			cards |= 1L << getCard();
+		return cards;
+	}
+
+	/**
+	 * Decode the next list of melds of the current game into the melds array.
+	 * @return the number of melds
+	 * @throws IOException if there are too many melds or a card is not a card id number
+	 */
+	private int getMelds() throws IOException {
+		int numMelds = getVarint();
+		if (numMelds > melds.length)
+			throw new IOException("too many melds in game log: " + numMelds);
+		for (int i = 0; i < numMelds; i++)
+			melds[i] = getCards();
+		return numMelds;
+	}
+
+	/**
+	 * GameEventSink printing events as text
+	 */
+	private static class GamePrinter implements GameEventSink {
+		public void gameStart(long gameSeed) {
+			System.out.printf("Game seed %d.\n", gameSeed);
+		}
+		public void roundStart(int startingPlayer, long hand0, long hand1, int faceUpCard) {
+			System.out.printf("Player 0 is dealt %s.\n", GinRummyUtil.bitstringToCards(hand0));
+			System.out.printf("Player 1 is dealt %s.\n", GinRummyUtil.bitstringToCards(hand1));
+			System.out.printf("Player %d starts.\n", startingPlayer);
+			System.out.printf("The initial face up card is %s.\n", Card.getCard(faceUpCard));
+		}
+		public void decline(int player, int cardId) {
+			System.out.printf("Player %d declines %s.\n", player, Card.getCard(cardId));
+		}
+		public void draw(int player, int cardId, boolean faceUp) {
+			System.out.printf("Player %d draws %s%s.\n", player, Card.getCard(cardId), faceUp ? " face up" : "");
+		}
+		public void discard(int player, int cardId) {
+			System.out.printf("Player %d discards %s.\n", player, Card.getCard(cardId));
+		}
+		public void knock(int player, long[] melds, int numMelds) {
+			System.out.printf("Player %d knocks with melds %s.\n", player, toMeldLists(melds, numMelds));
+		}
+		public void opponentMelds(int player, long[] melds, int numMelds) {
+			System.out.printf("Player %d melds %s.\n", player, toMeldLists(melds, numMelds));
+		}
+		public void layoff(int player, int cardId, long meld) {
+			System.out.printf("Player %d lays off %s on %s.\n", player, Card.getCard(cardId), GinRummyUtil.bitstringToCards(meld));
+		}
+		public void roundEnd(int[] scores) {
+			System.out.printf("Player\tScore\n0\t%d\n1\t%d\n", scores[0], scores[1]);
+		}
+		public void forfeit(int player) {
+			System.out.printf("Player %d forfeits.\n", player);
+		}
+		public void gameEnd(int winner) {
+			System.out.printf("Player %d wins.\n", winner);
+		}
+		private static ArrayList<ArrayList<Card>> toMeldLists(long[] melds, int numMelds) {
+			ArrayList<ArrayList<Card>> meldLists = new ArrayList<ArrayList<Card>>();
+			for (int i = 0; i < numMelds; i++)
+				meldLists.add(GinRummyUtil.bitstringToCards(melds[i]));
+			return meldLists;
+		}
+	}
+
+	/**
+	 * Print the events of one game of a log file, or count the games of the file.
+	 * @param args log file, optional game number (starting at 0; default: count the games)
+	 * @throws IOException if the log cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: java GameLogReader <file> [game]");
+			System.exit(1);
+		}
+		try (GameLogReader reader = new GameLogReader(Paths.get(args[0]))) {
+			if (args.length > 1) {
+				long game = Long.parseLong(args[1]);
+				for (long i = 0; i < game; i++)
+					if (!reader.skipGame())
+						throw new IllegalArgumentException("log has only " + i + " games");
+				if (!reader.next(new GamePrinter()))
+					throw new IllegalArgumentException("log has only " + game + " games");
+			}
+			else {
+				long numGames = 0;
+				while (reader.skipGame())
+					numGames++;
+				System.out.printf("%d games.\n", numGames);
+			}
+		}
+	}
+}
@@ -0,0 +1,292 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * GameEventSink writing games to a compact binary game log, read back by GameLogReader.
+ *
+ * A log is the magic number "GRLG" and a version byte followed by one record per game: the varint length of
+ * the game's events, then the events.  Each event is a tag byte, with the player number in the low bit where the
+ * event has a player, followed by its fields: one byte per card id, unsigned LEB128 varints for counts and scores,
+ * and eight big-endian bytes for the game seed.  A set of cards is its varint size and its cards in increasing id
+ * order, and a list of melds is its varint count and its card sets.  A game of several rounds takes about a kilobyte.
+ *
+ * Events of a game are encoded into a reusable array and copied into a direct buffer when the game ends, so that
+ * forfeited or interrupted games never leave partial records.  The buffer is written to the channel when full and
+ * on flush() and close().  A writer is not thread-safe; use one writer per concurrently played game.
+ */
+public class GameLogWriter implements GameEventSink, Closeable {
+
+	/**
+	 * Log magic number ("GRLG") and format version
+	 */
+	static final int MAGIC = 0x47524C47, VERSION = 1;
+
+	/**
+	 * Event tags; tags of events with a player have the player number added
+	 */
+	static final int GAME_START = 0x00, GAME_END = 0x02, ROUND_START = 0x04, ROUND_END = 0x06, DECLINE = 0x08,
+			DRAW_FACE_UP = 0x0A, DRAW_FACE_DOWN = 0x0C, DISCARD = 0x0E, KNOCK = 0x10, OPPONENT_MELDS = 0x12, LAYOFF = 0x14,
+			FORFEIT = 0x16;
+
+	/**
+	 * Size of the channel buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Channel written to
+	 */
+	private final WritableByteChannel channel;
+
+	/**
+	 * Buffer of encoded games not yet written to the channel
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * Encoded events of the current game in the first gameSize entries
+	 */
+	private byte[] game = new byte[1024];
+
+	/**
+	 * Number of bytes of the current game
+	 */
+	private int gameSize = 0;
+
+	/**
+	 * Number of games written
+	 */
+	private long numGames = 0;
+
+	/**
+	 * Create a log file, replacing any existing file.
+	 * @param file log file
+	 * @throws IOException if the file cannot be created
+	 */
+	public GameLogWriter(Path file) throws IOException {
+		this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * Create a log writing to the given channel, which is closed by close().
+	 * @param channel channel written to
+	 * @throws IOException if the log header cannot be written
+	 */
+	public GameLogWriter(WritableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer.putInt(MAGIC).put((byte) VERSION);
+	}
+
+	/**
+	 * Return the number of games written.
+	 * @return the number of games written
+	 */
+	public long getNumGames() {
+		return numGames;
+	}
+
+	@Override
+	public void gameStart(long gameSeed) {
+		gameSize = 0;
+		putByte(GAME_START);
+		for (int shift = 56; shift >= 0; shift -= 8)
+			putByte((int) (gameSeed >>> shift));
+	}
+
+	@Override
+	public void roundStart(int startingPlayer, long hand0, long hand1, int faceUpCard) {
+		putByte(ROUND_START + startingPlayer);
+		putCards(hand0);
+		putCards(hand1);
+		putByte(faceUpCard);
+	}
+
+	@Override
+	public void decline(int player, int cardId) {
+		putByte(DECLINE + player);
+		putByte(cardId);
+	}
+
+	@Override
+	public void draw(int player, int cardId, boolean faceUp) {
+		putByte((faceUp ? DRAW_FACE_UP : DRAW_FACE_DOWN) + player);
+		putByte(cardId);
+	}
+
+	@Override
+	public void discard(int player, int cardId) {
+		putByte(DISCARD + player);
+		putByte(cardId);
+	}
+
+	@Override
+	public void knock(int player, long[] melds, int numMelds) {
+		putByte(KNOCK + player);
+		putMelds(melds, numMelds);
+	}
+
+	@Override
+	public void opponentMelds(int player, long[] melds, int numMelds) {
+		putByte(OPPONENT_MELDS + player);
+		putMelds(melds, numMelds);
+	}
+
+	@Override
+	public void layoff(int player, int cardId, long meld) {
+		putByte(LAYOFF + player);
+		putByte(cardId);
+		putCards(meld);
+	}
+
+	@Override
+	public void roundEnd(int[] scores) {
+		putByte(ROUND_END);
+		putVarint(scores[0]);
+		putVarint(scores[1]);
+	}
+
+	@Override
+	public void forfeit(int player) {
+		putByte(FORFEIT + player);
+	}
+
+	/**
+	 * Encode the end of the game and copy the game's record to the channel buffer.
+	 * @throws UncheckedIOException if the buffer cannot be written to the channel
+	 */
+	@Override
+	public void gameEnd(int winner) {
+		putByte(GAME_END + winner);
+		try {
+			if (buffer.remaining() < 5)
+				writeBuffer();
+			for (int length = gameSize; ; length >>>= 7) {
+				if (length < 0x80) {
+					buffer.put((byte) length);
+					break;
+				}
+				buffer.put((byte) (length & 0x7F | 0x80));
+			}
+			for (int offset = 0; offset < gameSize; ) {
+				if (!buffer.hasRemaining())
+					writeBuffer();
+				int length = Math.min(buffer.remaining(), gameSize - offset);
+				buffer.put(game, offset, length);
+				offset += length;
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		gameSize = 0;
+		numGames++;
+	}
+
+	/**
+	 * Write all buffered games to the channel.
+	 * @throws IOException if the channel cannot be written
+	 */
+	public void flush() throws IOException {
+		writeBuffer();
+	}
+
+	/**
+	 * Write all buffered games and close the channel.  Events of an unfinished game are discarded.
+	 * @throws IOException if the channel cannot be written or closed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			writeBuffer();
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Write the contents of the channel buffer to the channel and clear it.
+	 * @throws IOException if the channel cannot be written
+	 */
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Append a byte to the current game.
+	 * @param value byte value (low 8 bits)
+	 */
+	private void putByte(int value) {
+		if (gameSize == game.length)
+			game = Arrays.copyOf(game, 2 * game.length);
+		game[gameSize++] = (byte) value;
+	}
+
+	/**
+	 * Append an unsigned LEB128 varint to the current game.
+	 * @param value non-negative value
+	 */
+	private void putVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			putByte(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		putByte(value);
+	}
+
+	/**
+	 * Append a set of cards to the current game: its size and its card ids in increasing order.
+	 * @param cards card set bitstring
+	 */
+	private void putCards(long cards) {
+		putVarint(Long.bitCount(cards));
+		for (; cards != 0L; cards &= cards - 1)
+			putByte(Long.numberOfTrailingZeros(cards));
+	}
+
+	/**
+	 * Append a list of melds to the current game: its count and its card sets.
+	 * @param melds meld bitstrings in the first numMelds entries
+	 * @param numMelds number of melds
+	 */
+	private void putMelds(long[] melds, int numMelds) {
+		putVarint(numMelds);
+		for (int i = 0; i < numMelds; i++)
+			putCards(melds[i]);
+	}
+
+	/**
+	 * Record games between SimpleGinRummyPlayer and Aja6082GinRummyPlayer to a log file.
+	 * @param args log file, optional number of games (default 1000), optional seed of the game seeds (default 0)
+	 * @throws IOException if the log cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: java GameLogWriter <file> [numGames] [seed]");
+			System.exit(1);
+		}
+		int numGames = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		GinRummyGame game = new GinRummyGame(new SimpleGinRummyPlayer(), new Aja6082GinRummyPlayer());
+		game.setSeed(args.length > 2 ? Long.parseLong(args[2]) : 0L);
+		long startMs = System.currentTimeMillis();
+		try (GameLogWriter writer = new GameLogWriter(Paths.get(args[0]))) {
+			game.setEventSink(writer);
+			for (int i = 0; i < numGames; i++)
+				game.play();
+		}
+		System.out.printf("%d games recorded to %s (%d bytes) in %d ms.\n", numGames, args[0],
+				Files.size(Paths.get(args[0])), System.currentTimeMillis() - startMs);
+	}
+}
@@ -0,0 +1,519 @@
+import java.util.SplittableRandom;
+
+/**
+ * State of a game of Gin Rummy between moves: both hands as bitstrings, the draw pile, the discard pile, the player
+ * to move, the phase of the turn, the turn counters and the scores.  GinRummyGame plays its games through a GameState,
+ * and search or simulation can copy a state and apply and undo moves on it.
+ *
+ * Moves are ints: a card id number discards that card, and DRAW_FACE_UP, DRAW_FACE_DOWN, DECLINE (declining the
+ * initial face-up card without drawing), KNOCK and CONTINUE (not knocking) are the other moves.  apply(int) makes a
+ * legal move in constant time and returns an undo token; undo(int, int) with the move and its token restores the state
+ * before the move, so moves are undone in reverse order.  Knocking ends play of the round; melding, laying off and
+ * scoring are left to the caller, which adds the points with addScore and starts the next round with deal.
+ *
+ * The draw pile is a Deck (card id numbers in a byte array with a size), from which drawn cards are not erased, and
+ * the discard pile a byte array with a size, so copying a state copies two small arrays and a few fields.
+ */
+public class GameState {
+
+	/**
+	 * Moves other than discards, which are card id numbers.  Move numbers start after the 52 card id numbers.
+	 */
+	public static final int DRAW_FACE_UP = 52, DRAW_FACE_DOWN = 53, KNOCK = 54, CONTINUE = 55, DECLINE = 56;
+
+	/**
+	 * Phases: the player to move draws, discards, or decides whether to knock; play of the round ended with a knock,
+	 * or without one when the draw pile was reduced to two cards
+	 */
+	public static final int DRAW = 0, DISCARD = 1, KNOCK_DECISION = 2, KNOCKED = 3, CANCELLED = 4;
+
+	/**
+	 * Hand size (before and after turn)
+	 */
+	private static final int HAND_SIZE = 10;
+
+	/**
+	 * Hands of the players as card set bitstrings, indexed by player number
+	 */
+	private final long[] hands = new long[2];
+
+	/**
+	 * Draw pile
+	 */
+	private final Deck deck = new Deck();
+
+	/**
+	 * Card id numbers of the discard pile, bottom first, in the first numDiscards entries
+	 */
+	private final byte[] discards = new byte[Card.NUM_CARDS];
+	private int numDiscards = 0;
+
+	/**
+	 * Player scores, indexed by player number
+	 */
+	private final int[] scores = new int[2];
+
+	/**
+	 * Starting player of the round, player to move, and phase of the turn
+	 */
+	private int startingPlayer = 0, currentPlayer = 0, phase = CANCELLED;
+
+	/**
+	 * Number of turns taken in the round, counting declines of the initial face-up card
+	 */
+	private int turnsTaken = 0;
+
+	/**
+	 * Initial face-up card of the round
+	 */
+	private int firstFaceUpCard = -1;
+
+	/**
+	 * Card drawn in the current turn and whether it was drawn face up, or -1
+	 */
+	private int drawnCard = -1;
+	private boolean drawnFaceUp = false;
+
+	/**
+	 * Create a state of a game not yet started.
+	 */
+	public GameState() {
+	}
+
+	/**
+	 * Create a copy of a state.
+	 * @param state state to copy
+	 */
+	public GameState(GameState state) {
+		copy(state);
+	}
+
+	/**
+	 * Make this state a copy of another state.
+	 * @param state state to copy
+	 */
+	public void copy(GameState state) {
+		hands[0] = state.hands[0];
+		hands[1] = state.hands[1];
+		deck.copy(state.deck);
+		System.arraycopy(state.discards, 0, discards, 0, state.numDiscards);
+		numDiscards = state.numDiscards;
+		scores[0] = state.scores[0];
+		scores[1] = state.scores[1];
+		startingPlayer = state.startingPlayer;
+		currentPlayer = state.currentPlayer;
+		phase = state.phase;
+		turnsTaken = state.turnsTaken;
+		firstFaceUpCard = state.firstFaceUpCard;
+		drawnCard = state.drawnCard;
+		drawnFaceUp = state.drawnFaceUp;
+	}
+
+	/**
+	 * Start a game: reset the scores and set the starting player of the first round.
+	 * @param startingPlayer starting player of the first round
+	 */
+	public void startGame(int startingPlayer) {
+		scores[0] = scores[1] = 0;
+		this.startingPlayer = startingPlayer;
+		phase = CANCELLED;
+	}
+
+	/**
+	 * Start a round: shuffle the deck, deal the hands alternately from the top of the draw pile and turn up its next
+	 * card.  If the previous round ended with a knock, the other player starts this round.
+	 * @param random random number generator determining the shuffle
+	 */
+	public void deal(SplittableRandom random) {
+		if (phase == KNOCKED)
+			startingPlayer = 1 - startingPlayer;
+		deck.shuffle(random);
+		hands[0] = hands[1] = 0L;
+		for (int i = 0; i < 2 * HAND_SIZE; i++)
+			hands[i % 2] |= 1L << deck.popId();
+		numDiscards = 0;
+		discards[numDiscards++] = (byte) deck.popId();
+		firstFaceUpCard = discards[0];
+		currentPlayer = startingPlayer;
+		phase = DRAW;
+		turnsTaken = 0;
+		drawnCard = -1;
+		drawnFaceUp = false;
+	}
+
+	/**
+	 * Set up a turn of a round in progress, e.g. a determinization of what a player knows for search, with the hands
+	 * and the draw pile set by setHand and setDrawPile: the player to move, the phase and the face-up card, which is
+	 * the only card of the discard pile.  No card has been drawn in the turn.  The turn counters only matter for the
+	 * rules of the initial face-up card.
+	 * @param currentPlayer player to move
+	 * @param phase DRAW, DISCARD or KNOCK_DECISION
+	 * @param faceUpCard id number of the face-up card, or -1 for none (after a face-up draw)
+	 * @param turnsTaken number of turns taken in the round, counting declines of the initial face-up card
+	 * @param firstFaceUpCard id number of the initial face-up card, or -1 once it is no longer face up
+	 */
+	public void setTurn(int currentPlayer, int phase, int faceUpCard, int turnsTaken, int firstFaceUpCard) {
+		this.currentPlayer = currentPlayer;
+		this.phase = phase;
+		numDiscards = 0;
+		if (faceUpCard >= 0)
+			discards[numDiscards++] = (byte) faceUpCard;
+		this.turnsTaken = turnsTaken;
+		this.firstFaceUpCard = firstFaceUpCard;
+		drawnCard = -1;
+		drawnFaceUp = false;
+	}
+
+	/**
+	 * Set the hand of a player.
+	 * @param player player number
+	 * @param hand card set bitstring of the hand
+	 */
+	public void setHand(int player, long hand) {
+		hands[player] = hand;
+	}
+
+	/**
+	 * Set the draw pile.
+	 * @param cardIds card id numbers, bottom first, in the first size entries
+	 * @param size number of cards
+	 */
+	public void setDrawPile(byte[] cardIds, int size) {
+		deck.set(cardIds, size);
+	}
+
+	/**
+	 * Return the hand of a player.
+	 * @param player player number
+	 * @return the card set bitstring of the player's hand
+	 */
+	public long getHand(int player) {
+		return hands[player];
+	}
+
+	/**
+	 * Return the number of cards in the draw pile.
+	 * @return the number of cards in the draw pile
+	 */
+	public int getDeckSize() {
+		return deck.size();
+	}
+
+	/**
+	 * Return the bitstring of the cards in the draw pile.
+	 * @return the bitstring of the cards in the draw pile
+	 */
+	public long getDeckBitstring() {
+		return deck.getBitstring();
+	}
+
+	/**
+	 * Return the top card of the discard pile.
+	 * @return the id number of the face-up card, or -1 if the discard pile is empty
+	 */
+	public int getFaceUpCard() {
+		return numDiscards == 0 ? -1 : discards[numDiscards - 1];
+	}
+
+	/**
+	 * Return the number of cards in the discard pile.
+	 * @return the number of cards in the discard pile
+	 */
+	public int getNumDiscards() {
+		return numDiscards;
+	}
+
+	/**
+	 * Return a card of the discard pile.
+	 * @param index index of the card from the bottom of the pile (0 to getNumDiscards() - 1)
+	 * @return the id number of the card
+	 */
+	public int getDiscard(int index) {
+		return discards[index];
+	}
+
+	/**
+	 * Return a player's score.
+	 * @param player player number
+	 * @return the player's score
+	 */
+	public int getScore(int player) {
+		return scores[player];
+	}
+
+	/**
+	 * Add points to a player's score.
+	 * @param player player number
+	 * @param points points to add
+	 */
+	public void addScore(int player, int points) {
+		scores[player] += points;
+	}
+
+	/**
+	 * Return whether or not a player has reached the goal score.
+	 * @return whether or not the game is over
+	 */
+	public boolean isGameOver() {
+		return scores[0] >= GinRummyUtil.GOAL_SCORE || scores[1] >= GinRummyUtil.GOAL_SCORE;
+	}
+
+	/**
+	 * Return the starting player of the round.
+	 * @return the starting player of the round
+	 */
+	public int getStartingPlayer() {
+		return startingPlayer;
+	}
+
+	/**
+	 * Return the player to move, or the knocking player after a knock.
+	 * @return the player to move
+	 */
+	public int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	/**
+	 * Return the phase of the turn: DRAW, DISCARD, KNOCK_DECISION, KNOCKED or CANCELLED.
+	 * @return the phase of the turn
+	 */
+	public int getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Return the number of turns taken in the round, counting declines of the initial face-up card.
+	 * @return the number of turns taken in the round
+	 */
+	public int getTurnsTaken() {
+		return turnsTaken;
+	}
+
+	/**
+	 * Return the initial face-up card of the round.
+	 * @return the id number of the initial face-up card
+	 */
+	public int getFirstFaceUpCard() {
+		return firstFaceUpCard;
+	}
+
+	/**
+	 * Return the card drawn in the current turn.
+	 * @return the id number of the card drawn, or -1 if none was drawn yet in the round
+	 */
+	public int getDrawnCard() {
+		return drawnCard;
+	}
+
+	/**
+	 * Return whether or not the card drawn in the current turn was drawn face up.
+	 * @return whether or not the card drawn was drawn face up
+	 */
+	public boolean isDrawnFaceUp() {
+		return drawnFaceUp;
+	}
+
+	/**
+	 * Return whether or not the player to draw is offered the face-up card: always, except on the third turn when
+	 * both players declined the initial face-up card and the starting player must draw face down.
+	 * @return whether or not the face-up card is offered
+	 */
+	public boolean isFaceUpOffered() {
+		return phase == DRAW && !(turnsTaken == 2 && getFaceUpCard() == firstFaceUpCard);
+	}
+
+	/**
+	 * Return whether or not a move is legal.  Knocking is legal with at most the maximum deadwood after melding.
+	 * @param move move
+	 * @return whether or not the move is legal
+	 */
+	public boolean isLegal(int move) {
+		switch (phase) {
+		case DRAW:
+			boolean initialOffer = turnsTaken < 2 && getFaceUpCard() == firstFaceUpCard;
+			if (move == DRAW_FACE_UP)
+				return isFaceUpOffered();
+			if (move == DECLINE)
+				return initialOffer;
+			return move == DRAW_FACE_DOWN && !initialOffer && deck.size() > 0;
+		case DISCARD:
+			return move >= 0 && move < Card.NUM_CARDS && (hands[currentPlayer] & 1L << move) != 0L && !(drawnFaceUp && move == drawnCard);
+		case KNOCK_DECISION:
+			return move == CONTINUE || move == KNOCK && GinRummyUtil.getBestDeadwood(hands[currentPlayer]) <= GinRummyUtil.MAX_DEADWOOD;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Store the legal moves of the player to move and return their number.
+	 * @param moves array receiving the moves (11 entries always suffice)
+	 * @return the number of legal moves, 0 after play of the round ended
+	 */
+	public int getLegalMoves(int[] moves) {
+		int numMoves = 0;
+		switch (phase) {
+		case DRAW:
+			for (int move = DRAW_FACE_UP; move <= DECLINE; move++)
+				if (move != KNOCK && move != CONTINUE && isLegal(move))
+					moves[numMoves++] = move;
+			break;
+		case DISCARD:
+			for (long cards = hands[currentPlayer]; cards != 0L; cards &= cards - 1) {
+				int id = Long.numberOfTrailingZeros(cards);
+				if (!(drawnFaceUp && id == drawnCard))
+					moves[numMoves++] = id;
+			}
+			break;
+		case KNOCK_DECISION:
+			if (isLegal(KNOCK))
+				moves[numMoves++] = KNOCK;
+			moves[numMoves++] = CONTINUE;
+			break;
+		}
+		return numMoves;
+	}
+
+	/**
+	 * Make a legal move.  Legality is not checked.
+	 * @param move legal move
+	 * @return the undo token of the move, for undo(int, int)
+	 */
+	public int apply(int move) {
+		switch (move) {
+		case DRAW_FACE_UP:
+		case DRAW_FACE_DOWN:
+			int token = (drawnCard + 1) << 1 | (drawnFaceUp ? 1 : 0);
+			drawnFaceUp = move == DRAW_FACE_UP;
+			drawnCard = drawnFaceUp ? discards[--numDiscards] : deck.popId();
+			hands[currentPlayer] |= 1L << drawnCard;
+			phase = DISCARD;
+			return token;
+		case KNOCK:
+			phase = KNOCKED;
+			return 0;
+		case CONTINUE:
+		case DECLINE:
+			turnsTaken++;
+			currentPlayer = 1 - currentPlayer;
+			phase = deck.size() > 2 ? DRAW : CANCELLED;
+			return 0;
+		default: // discard
+			hands[currentPlayer] &= ~(1L << move);
+			discards[numDiscards++] = (byte) move;
+			phase = KNOCK_DECISION;
+			return 0;
+		}
+	}
+
+	/**
+	 * Undo the last move made.
+	 * @param move the last move made
+	 * @param token the undo token returned by apply(move)
+	 */
+	public void undo(int move, int token) {
+		switch (move) {
+		case DRAW_FACE_UP:
+		case DRAW_FACE_DOWN:
+			hands[currentPlayer] &= ~(1L << drawnCard);
+			if (drawnFaceUp)
+				discards[numDiscards++] = (byte) drawnCard;
+			else
+				deck.unpopId();
+			drawnCard = (token >> 1) - 1;
+			drawnFaceUp = (token & 1) != 0;
+			phase = DRAW;
+			break;
+		case KNOCK:
+			phase = KNOCK_DECISION;
+			break;
+		case CONTINUE:
+		case DECLINE:
+			turnsTaken--;
+			currentPlayer = 1 - currentPlayer;
+			phase = move == CONTINUE ? KNOCK_DECISION : DRAW;
+			break;
+		default: // discard
+			numDiscards--;
+			hands[currentPlayer] |= 1L << move;
+			phase = DISCARD;
+		}
+	}
+
+	/**
+	 * Return whether or not two states are equal in everything apply and undo change: the hands, the draw pile (its
+	 * cards and top card), the discard pile, the player to move, the phase, the turns taken and the card drawn.
+	 * @param a a state
+	 * @param b another state
+	 * @return whether or not the states are equal
+	 */
+	private static boolean isEqual(GameState a, GameState b) {
+		if (a.hands[0] != b.hands[0] || a.hands[1] != b.hands[1] || a.deck.size() != b.deck.size()
+				|| a.deck.getBitstring() != b.deck.getBitstring() || a.numDiscards != b.numDiscards
+				|| a.currentPlayer != b.currentPlayer || a.phase != b.phase || a.turnsTaken != b.turnsTaken
+				|| a.drawnCard != b.drawnCard || a.drawnFaceUp != b.drawnFaceUp)
+			return false;
+		if (!a.deck.isEmpty() && a.deck.peekId() != b.deck.peekId())
+			return false;
+		for (int i = 0; i < a.numDiscards; i++)
+			if (a.discards[i] != b.discards[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Play rounds of random legal moves and check at every state that getLegalMoves returns exactly the moves isLegal
+	 * accepts, that a copy equals the state, and that undo restores the state before each move.  Exits with status 1
+	 * on the first failure.
+	 * @param args number of rounds (default 10000) and random seed (default 617)
+	 */
+	public static void main(String[] args) {
+		int numRounds = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 617);
+		GameState state = new GameState(), before = new GameState();
+		int[] moves = new int[11];
+		long numMoves = 0;
+		state.startGame(0);
+		for (int round = 0; round < numRounds; round++) {
+			state.deal(random);
+			while (state.getPhase() < KNOCKED) {
+				int numLegal = state.getLegalMoves(moves);
+				long legal = 0L, listed = 0L; // moves 0 to DECLINE as bits
+				for (int move = 0; move <= DECLINE; move++)
+					if (state.isLegal(move))
+						legal |= 1L << move;
+				for (int i = 0; i < numLegal; i++)
+					listed |= 1L << moves[i];
+				if (numLegal == 0 || legal != listed || Long.bitCount(listed) != numLegal)
+					fail(round, "getLegalMoves disagrees with isLegal", state);
+				before.copy(state);
+				if (!isEqual(before, new GameState(state)))
+					fail(round, "copy differs", state);
+				int move = moves[random.nextInt(numLegal)];
+				int token = state.apply(move);
+				GameState after = new GameState(state);
+				state.undo(move, token);
+				if (!isEqual(state, before))
+					fail(round, "undo of move " + move + " differs", state);
+				state.apply(move);
+				if (!isEqual(state, after))
+					fail(round, "apply of move " + move + " after undo differs", state);
+				numMoves++;
+			}
+		}
+		System.out.printf("%d rounds, %d moves checked.\n", numRounds, numMoves);
+	}
+
+	/**
+	 * Report a failed check and exit with status 1.
+	 * @param round round number
+	 * @param message description of the failure
+	 * @param state state of the failure
+	 */
+	private static void fail(int round, String message, GameState state) {
+		System.out.printf("Round %d: %s (player %d, phase %d, turns taken %d).\n", round, message, state.currentPlayer,
+				state.phase, state.turnsTaken);
+		System.exit(1);
+	}
+}
@@ -1,6 +1,4 @@
-import java.util.ArrayList;
-import java.util.Random;
-import java.util.Stack;
+import java.util.SplittableRandom;
 
 
 /**
@@ -31,270 +29,375 @@ Software Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA
 public class GinRummyGame {
 	
 	/**
-	 * Random number generator
+	 * Log level (see VerboseLog) of games created afterwards
 	 */
-	private static final Random RANDOM = new Random();
+	private static int playLogLevel = VerboseLog.NONE;
 	
 	/**
-	 * Hand size (before and after turn). After draw and before discard there is one extra card.
+	 * Two Gin Rummy players numbered according to their array index.
 	 */
-	private static final int HAND_SIZE = 10;
+	private FastGinRummyPlayer[] players;
 	
 	/**
-	 * Whether or not to print information during game play
+	 * Random number generator of the seeds of the games played by play()
 	 */
-	private static boolean playVerbose = false;
+	private SplittableRandom seeds = new SplittableRandom();
 	
 	/**
-	 * Two Gin Rummy players numbered according to their array index.
+	 * Seed of the most recent game
+	 */
+	private long gameSeed;
+	
+	/**
+	 * State of the game being played: hands, draw and discard piles, turn and scores
+	 */
+	private final GameState state = new GameState();
+
+	/**
+	 * Meld bitstrings of the knocking player and of the opponent
+	 */
+	private final long[] knockMelds = new long[GinRummyUtil.MAX_MELDS], opponentMelds = new long[GinRummyUtil.MAX_MELDS];
+	
+	/**
+	 * Bitstrings of the cards laid off on each knocking meld
+	 */
+	private final long[] layoffs = new long[GinRummyUtil.MAX_MELDS];
+	
+	/**
+	 * Log level (see VerboseLog) of this game
+	 */
+	private int logLevel = playLogLevel;
+	
+	/**
+	 * Log receiving printed output, or null for the default log writing to System.out
+	 */
+	private VerboseLog log = null;
+	
+	/**
+	 * Player scores at the end of the most recent game
+	 */
+	private int[] scores = new int[2];
+	
+	/**
+	 * Receiver of game events, or null
 	 */
-	private GinRummyPlayer[] players;
+	private GameEventSink eventSink = null;
 	
 	/**
-	 * Set whether or not there is to be printed output during gameplay.
+	 * Set whether or not there is to be printed output during gameplay of games created after this call.
 	 * @param playVerbose whether or not there is to be printed output during gameplay
 	 */
 	public static void setPlayVerbose(boolean playVerbose) {
-		GinRummyGame.playVerbose = playVerbose;
+		setPlayLogLevel(playVerbose ? VerboseLog.DIAGNOSTIC : VerboseLog.NONE);
+	}
+	
+	/**
+	 * Set the log level of games created after this call: VerboseLog.NONE, PLAY (game play only) or DIAGNOSTIC
+	 * (game play and each player's best melds and deadwood after each discard, as with setPlayVerbose(true)).
+	 * @param playLogLevel log level of games created afterwards
+	 */
+	public static void setPlayLogLevel(int playLogLevel) {
+		GinRummyGame.playLogLevel = playLogLevel;
 	}
 	
 	/**
-	 * Create a GinRummyGame with two given players
+	 * Create a GinRummyGame with two given players.  Players not implementing FastGinRummyPlayer are wrapped in a GinRummyPlayerAdapter.
 	 * @param player0 Player 0
 	 * @param player1 Player 1
 	 */
 	public GinRummyGame(GinRummyPlayer player0, GinRummyPlayer player1) {
-		players = new GinRummyPlayer[] {player0, player1};
+		this(GinRummyPlayerAdapter.adapt(player0), GinRummyPlayerAdapter.adapt(player1));
+	}
+	
+	/**
+	 * Create a GinRummyGame with two given players called with card id numbers and bitstrings
+	 * @param player0 Player 0
+	 * @param player1 Player 1
+	 */
+	public GinRummyGame(FastGinRummyPlayer player0, FastGinRummyPlayer player1) {
+		players = new FastGinRummyPlayer[] {player0, player1};
+	}
+	
+	/**
+	 * Set whether or not there is to be printed output during gameplay of this game.
+	 * @param verbose whether or not there is to be printed output during gameplay of this game
+	 */
+	public void setVerbose(boolean verbose) {
+		setLogLevel(verbose ? VerboseLog.DIAGNOSTIC : VerboseLog.NONE);
+	}
+	
+	/**
+	 * Set the log level of this game (see setPlayLogLevel).
+	 * @param logLevel log level of this game
+	 */
+	public void setLogLevel(int logLevel) {
+		this.logLevel = logLevel;
+	}
+	
+	/**
+	 * Set the log receiving printed output of this game, or null for the default log writing to System.out.
+	 * @param log log receiving printed output
+	 */
+	public void setLog(VerboseLog log) {
+		this.log = log;
+	}
+	
+	/**
+	 * Set the receiver of the events of the following games, or null for none.
+	 * @param eventSink receiver of game events, or null
+	 */
+	public void setEventSink(GameEventSink eventSink) {
+		this.eventSink = eventSink;
+	}
+	
+	/**
+	 * Seed the generator of game seeds so that the following games played by play() are dealt reproducibly.
+	 * @param seed random seed
+	 */
+	public void setSeed(long seed) {
+		seeds = new SplittableRandom(seed);
+	}
+	
+	/**
+	 * Return the seed of the most recent game.  Passing it to play(long) deals the same game again.
+	 * @return the seed of the most recent game
+	 */
+	public long getGameSeed() {
+		return gameSeed;
+	}
+	
+	/**
+	 * Return the player scores at the end of the most recent game, indexed by player number.
+	 * @return the player scores at the end of the most recent game
+	 */
+	public int[] getScores() {
+		return scores.clone();
 	}
 
 	/**
-	 * Play a game of Gin Rummy and return the winning player number 0 or 1.
+	 * Play a game of Gin Rummy with the next game seed and return the winning player number 0 or 1.
 	 * @return the winning player number 0 or 1
 	 */
-	@SuppressWarnings("unchecked")
 	public int play() {
-		int[] scores = new int[2];
-		ArrayList<ArrayList<Card>> hands = new ArrayList<ArrayList<Card>>();
-		hands.add(new ArrayList<Card>());
-		hands.add(new ArrayList<Card>());
-		int startingPlayer = RANDOM.nextInt(2);
+		return play(seeds.nextLong());
+	}
+
+	/**
+	 * Play a game of Gin Rummy and return the winning player number 0 or 1.
+	 * The starting player and all shuffles are determined by the given game seed.
+	 * @param gameSeed seed of the game
+	 * @return the winning player number 0 or 1
+	 */
+	public int play(long gameSeed) {
+		this.gameSeed = gameSeed;
+		SplittableRandom random = new SplittableRandom(gameSeed);
+		scores = new int[2];
+		state.startGame(random.nextInt(2));
+		boolean verbose = logLevel >= VerboseLog.PLAY;
+		VerboseLog log = !verbose ? null : this.log != null ? this.log : VerboseLog.getDefault();
+		if (eventSink != null)
+			eventSink.gameStart(gameSeed);
 		
-		while (scores[0] < GinRummyUtil.GOAL_SCORE && scores[1] < GinRummyUtil.GOAL_SCORE) { // while game not over
-			int currentPlayer = startingPlayer;
-			int opponent = (currentPlayer == 0) ? 1 : 0;
-			
+		while (!state.isGameOver()) { // while game not over
 			// get shuffled deck and deal cards
-			Stack<Card> deck = Card.getShuffle(RANDOM.nextInt());
-			hands.get(0).clear();
-			hands.get(1).clear();
-			for (int i = 0; i < 2 * HAND_SIZE; i++)
-				hands.get(i % 2).add(deck.pop());
+			state.deal(random);
+			int startingPlayer = state.getStartingPlayer();
 			for (int i = 0; i < 2; i++) {
-				Card[] handArr = new Card[HAND_SIZE];
-				hands.get(i).toArray(handArr);
-				players[i].startGame(i, startingPlayer, handArr); 
-				if (playVerbose)
-					System.out.printf("Player %d is dealt %s.\n", i, hands.get(i));
+				players[i].startGame(i, startingPlayer, state.getHand(i)); 
+				if (verbose)
+					log.printf("Player %d is dealt %s.\n", i, VerboseLog.cards(state.getHand(i)));
 			}
-			if (playVerbose)
-				System.out.printf("Player %d starts.\n", startingPlayer);
-			Stack<Card> discards = new Stack<Card>();
-			discards.push(deck.pop());
-			if (playVerbose)
-				System.out.printf("The initial face up card is %s.\n", discards.peek());
-			Card firstFaceUpCard = discards.peek();
-			int turnsTaken = 0;
-			ArrayList<ArrayList<Card>> knockMelds = null;
-			while (deck.size() > 2) { // while the deck has more than two cards remaining, play round
+			if (verbose)
+				log.printf("Player %d starts.\n", startingPlayer);
+			int firstFaceUpCard = state.getFirstFaceUpCard();
+			if (verbose)
+				log.printf("The initial face up card is %s.\n", Card.getCard(firstFaceUpCard));
+			if (eventSink != null)
+				eventSink.roundStart(startingPlayer, state.getHand(0), state.getHand(1), firstFaceUpCard);
+			int numKnockMelds = -1;
+			while (state.getPhase() == GameState.DRAW) { // while the deck has more than two cards remaining, play round
+				int currentPlayer = state.getCurrentPlayer();
 				// DRAW
 				boolean drawFaceUp = false;
-				Card faceUpCard = discards.peek();
+				int faceUpCard = state.getFaceUpCard();
 				// offer draw face-up iff not 3rd turn with first face up card (decline automatically in that case)
-				if (!(turnsTaken == 2 && faceUpCard == firstFaceUpCard)) { // both players declined and 1st player must draw face down
+				if (state.isFaceUpOffered()) { // both players declined and 1st player must draw face down
 					drawFaceUp = players[currentPlayer].willDrawFaceUpCard(faceUpCard);
-					if (playVerbose && !drawFaceUp && faceUpCard == firstFaceUpCard && turnsTaken < 2)
-						System.out.printf("Player %d declines %s.\n", currentPlayer, firstFaceUpCard);
-				}
-				if (!(!drawFaceUp && turnsTaken < 2 && faceUpCard == firstFaceUpCard)) { // continue with turn if not initial declined option
-					Card drawCard = drawFaceUp ? discards.pop() : deck.pop();
-					for (int i = 0; i < 2; i++)
-						players[i].reportDraw(currentPlayer, (i == currentPlayer || drawFaceUp) ? drawCard : null);
-					if (playVerbose)
-						System.out.printf("Player %d draws %s.\n", currentPlayer, drawCard);
-					hands.get(currentPlayer).add(drawCard);
-
-					// DISCARD
-					Card discardCard = players[currentPlayer].getDiscard();
-					if (!hands.get(currentPlayer).contains(discardCard) || discardCard == faceUpCard) {
-						if (playVerbose)
-							System.out.printf("Player %d discards %s illegally and forfeits.\n", currentPlayer, discardCard);
-						return opponent;
+					if (!drawFaceUp && state.isLegal(GameState.DECLINE)) {
+						if (verbose)
+							log.printf("Player %d declines %s.\n", currentPlayer, Card.getCard(firstFaceUpCard));
+						if (eventSink != null)
+							eventSink.decline(currentPlayer, firstFaceUpCard);
+						state.apply(GameState.DECLINE);
+						continue; // initial declined option ends the turn
 					}
-					hands.get(currentPlayer).remove(discardCard);
-					for (int i = 0; i < 2; i++) 
-						players[i].reportDiscard(currentPlayer, discardCard);
-					if (playVerbose)
-						System.out.printf("Player %d discards %s.\n", currentPlayer, discardCard);
-					discards.push(discardCard);
-					if (playVerbose) {
-						ArrayList<Card> unmeldedCards = (ArrayList<Card>) hands.get(currentPlayer).clone();
-						ArrayList<ArrayList<ArrayList<Card>>> bestMelds = GinRummyUtil.cardsToBestMeldSets(unmeldedCards);
-						if (bestMelds.isEmpty()) 
-							System.out.printf("Player %d has %s with %d deadwood.\n", currentPlayer, unmeldedCards, GinRummyUtil.getDeadwoodPoints(unmeldedCards));
-						else {
-							ArrayList<ArrayList<Card>> melds = bestMelds.get(0);
-							for (ArrayList<Card> meld : melds)
-								for (Card card : meld)
-									unmeldedCards.remove(card);
-							melds.add(unmeldedCards);
-							System.out.printf("Player %d has %s with %d deadwood.\n", currentPlayer, melds, GinRummyUtil.getDeadwoodPoints(unmeldedCards));
-						}
-					}
-						
-					// CHECK FOR KNOCK 
-					knockMelds = players[currentPlayer].getFinalMelds();
-					if (knockMelds != null)
-						break; // player knocked; end of round
 				}
+				state.apply(drawFaceUp ? GameState.DRAW_FACE_UP : GameState.DRAW_FACE_DOWN);
+				int drawCard = state.getDrawnCard();
+				for (int i = 0; i < 2; i++)
+					players[i].reportDraw(currentPlayer, (i == currentPlayer || drawFaceUp) ? drawCard : -1);
+				if (verbose)
+					log.printf("Player %d draws %s.\n", currentPlayer, Card.getCard(drawCard));
+				if (eventSink != null)
+					eventSink.draw(currentPlayer, drawCard, drawFaceUp);
 
-				turnsTaken++;
-				currentPlayer = (currentPlayer == 0) ? 1 : 0;
-				opponent = (currentPlayer == 0) ? 1 : 0;
+				// DISCARD
+				int discardCard = players[currentPlayer].getDiscard();
+				if (discardCard < 0 || discardCard >= Card.NUM_CARDS || !state.isLegal(discardCard)) {
+					if (verbose)
+						log.printf("Player %d discards %s illegally and forfeits.\n", currentPlayer, discardCard < 0 || discardCard >= Card.NUM_CARDS ? null : Card.getCard(discardCard));
+					return forfeit(currentPlayer);
+				}
+				state.apply(discardCard);
+				for (int i = 0; i < 2; i++) 
+					players[i].reportDiscard(currentPlayer, discardCard);
+				if (verbose)
+					log.printf("Player %d discards %s.\n", currentPlayer, Card.getCard(discardCard));
+				if (eventSink != null)
+					eventSink.discard(currentPlayer, discardCard);
+				if (logLevel >= VerboseLog.DIAGNOSTIC) // hand solved by the log writer thread
+					log.printf("Player %d has %s.\n", currentPlayer, VerboseLog.hand(state.getHand(currentPlayer)));
+					
+				// CHECK FOR KNOCK 
+				numKnockMelds = players[currentPlayer].getFinalMelds(knockMelds);
+				if (numKnockMelds >= 0)
+					break; // player knocked; end of round
+				state.apply(GameState.CONTINUE);
 			}
 			
-			if (knockMelds != null) { // round didn't end due to non-knocking and 2 cards remaining in draw pile
+			if (numKnockMelds >= 0) { // round didn't end due to non-knocking and 2 cards remaining in draw pile
+				int currentPlayer = state.getCurrentPlayer();
+				int opponent = 1 - currentPlayer;
 				// check legality of knocking meld
-				long handBitstring = GinRummyUtil.cardsToBitstring(hands.get(currentPlayer));
-				long unmelded = handBitstring;
-				for (ArrayList<Card> meld : knockMelds) {
-					long meldBitstring = GinRummyUtil.cardsToBitstring(meld);
-					if (!GinRummyUtil.getAllMeldBitstrings().contains(meldBitstring) // non-meld ...
+				long unmelded = state.getHand(currentPlayer);
+				for (int i = 0; i < numKnockMelds; i++) {
+					long meldBitstring = knockMelds[i];
+					if (!GinRummyUtil.isMeld(meldBitstring) // non-meld ...
 							|| (meldBitstring & unmelded) != meldBitstring) { // ... or meld not in hand
-						if (playVerbose)
-							System.out.printf("Player %d melds %s illegally and forfeits.\n", currentPlayer, knockMelds);
-						return opponent;
+						if (verbose)
+							log.printf("Player %d melds %s illegally and forfeits.\n", currentPlayer, VerboseLog.melds(knockMelds, numKnockMelds));
+						return forfeit(currentPlayer);
 					}
 					unmelded &= ~meldBitstring; // remove successfully melded cards from 
 				}
 				// compute knocking deadwood
-				int knockingDeadwood = GinRummyUtil.getDeadwoodPoints(knockMelds, hands.get(currentPlayer));
+				int knockingDeadwood = GinRummyUtil.getDeadwoodPoints(unmelded);
 				if (knockingDeadwood > GinRummyUtil.MAX_DEADWOOD) {
-					if (playVerbose)
-						System.out.printf("Player %d melds %s with greater than %d deadwood and forfeits.\n", currentPlayer, knockMelds, knockingDeadwood);
-					return opponent;
+					if (verbose)
+						log.printf("Player %d melds %s with greater than %d deadwood and forfeits.\n", currentPlayer, VerboseLog.melds(knockMelds, numKnockMelds), knockingDeadwood);
+					return forfeit(currentPlayer);
 				}
+				if (eventSink != null)
+					eventSink.knock(currentPlayer, knockMelds, numKnockMelds);
 				
-				ArrayList<ArrayList<Card>> meldsCopy = new ArrayList<ArrayList<Card>>();
-				for (ArrayList<Card> meld : knockMelds)
-					meldsCopy.add((ArrayList<Card>) meld.clone());
 				for (int i = 0; i < 2; i++) 
-					players[i].reportFinalMelds(currentPlayer, meldsCopy);
-				if (playVerbose)
+					players[i].reportFinalMelds(currentPlayer, knockMelds, numKnockMelds);
+				if (verbose)
 					if (knockingDeadwood > 0) 
-						System.out.printf("Player %d melds %s with %d deadwood from %s.\n", currentPlayer, knockMelds, knockingDeadwood, GinRummyUtil.bitstringToCards(unmelded));
+						log.printf("Player %d melds %s with %d deadwood from %s.\n", currentPlayer, VerboseLog.melds(knockMelds, numKnockMelds), knockingDeadwood, VerboseLog.cards(unmelded));
 					else
-						System.out.printf("Player %d goes gin with melds %s.\n", currentPlayer, knockMelds);
+						log.printf("Player %d goes gin with melds %s.\n", currentPlayer, VerboseLog.melds(knockMelds, numKnockMelds));
 
 				// get opponent meld
-				ArrayList<ArrayList<Card>> opponentMelds = players[opponent].getFinalMelds();
-				for (ArrayList<Card> meld : opponentMelds)
-					meldsCopy.add((ArrayList<Card>) meld.clone());
-				meldsCopy = new ArrayList<ArrayList<Card>>();
+				int numOpponentMelds = Math.max(0, players[opponent].getFinalMelds(opponentMelds));
 				for (int i = 0; i < 2; i++) 
-					players[i].reportFinalMelds(opponent, meldsCopy);
+					players[i].reportFinalMelds(opponent, opponentMelds, numOpponentMelds);
 				
 				// check legality of opponent meld
-				long opponentHandBitstring = GinRummyUtil.cardsToBitstring(hands.get(opponent));
-				long opponentUnmelded = opponentHandBitstring;
-				for (ArrayList<Card> meld : opponentMelds) {
-					long meldBitstring = GinRummyUtil.cardsToBitstring(meld);
-					if (!GinRummyUtil.getAllMeldBitstrings().contains(meldBitstring) // non-meld ...
+				long opponentUnmelded = state.getHand(opponent);
+				for (int i = 0; i < numOpponentMelds; i++) {
+					long meldBitstring = opponentMelds[i];
+					if (!GinRummyUtil.isMeld(meldBitstring) // non-meld ...
 							|| (meldBitstring & opponentUnmelded) != meldBitstring) { // ... or meld not in hand
-						if (playVerbose)
-							System.out.printf("Player %d melds %s illegally and forfeits.\n", opponent, opponentMelds);
-						return currentPlayer;
+						if (verbose)
+							log.printf("Player %d melds %s illegally and forfeits.\n", opponent, VerboseLog.melds(opponentMelds, numOpponentMelds));
+						return forfeit(opponent);
 					}
 					opponentUnmelded &= ~meldBitstring; // remove successfully melded cards from 
 				}
-				if (playVerbose)
-					System.out.printf("Player %d melds %s.\n", opponent, opponentMelds);
+				if (verbose)
+					log.printf("Player %d melds %s.\n", opponent, VerboseLog.melds(opponentMelds, numOpponentMelds));
+				if (eventSink != null)
+					eventSink.opponentMelds(opponent, opponentMelds, numOpponentMelds);
 
 				// lay off on knocking meld (if not gin)
-				ArrayList<Card> unmeldedCards = GinRummyUtil.bitstringToCards(opponentUnmelded);
 				if (knockingDeadwood > 0) { // knocking player didn't go gin
-					boolean cardWasLaidOff;
-					do { // attempt to lay each card off
-						cardWasLaidOff = false;
-						Card layOffCard = null;
-						ArrayList<Card> layOffMeld = null;
-						for (Card card : unmeldedCards) {
-							for (ArrayList<Card> meld : knockMelds) {
-								ArrayList<Card> newMeld = (ArrayList<Card>) meld.clone();
-								newMeld.add(card);
-								long newMeldBitstring = GinRummyUtil.cardsToBitstring(newMeld);
-								if (GinRummyUtil.getAllMeldBitstrings().contains(newMeldBitstring)) {
-									layOffCard = card;
-									layOffMeld = meld;
-									break;
-								}
-							}
-							if (layOffCard != null) {
-								if (playVerbose)
-									System.out.printf("Player %d lays off %s on %s.\n", opponent, layOffCard, layOffMeld);
-								for (int i = 0; i < 2; i++) 
-									players[i].reportLayoff(opponent, layOffCard, (ArrayList<Card>) layOffMeld.clone());
-								unmeldedCards.remove(layOffCard);
-								layOffMeld.add(layOffCard);
-								cardWasLaidOff = true;
-								break;
-							}
-								
+					opponentUnmelded &= ~GinRummyUtil.getLayoffs(knockMelds, numKnockMelds, opponentUnmelded, layoffs);
+					for (int i = 0; i < numKnockMelds; i++)
+						for (long cards = layoffs[i]; cards != 0L; ) {
+							// lay off outward from a run, so that each card extends the meld reported with it
+							long adjoining = cards & (knockMelds[i] << 1 | knockMelds[i] >>> 1);
+							int layOffCard = Long.numberOfTrailingZeros(adjoining != 0L ? adjoining : cards);
+							if (verbose)
+								log.printf("Player %d lays off %s on %s.\n", opponent, Card.getCard(layOffCard), VerboseLog.cards(knockMelds[i]));
+							for (int j = 0; j < 2; j++) 
+								players[j].reportLayoff(opponent, layOffCard, knockMelds[i]);
+							if (eventSink != null)
+								eventSink.layoff(opponent, layOffCard, knockMelds[i]);
+							knockMelds[i] |= 1L << layOffCard;
+							cards &= ~(1L << layOffCard);
 						}
-					} while (cardWasLaidOff);
 				}
-				int opponentDeadwood = 0;
-				for (Card card : unmeldedCards)
-					opponentDeadwood += GinRummyUtil.getDeadwoodPoints(card);
-				if (playVerbose)
-					System.out.printf("Player %d has %d deadwood with %s\n", opponent, opponentDeadwood, unmeldedCards); 
+				int opponentDeadwood = GinRummyUtil.getDeadwoodPoints(opponentUnmelded);
+				if (verbose)
+					log.printf("Player %d has %d deadwood with %s\n", opponent, opponentDeadwood, VerboseLog.cards(opponentUnmelded)); 
 
 				// compare deadwood and compute new scores
-				if (knockingDeadwood == 0) { // gin round win
-					scores[currentPlayer] += GinRummyUtil.GIN_BONUS + opponentDeadwood;
-					if (playVerbose)
-						System.out.printf("Player %d scores the gin bonus of %d plus opponent deadwood %d for %d total points.\n", currentPlayer, GinRummyUtil.GIN_BONUS, opponentDeadwood, GinRummyUtil.GIN_BONUS + opponentDeadwood); 
-				}
-				else if (knockingDeadwood < opponentDeadwood) { // non-gin round win
-					scores[currentPlayer] += opponentDeadwood - knockingDeadwood;
-					if (playVerbose)
-						System.out.printf("Player %d scores the deadwood difference of %d.\n", currentPlayer, opponentDeadwood - knockingDeadwood); 
-				}
-				else { // undercut win for opponent
-					scores[opponent] += GinRummyUtil.UNDERCUT_BONUS + knockingDeadwood - opponentDeadwood;
-					if (playVerbose)
-						System.out.printf("Player %d undercuts and scores the undercut bonus of %d plus deadwood difference of %d for %d total points.\n", opponent, GinRummyUtil.UNDERCUT_BONUS, knockingDeadwood - opponentDeadwood, GinRummyUtil.UNDERCUT_BONUS + knockingDeadwood - opponentDeadwood); 
+				int knockPoints = GinRummyUtil.getKnockPoints(knockingDeadwood, opponentDeadwood);
+				if (knockPoints > 0)
+					state.addScore(currentPlayer, knockPoints);
+				else
+					state.addScore(opponent, -knockPoints);
+				if (verbose) {
+					if (knockingDeadwood == 0) // gin round win
+						log.printf("Player %d scores the gin bonus of %d plus opponent deadwood %d for %d total points.\n", currentPlayer, GinRummyUtil.GIN_BONUS, opponentDeadwood, knockPoints); 
+					else if (knockPoints > 0) // non-gin round win
+						log.printf("Player %d scores the deadwood difference of %d.\n", currentPlayer, knockPoints); 
+					else // undercut win for opponent
+						log.printf("Player %d undercuts and scores the undercut bonus of %d plus deadwood difference of %d for %d total points.\n", opponent, GinRummyUtil.UNDERCUT_BONUS, knockingDeadwood - opponentDeadwood, -knockPoints); 
 				}
-				startingPlayer = (startingPlayer == 0) ? 1 : 0; // starting player alternates
+				state.apply(GameState.KNOCK); // starting player alternates
 			}
 			else { // If the round ends due to a two card draw pile with no knocking, the round is cancelled.
-				if (playVerbose)
-					System.out.println("The draw pile was reduced to two cards without knocking, so the hand is cancelled.");
+				if (verbose)
+					log.printf("The draw pile was reduced to two cards without knocking, so the hand is cancelled.\n");
 			}
 			
 			// report final hands
 			for (int i = 0; i < 2; i++)
 				for (int j = 0; j < 2; j++)
-					players[i].reportFinalHand(j, (ArrayList<Card>) hands.get(j).clone());
+					players[i].reportFinalHand(j, state.getHand(j));
 
 			// score reporting
-			if (playVerbose) 
-				System.out.printf("Player\tScore\n0\t%d\n1\t%d\n", scores[0], scores[1]);
+			for (int i = 0; i < 2; i++)
+				scores[i] = state.getScore(i);
+			if (eventSink != null)
+				eventSink.roundEnd(scores);
+			if (verbose) 
+				log.printf("Player\tScore\n0\t%d\n1\t%d\n", scores[0], scores[1]);
 			for (int i = 0; i < 2; i++) 
-				players[i].reportScores(scores.clone());
+				players[i].reportScores(scores);
+		}
+		if (verbose)
+			log.printf("Player %s wins.\n", scores[0] > scores[1] ? 0 : 1);
+		int winner = scores[0] >= GinRummyUtil.GOAL_SCORE ? 0 : 1;
+		if (eventSink != null)
+			eventSink.gameEnd(winner);
+		return winner;
+	}
+	
+	/**
+	 * End the game with the forfeit of the given player.
+	 * @param player forfeiting player
+	 * @return the winning player number
+	 */
+	private int forfeit(int player) {
+		int winner = 1 - player;
+		if (eventSink != null) {
+			eventSink.forfeit(player);
+			eventSink.gameEnd(winner);
 		}
-		if (playVerbose)
-			System.out.printf("Player %s wins.\n", scores[0] > scores[1] ? 0 : 1);
-		return scores[0] >= GinRummyUtil.GOAL_SCORE ? 0 : 1;
+		return winner;
 	}
 	
 	
@@ -307,9 +410,10 @@ public class GinRummyGame {
 		// Single verbose demonstration game
 		setPlayVerbose(true);
 		new GinRummyGame(new SimpleGinRummyPlayer(), new Aja6082GinRummyPlayer()).play();
+		VerboseLog.getDefault().flush();
 
 		// Multiple non-verbose games
-		setPlayVerbose(true);
+		setPlayVerbose(false);
 		int numGames = 1000;
 		int numP1Wins = 0;
 		GinRummyGame game = new GinRummyGame(new SimpleGinRummyPlayer(), new Aja6082GinRummyPlayer());
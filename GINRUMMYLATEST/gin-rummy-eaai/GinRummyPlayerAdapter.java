@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+
+/**
+ * Adapts a GinRummyPlayer to the FastGinRummyPlayer interface, converting card id numbers to Card objects and
+ * bitstrings to new lists for each call, so existing players run unchanged in GinRummyGame.
+ */
+public class GinRummyPlayerAdapter implements FastGinRummyPlayer {
+
+	/**
+	 * Return the given player if it implements FastGinRummyPlayer, otherwise an adapter of it.
+	 * @param player player
+	 * @return the player as a FastGinRummyPlayer
+	 */
+	public static FastGinRummyPlayer adapt(GinRummyPlayer player) {
+		return player instanceof FastGinRummyPlayer ? (FastGinRummyPlayer) player : new GinRummyPlayerAdapter(player);
+	}
+
+	/**
+	 * Adapted player
+	 */
+	private final GinRummyPlayer player;
+
+	/**
+	 * Create an adapter of the given player.
+	 * @param player adapted player
+	 */
+	public GinRummyPlayerAdapter(GinRummyPlayer player) {
+		this.player = player;
+	}
+
+	/**
+	 * Return the adapted player.
+	 * @return the adapted player
+	 */
+	public GinRummyPlayer getPlayer() {
+		return player;
+	}
+
+	@Override
+	public void startGame(int playerNum, int startingPlayerNum, long hand) {
+		ArrayList<Card> cards = GinRummyUtil.bitstringToCards(hand);
+		player.startGame(playerNum, startingPlayerNum, cards.toArray(new Card[cards.size()]));
+	}
+
+	@Override
+	public boolean willDrawFaceUpCard(int cardId) {
+		return player.willDrawFaceUpCard(Card.getCard(cardId));
+	}
+
+	@Override
+	public void reportDraw(int playerNum, int cardId) {
+		player.reportDraw(playerNum, cardId < 0 ? null : Card.getCard(cardId));
+	}
+
+	@Override
+	public int getDiscard() {
+		Card card = player.getDiscard();
+		return card == null ? -1 : card.getId();
+	}
+
+	@Override
+	public void reportDiscard(int playerNum, int cardId) {
+		player.reportDiscard(playerNum, Card.getCard(cardId));
+	}
+
+	@Override
+	public int getFinalMelds(long[] melds) {
+		ArrayList<ArrayList<Card>> meldLists = player.getFinalMelds();
+		if (meldLists == null)
+			return -1;
+		if (meldLists.size() > melds.length) { // cannot be disjoint melds; report a non-meld so that the player forfeits
+			melds[0] = 0L;
+			return 1;
+		}
+		for (int i = 0; i < meldLists.size(); i++)
+			melds[i] = GinRummyUtil.cardsToBitstring(meldLists.get(i));
+		return meldLists.size();
+	}
+
+	@Override
+	public void reportFinalMelds(int playerNum, long[] melds, int numMelds) {
+		ArrayList<ArrayList<Card>> meldLists = new ArrayList<ArrayList<Card>>();
+		for (int i = 0; i < numMelds; i++)
+			meldLists.add(GinRummyUtil.bitstringToCards(melds[i]));
+		player.reportFinalMelds(playerNum, meldLists);
+	}
+
+	@Override
+	public void reportScores(int[] scores) {
+		player.reportScores(scores.clone());
+	}
+
+	@Override
+	public void reportLayoff(int playerNum, int cardId, long opponentMeld) {
+		player.reportLayoff(playerNum, Card.getCard(cardId), GinRummyUtil.bitstringToCards(opponentMeld));
+	}
+
+	@Override
+	public void reportFinalHand(int playerNum, long hand) {
+		player.reportFinalHand(playerNum, GinRummyUtil.bitstringToCards(hand));
+	}
+
+}
@@ -1,9 +1,9 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 /**
  * Constants and utilities for Gin Rummy.  Meld checking makes use of bitstring representations
@@ -59,35 +59,94 @@ public class GinRummyUtil {
 	 * Deadwood points indexed by card rank
 	 */
 	private static final int[] DEADWOOD_POINTS = new int[Card.NUM_RANKS];
+	/**
+	 * Deadwood points of the cards of one suit indexed by their rank mask (bit r set for rank r)
+	 */
+	private static final int[] SUIT_DEADWOOD_POINTS = new int[1 << Card.NUM_RANKS];
 	/**
 	 * Card bitstrings indexed by card id number
 	 */
 	private static long[] cardBitstrings = new long[Card.NUM_CARDS];
+	/**
+	 * Bitstrings of the cards of each rank and of each suit, indexed by rank and suit
+	 */
+	private static final long[] RANK_BITSTRINGS = new long[Card.NUM_RANKS], SUIT_BITSTRINGS = new long[Card.NUM_SUITS];
 	/**
 	 * List of lists of meld bitstrings.  Melds appearing after melds in lists are supersets, so the 
 	 * first meld not made in a list makes further checking in that list unnnecessary.
 	 */
 	private static ArrayList<ArrayList<Long>> meldBitstrings;
 	/**
-	 * Map from meld bitstrings to corresponding lists of cards
+	 * All meld bitstrings in increasing order; the index of a meld is its meld id
+	 */
+	private static long[] allMeldBitstrings;
+	/**
+	 * Ids and bitstrings of the melds containing each card in increasing meld id order, indexed by card id number
+	 */
+	private static int[][] cardMeldIds;
+	private static long[][] cardMeldBitstrings;
+	/**
+	 * Unmodifiable set of all meld bitstrings, for getAllMeldBitstrings
+	 */
+	private static Set<Long> allMeldBitstringSet;
+	/**
+	 * Maximum number of disjoint melds that can be formed from any set of cards
+	 */
+	public static final int MAX_MELDS = Card.NUM_CARDS / 3;
+	/**
+	 * Meld bitstrings indexed by the id number of the lowest card in the meld, largest melds first.
+	 * When the meld solver considers the lowest undecided card of a hand, all lower cards have already been
+	 * melded or counted as deadwood, so only melds whose lowest card is that card need to be tried.
+	 */
+	private static long[][] lowestCardMeldBitstrings;
+	/**
+	 * Whether or not getBestDeadwood results are cached
 	 */
-	private static HashMap<Long, ArrayList<Card>> meldBitstringToCardsMap;
+	private static volatile boolean deadwoodCacheEnabled = true;
+	/**
+	 * Deadwood cache shared by all threads, or null if each thread uses its own cache
+	 */
+	private static volatile DeadwoodCache sharedDeadwoodCache = null;
+	/**
+	 * Number of entries of each per-thread deadwood cache
+	 */
+	private static volatile int threadDeadwoodCacheCapacity = DeadwoodCache.DEFAULT_CAPACITY;
+	/**
+	 * Deadwood caches private to each thread, used when there is no shared cache
+	 */
+	private static final ThreadLocal<DeadwoodCache> threadDeadwoodCaches = ThreadLocal.withInitial(() -> new DeadwoodCache(threadDeadwoodCacheCapacity));
+	/**
+	 * Meld covers private to each thread, used by getBestDeadwoodAfterDiscards
+	 */
+	private static final ThreadLocal<MeldCover> threadMeldCovers = ThreadLocal.withInitial(MeldCover::new);
+	/**
+	 * Draw value tables private to each thread, used by getDrawValueTable
+	 */
+	private static final ThreadLocal<DrawValueTable> threadDrawValueTables = ThreadLocal.withInitial(DrawValueTable::new);
+	/**
+	 * Whether or not best deadwood and best melds are computed by SuitMeldSolver instead of the branch-and-bound solver
+	 */
+	private static volatile boolean suitMeldSolverEnabled = false;
 
 	static {
 		// initialize DEADWOOD_POINTS
 		for (int rank = 0; rank < Card.NUM_RANKS; rank++)
 			DEADWOOD_POINTS[rank] = Math.min(rank + 1, 10);
+		for (int mask = 1; mask < SUIT_DEADWOOD_POINTS.length; mask++)
+			SUIT_DEADWOOD_POINTS[mask] = SUIT_DEADWOOD_POINTS[mask & (mask - 1)] + DEADWOOD_POINTS[Integer.numberOfTrailingZeros(mask)];
 		
 		// initialize cardBitStrings
 		long bitstring = 1L;
 		for (int i = 0; i < Card.NUM_CARDS; i++) {
 			cardBitstrings[i] = bitstring;
+			RANK_BITSTRINGS[i % Card.NUM_RANKS] |= bitstring;
+			SUIT_BITSTRINGS[i / Card.NUM_RANKS] |= bitstring;
 			bitstring <<= 1;
 		}
 		
 		// build list of lists of meld bitstring where each subsequent meld bitstring in the list is a superset of previous meld bitstrings
 		meldBitstrings = new ArrayList<ArrayList<Long>>();
-		meldBitstringToCardsMap = new HashMap<Long, ArrayList<Card>>();
+		ArrayList<Long> allMelds = new ArrayList<Long>();
 
 		// build run meld lists
 		for (int suit = 0; suit < Card.NUM_SUITS; suit++) {
@@ -105,7 +164,7 @@ public class GinRummyUtil {
 					cards.add(c);
 					meldBitstring |= cardBitstrings[c.getId()];
 					bitstringList.add(meldBitstring);
-					meldBitstringToCardsMap.put(meldBitstring, (ArrayList<Card>) cards.clone());
+					allMelds.add(meldBitstring);
 				}
 				meldBitstrings.add(bitstringList);
 			}
@@ -125,10 +184,49 @@ public class GinRummyUtil {
 				for (Card card : cardSet)
 					meldBitstring |= cardBitstrings[card.getId()];
 				bitstringList.add(meldBitstring);
-				meldBitstringToCardsMap.put(meldBitstring, cardSet);
+				allMelds.add(meldBitstring);
 				meldBitstrings.add(bitstringList);
 			}
 		}
+		
+		// sorted meld index and melds containing each card
+		allMeldBitstrings = new long[allMelds.size()];
+		for (int i = 0; i < allMeldBitstrings.length; i++)
+			allMeldBitstrings[i] = allMelds.get(i);
+		Arrays.sort(allMeldBitstrings);
+		allMeldBitstringSet = Collections.unmodifiableSet(new HashSet<Long>(allMelds));
+		int[] numCardMelds = new int[Card.NUM_CARDS];
+		for (long meldBitstring : allMeldBitstrings)
+			for (long cards = meldBitstring; cards != 0L; cards &= cards - 1)
+				numCardMelds[Long.numberOfTrailingZeros(cards)]++;
+		cardMeldIds = new int[Card.NUM_CARDS][];
+		cardMeldBitstrings = new long[Card.NUM_CARDS][];
+		for (int i = 0; i < Card.NUM_CARDS; i++) {
+			cardMeldIds[i] = new int[numCardMelds[i]];
+			cardMeldBitstrings[i] = new long[numCardMelds[i]];
+			numCardMelds[i] = 0;
+		}
+		for (int id = 0; id < allMeldBitstrings.length; id++)
+			for (long cards = allMeldBitstrings[id]; cards != 0L; cards &= cards - 1) {
+				int card = Long.numberOfTrailingZeros(cards);
+				cardMeldIds[card][numCardMelds[card]] = id;
+				cardMeldBitstrings[card][numCardMelds[card]++] = allMeldBitstrings[id];
+			}
+		
+		// index meld bitstrings by lowest card for the depth-first meld solver
+		ArrayList<ArrayList<Long>> lowestCardMelds = new ArrayList<ArrayList<Long>>();
+		for (int i = 0; i < Card.NUM_CARDS; i++)
+			lowestCardMelds.add(new ArrayList<Long>());
+		for (long meldBitstring : allMeldBitstrings)
+			lowestCardMelds.get(Long.numberOfTrailingZeros(meldBitstring)).add(meldBitstring);
+		lowestCardMeldBitstrings = new long[Card.NUM_CARDS][];
+		for (int i = 0; i < Card.NUM_CARDS; i++) {
+			ArrayList<Long> melds = lowestCardMelds.get(i);
+			melds.sort((a, b) -> Long.bitCount(b) - Long.bitCount(a)); // larger melds first find low deadwood bounds sooner
+			lowestCardMeldBitstrings[i] = new long[melds.size()];
+			for (int j = 0; j < melds.size(); j++)
+				lowestCardMeldBitstrings[i][j] = melds.get(j);
+		}
 	}
 	
 	/**
@@ -195,47 +293,50 @@ public class GinRummyUtil {
 	 */
 	public static ArrayList<ArrayList<ArrayList<Card>>> cardsToAllMaximalMeldSets(ArrayList<Card> cards) {
 		ArrayList<ArrayList<ArrayList<Card>>> maximalMeldSets = new ArrayList<ArrayList<ArrayList<Card>>>();
-		ArrayList<Long> meldBitstrings = cardsToAllMeldBitstrings(cards);
-		HashSet<HashSet<Integer>> closed = new HashSet<HashSet<Integer>>();
-		Queue<HashSet<Integer>> queue = new LinkedList<HashSet<Integer>>();
-		HashSet<Integer> allIndices = new HashSet<Integer>();
-		for (int i = 0; i < meldBitstrings.size(); i++) { 
-			HashSet<Integer> meldIndexSet = new HashSet<Integer>();
-			meldIndexSet.add(i);
-			allIndices.add(i);
-			queue.add(meldIndexSet);
-		}
-		while (!queue.isEmpty()) {
-			HashSet<Integer> meldIndexSet = queue.poll();
-//			System.out.println(meldSet);
-			if (closed.contains(meldIndexSet))
+		ArrayList<Long> meldBitstringList = cardsToAllMeldBitstrings(cards);
+		long[] meldBitstrings = new long[meldBitstringList.size()];
+		for (int i = 0; i < meldBitstrings.length; i++)
+			meldBitstrings[i] = meldBitstringList.get(i);
+		collectMaximalMeldSets(meldBitstrings, 0, 0L, new long[MAX_MELDS], 0, maximalMeldSets);
+		return maximalMeldSets;
+	}
+	
+	/**
+	 * Depth-first enumeration of sets of disjoint melds, each set visited once by adding melds in index order.
+	 * Sets to which no further meld can be added are added to the given list.
+	 * @param meldBitstrings all meld bitstrings available
+	 * @param start index of the first meld that may be added to the current set
+	 * @param meldSetBitstring bitstring of all cards in the current set of melds
+	 * @param meldSet current set of melds in its first numMelds entries
+	 * @param numMelds number of melds in the current set
+	 * @param maximalMeldSets list of maximal meld sets found so far
+	 */
+	private static void collectMaximalMeldSets(long[] meldBitstrings, int start, long meldSetBitstring, long[] meldSet, int numMelds, ArrayList<ArrayList<ArrayList<Card>>> maximalMeldSets) {
+		boolean isMaximal = true;
+		for (int i = 0; i < meldBitstrings.length; i++) {
+			if ((meldSetBitstring & meldBitstrings[i]) != 0) // meld overlaps with melds in set
 				continue;
-			long meldSetBitstring = 0L;
-			for (int meldIndex : meldIndexSet)
-				meldSetBitstring |= meldBitstrings.get(meldIndex);
-			closed.add(meldIndexSet);
-			boolean isMaximal = true;
-			for (int i = 0; i < meldBitstrings.size(); i++) { 
-				if (meldIndexSet.contains(i))
-					continue;
-				long meldBitstring = meldBitstrings.get(i);
-				if ((meldSetBitstring & meldBitstring) == 0) { // meld has no overlap with melds in set
-					isMaximal = false;
-					HashSet<Integer> newMeldIndexSet = (HashSet<Integer>) meldIndexSet.clone();
-					newMeldIndexSet.add(i);
-					queue.add(newMeldIndexSet);
-				}
-			}
-			if (isMaximal) {
-				ArrayList<ArrayList<Card>> cardSets = new ArrayList<ArrayList<Card>>();
-				for (int meldIndex : meldIndexSet) {
-					long meldBitstring  = meldBitstrings.get(meldIndex);
-					cardSets.add(bitstringToCards(meldBitstring));
-				}
-				maximalMeldSets.add(cardSets);
+			isMaximal = false;
+			if (i >= start) {
+				meldSet[numMelds] = meldBitstrings[i];
+				collectMaximalMeldSets(meldBitstrings, i + 1, meldSetBitstring | meldBitstrings[i], meldSet, numMelds + 1, maximalMeldSets);
 			}
 		}
-		return maximalMeldSets;
+		if (isMaximal && numMelds > 0)
+			maximalMeldSets.add(meldBitstringsToMelds(meldSet, numMelds));
+	}
+	
+	/**
+	 * Given meld bitstrings, return the corresponding list of card melds
+	 * @param meldBitstrings meld bitstrings
+	 * @param numMelds number of meld bitstrings to convert from the start of the array
+	 * @return the corresponding list of card melds
+	 */
+	private static ArrayList<ArrayList<Card>> meldBitstringsToMelds(long[] meldBitstrings, int numMelds) {
+		ArrayList<ArrayList<Card>> melds = new ArrayList<ArrayList<Card>>();
+		for (int i = 0; i < numMelds; i++)
+			melds.add(bitstringToCards(meldBitstrings[i]));
+		return melds;
 	}
 	
 	/**
@@ -276,6 +377,262 @@ public class GinRummyUtil {
 			deadwood += DEADWOOD_POINTS[card.rank];
 		return deadwood;
 	}
+	
+	/**
+	 * Return the deadwood points for a card set bitstring.
+	 * @param bitstring card set bitstring
+	 * @return the deadwood points for the cards of the bitstring
+	 */
+	public static int getDeadwoodPoints(long bitstring) {
+		// one table lookup per suit
+		int mask = (1 << Card.NUM_RANKS) - 1;
+		return SUIT_DEADWOOD_POINTS[(int) bitstring & mask] + SUIT_DEADWOOD_POINTS[(int) (bitstring >>> Card.NUM_RANKS) & mask]
+				+ SUIT_DEADWOOD_POINTS[(int) (bitstring >>> 2 * Card.NUM_RANKS) & mask] + SUIT_DEADWOOD_POINTS[(int) (bitstring >>> 3 * Card.NUM_RANKS) & mask];
+	}
+	
+	/**
+	 * Return the minimum deadwood points over all ways of melding the cards of a card set bitstring.
+	 * Results are looked up in and added to the deadwood cache of the calling thread, if enabled.
+	 * @param handBitstring card set bitstring of the hand
+	 * @return the minimum deadwood points for the hand
+	 */
+	public static int getBestDeadwood(long handBitstring) {
+		DeadwoodCache cache = getDeadwoodCache();
+		if (cache == null)
+			return computeBestDeadwood(handBitstring);
+		int deadwood = cache.get(handBitstring);
+		if (deadwood < 0) {
+			deadwood = computeBestDeadwood(handBitstring);
+			cache.put(handBitstring, deadwood);
+		}
+		return deadwood;
+	}
+	
+	/**
+	 * Return the minimum deadwood points over all ways of melding the cards of a card set bitstring without use of the deadwood cache.
+	 * This depth-first branch-and-bound search works on bitstrings only and allocates no objects.
+	 * @param handBitstring card set bitstring of the hand
+	 * @return the minimum deadwood points for the hand
+	 */
+	public static int computeBestDeadwood(long handBitstring) {
+		if (suitMeldSolverEnabled)
+			return SuitMeldSolver.getBestDeadwood(handBitstring);
+		return bestDeadwood(handBitstring, 0, getDeadwoodPoints(handBitstring));
+	}
+	
+	/**
+	 * Set whether or not best deadwood and best melds are computed by SuitMeldSolver (per-suit table lookups
+	 * combined with set choices per rank) instead of the depth-first branch-and-bound solver.  Both give the same
+	 * deadwood; this affects computeBestDeadwood, getBestDeadwood, getBestMeldBitstrings and cardsToBestMeldSets.
+	 * @param enabled whether or not SuitMeldSolver is used
+	 */
+	public static void setSuitMeldSolverEnabled(boolean enabled) {
+		suitMeldSolverEnabled = enabled;
+	}
+	
+	/**
+	 * Return the deadwood cache used by the calling thread: the shared cache if one is set, otherwise a cache
+	 * private to the thread.  Returns null if deadwood caching is disabled.
+	 * @return the deadwood cache used by the calling thread, or null if deadwood caching is disabled
+	 */
+	public static DeadwoodCache getDeadwoodCache() {
+		if (!deadwoodCacheEnabled)
+			return null;
+		DeadwoodCache cache = sharedDeadwoodCache;
+		return cache != null ? cache : threadDeadwoodCaches.get();
+	}
+	
+	/**
+	 * Set whether or not getBestDeadwood caches results.
+	 * @param enabled whether or not getBestDeadwood caches results
+	 */
+	public static void setDeadwoodCacheEnabled(boolean enabled) {
+		deadwoodCacheEnabled = enabled;
+	}
+	
+	/**
+	 * Set a deadwood cache to be shared by all threads, or null for each thread to use its own cache.
+	 * A shared cache should be created as shared so that its statistics are counted safely.
+	 * @param cache deadwood cache to be shared by all threads, or null for a cache per thread
+	 */
+	public static void setSharedDeadwoodCache(DeadwoodCache cache) {
+		sharedDeadwoodCache = cache;
+	}
+	
+	/**
+	 * Set the capacity of per-thread deadwood caches created after this call.
+	 * @param capacity number of entries of each per-thread deadwood cache
+	 */
+	public static void setThreadDeadwoodCacheCapacity(int capacity) {
+		threadDeadwoodCacheCapacity = capacity;
+	}
+	
+	/**
+	 * Return the minimum deadwood points over all ways of melding the cards of a card set bitstring, and
+	 * store one set of meld bitstrings achieving it.  Melds are stored from the start of the given array and 
+	 * followed by a 0L entry if there is room.  No objects are allocated.
+	 * @param handBitstring card set bitstring of the hand
+	 * @param bestMelds array receiving the best meld bitstrings (MAX_MELDS entries always suffice)
+	 * @return the minimum deadwood points for the hand
+	 */
+	public static int getBestMeldBitstrings(long handBitstring, long[] bestMelds) {
+		if (suitMeldSolverEnabled)
+			return SuitMeldSolver.getBestMeldBitstrings(handBitstring, bestMelds);
+		if (bestMelds.length > 0)
+			bestMelds[0] = 0L;
+		return bestMeldBitstrings(handBitstring, 0, getDeadwoodPoints(handBitstring), bestMelds, 0);
+	}
+	
+	/**
+	 * Return the minimum deadwood points after discarding each card of a hand, e.g. the 11 cards held before a discard.
+	 * One enumeration of the sets of disjoint melds of the hand serves all discards (see MeldCover), so a call costs
+	 * about as much as solving the hand once.  The deadwood cache is not used.
+	 * @param handBitstring card set bitstring of the hand
+	 * @return array of the minimum deadwood points after discarding each card of the hand in increasing id order
+	 */
+	public static int[] getBestDeadwoodAfterDiscards(long handBitstring) {
+		int[] deadwood = new int[Long.bitCount(handBitstring)];
+		getBestDeadwoodAfterDiscards(handBitstring, deadwood, null);
+		return deadwood;
+	}
+	
+	/**
+	 * Store the minimum deadwood points after discarding each card of a hand, and return the least of them.
+	 * @param handBitstring card set bitstring of the hand
+	 * @param deadwood array receiving the minimum deadwood points after discarding each card of the hand in increasing id order
+	 * @return the minimum deadwood points after discarding any card, or Integer.MAX_VALUE for an empty hand
+	 */
+	public static int getBestDeadwoodAfterDiscards(long handBitstring, int[] deadwood) {
+		return getBestDeadwoodAfterDiscards(handBitstring, deadwood, null);
+	}
+	
+	/**
+	 * Store the minimum deadwood points after discarding each card of a hand and one set of meld bitstrings achieving it,
+	 * and return the least of them.  The melds for each discard are stored as by getBestMeldBitstrings.
+	 * No objects are allocated.
+	 * @param handBitstring card set bitstring of the hand
+	 * @param deadwood array receiving the minimum deadwood points after discarding each card of the hand in increasing id order
+	 * @param bestMelds arrays receiving the best meld bitstrings after discarding each card of the hand in increasing id
+	 * order (MAX_MELDS entries each always suffice), or null if melds are not needed
+	 * @return the minimum deadwood points after discarding any card, or Integer.MAX_VALUE for an empty hand
+	 */
+	public static int getBestDeadwoodAfterDiscards(long handBitstring, int[] deadwood, long[][] bestMelds) {
+		MeldCover cover = threadMeldCovers.get();
+		cover.set(handBitstring);
+		cover.evaluate(bestMelds);
+		int handPoints = getDeadwoodPoints(handBitstring), minDeadwood = Integer.MAX_VALUE, k = 0;
+		for (long cards = handBitstring; cards != 0L; cards &= cards - 1, k++) {
+			int id = Long.numberOfTrailingZeros(cards);
+			deadwood[k] = handPoints - DEADWOOD_POINTS[id % Card.NUM_RANKS] - cover.maxCoveredPointsWithout[id];
+			if (deadwood[k] < minDeadwood)
+				minDeadwood = deadwood[k];
+		}
+		return minDeadwood;
+	}
+	
+	/**
+	 * Return the draw value table of the calling thread set to a hand.  The table is recomputed only when the hand
+	 * differs from the hand of the thread's last call, so repeated calls for a hand during a turn are table lookups.
+	 * The table is valid until the thread's next call.
+	 * @param handBitstring card set bitstring of the hand, e.g. the 10 cards held before a draw
+	 * @return the draw value table of the calling thread, set to the hand
+	 */
+	public static DrawValueTable getDrawValueTable(long handBitstring) {
+		DrawValueTable table = threadDrawValueTables.get();
+		table.set(handBitstring);
+		return table;
+	}
+	
+	/**
+	 * Store the minimum deadwood points after drawing each card not in a hand and discarding any one card, computed in
+	 * one enumeration shared by all drawn cards (see DrawValueTable) and memoized per hand on the calling thread.
+	 * @param handBitstring card set bitstring of the hand
+	 * @param deadwood array receiving the minimum deadwood points, indexed by the id number of the card drawn;
+	 * entries of the cards of the hand are not changed
+	 * @return the bitstring of the cards not in the hand making a meld with cards of the hand
+	 */
+	public static long getBestDeadwoodAfterDraws(long handBitstring, int[] deadwood) {
+		DrawValueTable table = getDrawValueTable(handBitstring);
+		table.getBestDeadwoodAfterDraws(deadwood);
+		return table.getMeldingCards();
+	}
+	
+	/**
+	 * Branch-and-bound search for minimum deadwood.  The lowest undecided card is either melded with a meld
+	 * of undecided cards starting at that card, or counted as deadwood.
+	 * @param unmelded bitstring of undecided cards
+	 * @param deadwood deadwood points of cards decided to be deadwood
+	 * @param bound lowest total deadwood found so far
+	 * @return the lower of bound and the lowest total deadwood below this search node
+	 */
+	private static int bestDeadwood(long unmelded, int deadwood, int bound) {
+		if (deadwood >= bound)
+			return bound;
+		if (unmelded == 0L)
+			return deadwood;
+		int id = Long.numberOfTrailingZeros(unmelded);
+		for (long meldBitstring : lowestCardMeldBitstrings[id])
+			if ((meldBitstring & unmelded) == meldBitstring)
+				bound = bestDeadwood(unmelded & ~meldBitstring, deadwood, bound);
+		return bestDeadwood(unmelded & ~cardBitstrings[id], deadwood + DEADWOOD_POINTS[id % Card.NUM_RANKS], bound);
+	}
+	
+	/**
+	 * Branch-and-bound search for minimum deadwood that also records the melds of the best solution.
+	 * Entries of bestMelds at and below a given depth are only written when the search below it finds a new 
+	 * best solution, so after the search they describe the best solution found.
+	 * @param unmelded bitstring of undecided cards
+	 * @param deadwood deadwood points of cards decided to be deadwood
+	 * @param bound lowest total deadwood found so far
+	 * @param bestMelds array receiving the best meld bitstrings
+	 * @param depth number of melds chosen on the path to this search node
+	 * @return the lower of bound and the lowest total deadwood below this search node
+	 */
+	private static int bestMeldBitstrings(long unmelded, int deadwood, int bound, long[] bestMelds, int depth) {
+		if (deadwood >= bound)
+			return bound;
+		if (unmelded == 0L) {
+			if (depth < bestMelds.length)
+				bestMelds[depth] = 0L;
+			return deadwood;
+		}
+		int id = Long.numberOfTrailingZeros(unmelded);
+		for (long meldBitstring : lowestCardMeldBitstrings[id])
+			if ((meldBitstring & unmelded) == meldBitstring) {
+				int newBound = bestMeldBitstrings(unmelded & ~meldBitstring, deadwood, bound, bestMelds, depth + 1);
+				if (newBound < bound) {
+					bestMelds[depth] = meldBitstring;
+					bound = newBound;
+				}
+			}
+		return bestMeldBitstrings(unmelded & ~cardBitstrings[id], deadwood + DEADWOOD_POINTS[id % Card.NUM_RANKS], bound, bestMelds, depth);
+	}
+	
+	/**
+	 * Depth-first enumeration of all sets of melds leaving exactly the given deadwood points.  
+	 * Each set of melds is reached by exactly one path since the lowest undecided card is always decided next.
+	 * @param unmelded bitstring of undecided cards
+	 * @param deadwoodLeft deadwood points remaining to be assigned to undecided cards
+	 * @param meldSet current set of melds in its first numMelds entries
+	 * @param numMelds number of melds in the current set
+	 * @param bestMeldSets list of meld sets found so far
+	 */
+	private static void collectBestMeldSets(long unmelded, int deadwoodLeft, long[] meldSet, int numMelds, ArrayList<ArrayList<ArrayList<Card>>> bestMeldSets) {
+		if (unmelded == 0L) {
+			if (deadwoodLeft == 0)
+				bestMeldSets.add(meldBitstringsToMelds(meldSet, numMelds));
+			return;
+		}
+		int id = Long.numberOfTrailingZeros(unmelded);
+		for (long meldBitstring : lowestCardMeldBitstrings[id])
+			if ((meldBitstring & unmelded) == meldBitstring) {
+				meldSet[numMelds] = meldBitstring;
+				collectBestMeldSets(unmelded & ~meldBitstring, deadwoodLeft, meldSet, numMelds + 1, bestMeldSets);
+			}
+		int cardDeadwood = DEADWOOD_POINTS[id % Card.NUM_RANKS];
+		if (cardDeadwood <= deadwoodLeft)
+			collectBestMeldSets(unmelded & ~cardBitstrings[id], deadwoodLeft - cardDeadwood, meldSet, numMelds, bestMeldSets);
+	}
 		
 	/**
 	 * Returns a list of list of melds that all leave a minimal deadwood count.
@@ -284,33 +641,312 @@ public class GinRummyUtil {
 	 */
 	// Note: This is actually a "weighted maximum coverage problem". See https://en.wikipedia.org/wiki/Maximum_coverage_problem
 	public static ArrayList<ArrayList<ArrayList<Card>>> cardsToBestMeldSets(ArrayList<Card> cards) {
-		int minDeadwoodPoints = Integer.MAX_VALUE;
-		ArrayList<ArrayList<ArrayList<Card>>> maximalMeldSets = cardsToAllMaximalMeldSets(cards);
 		ArrayList<ArrayList<ArrayList<Card>>> bestMeldSets = new ArrayList<ArrayList<ArrayList<Card>>>();
-		for (ArrayList<ArrayList<Card>> melds : maximalMeldSets) {
-			int deadwoodPoints = getDeadwoodPoints(melds, cards);
-			if (deadwoodPoints <= minDeadwoodPoints) {
-				if (deadwoodPoints < minDeadwoodPoints) {
-					minDeadwoodPoints = deadwoodPoints;
-					bestMeldSets.clear();
-				}
-				bestMeldSets.add(melds);
+		long handBitstring = cardsToBitstring(cards);
+		int minDeadwoodPoints = getBestDeadwood(handBitstring);
+		if (minDeadwoodPoints < getDeadwoodPoints(handBitstring)) // at least one meld can be made
+			collectBestMeldSets(handBitstring, minDeadwoodPoints, new long[MAX_MELDS], 0, bestMeldSets);
+		return bestMeldSets;
+	}
+	
+	/**
+	 * Compute the layoffs of cards on the given melds that leave the least deadwood, i.e. that lay off the most cards,
+	 * storing for each meld the bitstring of the cards laid off on it.
+	 * 
+	 * A run takes the blocks of consecutive cards of its suit adjoining each end (a card extends the run, then the
+	 * next card extends the extended run, and so on), found for both ends at once with one addition and one
+	 * complement.  A set of three takes the missing card of its rank.  A card adjoining a run and completing a set
+	 * is laid off on the run, where it may let further cards follow it; this makes every card that can be laid off
+	 * in some order laid off, so no order of single layoffs lays off more.  Laying off the cards of a run's layoffs
+	 * in order outward from the run extends the run by one card each time.
+	 * @param melds meld bitstrings in the first numMelds entries
+	 * @param numMelds number of melds
+	 * @param cards bitstring of the cards that may be laid off
+	 * @param layoffs array receiving the bitstring of the cards laid off on each meld in the first numMelds entries
+	 * @return the bitstring of all cards laid off
+	 */
+	public static long getLayoffs(long[] melds, int numMelds, long cards, long[] layoffs) {
+		long laidOff = 0L;
+		// runs first, so that a card both extending a run and completing a set extends the run
+		for (int i = 0; i < numMelds; i++) {
+			long meld = melds[i], lowest = meld & -meld;
+			int id = Long.numberOfTrailingZeros(lowest);
+			if ((meld & ~RANK_BITSTRINGS[id % Card.NUM_RANKS]) == 0L) { // set
+				layoffs[i] = 0L;
+				continue;
 			}
+			long suitCards = cards & SUIT_BITSTRINGS[id / Card.NUM_RANKS] & ~laidOff;
+			// the addition carries through the block of cards starting just above the run, clearing exactly that block
+			long above = Long.highestOneBit(meld) << 1;
+			long up = suitCards & ~(suitCards + above);
+			// the block ending just below the run ends at the highest suit card missing below the run
+			long below = suitCards & (lowest - 1), missing = ~below & (lowest - 1) & SUIT_BITSTRINGS[id / Card.NUM_RANKS];
+			long down = missing == 0L ? below : below & -(Long.highestOneBit(missing) << 1);
+			layoffs[i] = up | down;
+			laidOff |= up | down;
 		}
-		return bestMeldSets;
+		for (int i = 0; i < numMelds; i++) {
+			long meld = melds[i];
+			int rank = Long.numberOfTrailingZeros(meld) % Card.NUM_RANKS;
+			if ((meld & ~RANK_BITSTRINGS[rank]) == 0L) {
+				layoffs[i] = cards & RANK_BITSTRINGS[rank] & ~meld & ~laidOff;
+				laidOff |= layoffs[i];
+			}
+		}
+		return laidOff;
+	}
+	
+	/**
+	 * Return the points of a knock: the gin bonus plus the opponent's deadwood if the knocking player goes gin, else
+	 * the deadwood difference if the knocking player has less deadwood, else the undercut bonus plus the deadwood
+	 * difference, scored by the opponent.
+	 * @param knockingDeadwood deadwood points of the knocking player after melding
+	 * @param opponentDeadwood deadwood points of the opponent after melding and laying off
+	 * @return the points scored by the knocking player, or minus the points scored by the opponent
+	 */
+	public static int getKnockPoints(int knockingDeadwood, int opponentDeadwood) {
+		if (knockingDeadwood == 0) // gin
+			return GIN_BONUS + opponentDeadwood;
+		if (knockingDeadwood < opponentDeadwood)
+			return opponentDeadwood - knockingDeadwood;
+		return -(UNDERCUT_BONUS + knockingDeadwood - opponentDeadwood); // undercut
 	}
 	
 	/**
-	 * Return all meld bitstrings.
+	 * Return all meld bitstrings as an unmodifiable set of boxed bitstrings.  isMeld and getMeldId check
+	 * membership without boxing.
 	 * @return all meld bitstrings
 	 */
 	public static Set<Long> getAllMeldBitstrings() {
-		return meldBitstringToCardsMap.keySet();
+		return allMeldBitstringSet;
+	}
+	
+	/**
+	 * Return the number of melds, i.e. the number of meld ids.
+	 * @return the number of melds
+	 */
+	public static int getNumMelds() {
+		return allMeldBitstrings.length;
+	}
+	
+	/**
+	 * Return the meld id of a card set bitstring: its index among all meld bitstrings in increasing order.
+	 * @param bitstring card set bitstring
+	 * @return the meld id of the bitstring, or -1 if it is not a meld
+	 */
+	public static int getMeldId(long bitstring) {
+		int id = Arrays.binarySearch(allMeldBitstrings, bitstring);
+		return id < 0 ? -1 : id;
+	}
+	
+	/**
+	 * Return whether or not a card set bitstring is a meld.
+	 * @param bitstring card set bitstring
+	 * @return whether or not the bitstring is a meld
+	 */
+	public static boolean isMeld(long bitstring) {
+		return Arrays.binarySearch(allMeldBitstrings, bitstring) >= 0;
+	}
+	
+	/**
+	 * Return the bitstring of the meld with the given id.
+	 * @param meldId meld id (0 to getNumMelds() - 1)
+	 * @return the meld bitstring
+	 */
+	public static long getMeldBitstring(int meldId) {
+		return allMeldBitstrings[meldId];
+	}
+	
+	/**
+	 * Return the number of melds containing a card.
+	 * @param cardId card id number
+	 * @return the number of melds containing the card
+	 */
+	public static int getNumCardMelds(int cardId) {
+		return cardMeldIds[cardId].length;
+	}
+	
+	/**
+	 * Return the id of a meld containing a card.  Melds containing a card are indexed in increasing meld id order.
+	 * @param cardId card id number
+	 * @param index index of the meld among those containing the card (0 to getNumCardMelds(cardId) - 1)
+	 * @return the meld id
+	 */
+	public static int getCardMeldId(int cardId, int index) {
+		return cardMeldIds[cardId][index];
+	}
+	
+	/**
+	 * Return the bitstring of a meld containing a card, i.e. getMeldBitstring(getCardMeldId(cardId, index)).
+	 * @param cardId card id number
+	 * @param index index of the meld among those containing the card (0 to getNumCardMelds(cardId) - 1)
+	 * @return the meld bitstring
+	 */
+	public static long getCardMeldBitstring(int cardId, int index) {
+		return cardMeldBitstrings[cardId][index];
+	}
+	
+	/**
+	 * The melds contained in a hand, kept up to date as cards are added and removed, and the most deadwood points
+	 * covered by any set of disjoint melds of the hand, in total and without each card of the hand.  A single
+	 * enumeration of the sets of disjoint melds yields the covered points for every card: discarding card c leaves the
+	 * deadwood points of the hand minus the points of c minus the most points covered by a meld set not using c.
+	 * Used by getBestDeadwoodAfterDiscards and IncrementalHandEvaluator.
+	 */
+	static final class MeldCover {
+		/**
+		 * Bitstring of the cards in the hand
+		 */
+		long hand = 0L;
+		/**
+		 * Melds contained in the hand in their first numMelds entries
+		 */
+		private final long[] melds = new long[getNumMelds()];
+		/**
+		 * Deadwood points of the cards of each meld, parallel to melds
+		 */
+		private final int[] meldPoints = new int[melds.length];
+		/**
+		 * Number of melds contained in the hand
+		 */
+		int numMelds = 0;
+		/**
+		 * Most deadwood points covered by any set of disjoint melds of the hand, as of the last evaluation
+		 */
+		int maxCoveredPoints;
+		/**
+		 * Most deadwood points covered by any set of disjoint melds of the hand not containing a card, indexed by card
+		 * id number, as of the last evaluation
+		 */
+		final int[] maxCoveredPointsWithout = new int[Card.NUM_CARDS];
+		/**
+		 * Melds of the current set of the enumeration, and the arrays receiving the best melds without each card of
+		 * the hand in increasing id order, or null if melds are not recorded
+		 */
+		private final long[] meldSet = new long[MAX_MELDS];
+		private long[][] bestMelds;
+
+		/**
+		 * Remove all cards from the hand.
+		 */
+		void clear() {
+			hand = 0L;
+			numMelds = 0;
+		}
+
+		/**
+		 * Replace the hand with the cards of the given bitstring.
+		 * @param handBitstring bitstring of the new hand
+		 */
+		void set(long handBitstring) {
+			hand = handBitstring;
+			numMelds = 0;
+			for (long cards = handBitstring; cards != 0L; cards &= cards - 1)
+				for (long meldBitstring : lowestCardMeldBitstrings[Long.numberOfTrailingZeros(cards)])
+					if ((meldBitstring & handBitstring) == meldBitstring)
+						addMeld(meldBitstring);
+		}
+
+		/**
+		 * Add a card to the hand.
+		 * @param id id number of the card to add
+		 * @return whether or not the card was added, i.e. was not in the hand
+		 */
+		boolean add(int id) {
+			long cardBitstring = 1L << id;
+			if ((hand & cardBitstring) != 0L)
+				return false;
+			for (long meldBitstring : cardMeldBitstrings[id])
+				if ((meldBitstring & ~hand) == cardBitstring) // all other meld cards are in hand
+					addMeld(meldBitstring);
+			hand |= cardBitstring;
+			return true;
+		}
+
+		/**
+		 * Remove a card from the hand.
+		 * @param id id number of the card to remove
+		 * @return whether or not the card was removed, i.e. was in the hand
+		 */
+		boolean remove(int id) {
+			long cardBitstring = 1L << id;
+			if ((hand & cardBitstring) == 0L)
+				return false;
+			int kept = 0;
+			for (int i = 0; i < numMelds; i++)
+				if ((melds[i] & cardBitstring) == 0L) {
+					melds[kept] = melds[i];
+					meldPoints[kept] = meldPoints[i];
+					kept++;
+				}
+			numMelds = kept;
+			hand &= ~cardBitstring;
+			return true;
+		}
+
+		/**
+		 * Add a meld contained in the hand to the meld list.
+		 * @param meldBitstring meld bitstring
+		 */
+		private void addMeld(long meldBitstring) {
+			melds[numMelds] = meldBitstring;
+			meldPoints[numMelds] = getDeadwoodPoints(meldBitstring);
+			numMelds++;
+		}
+
+		/**
+		 * Enumerate the sets of disjoint melds of the hand, computing maxCoveredPoints and maxCoveredPointsWithout.
+		 * @param bestMelds arrays receiving the best meld bitstrings without each card of the hand in increasing id
+		 * order, each followed by a 0L entry if there is room, or null if melds are not needed
+		 */
+		void evaluate(long[][] bestMelds) {
+			this.bestMelds = bestMelds;
+			maxCoveredPoints = 0;
+			int k = 0;
+			for (long cards = hand; cards != 0L; cards &= cards - 1, k++) {
+				maxCoveredPointsWithout[Long.numberOfTrailingZeros(cards)] = 0;
+				if (bestMelds != null && bestMelds[k].length > 0)
+					bestMelds[k][0] = 0L;
+			}
+			enumerate(0, 0L, 0, 0);
+			this.bestMelds = null;
+		}
+
+		/**
+		 * Record the covered points of the current set of disjoint melds and extend it with melds of higher index.
+		 * @param start index of the first meld that may be added to the current set
+		 * @param covered bitstring of the cards in the current set of melds
+		 * @param coveredPoints deadwood points of the cards in the current set of melds
+		 * @param depth number of melds in the current set
+		 */
+		private void enumerate(int start, long covered, int coveredPoints, int depth) {
+			if (coveredPoints > maxCoveredPoints)
+				maxCoveredPoints = coveredPoints;
+			for (long cards = hand & ~covered; cards != 0L; cards &= cards - 1) {
+				int id = Long.numberOfTrailingZeros(cards);
+				if (coveredPoints > maxCoveredPointsWithout[id]) {
+					maxCoveredPointsWithout[id] = coveredPoints;
+					if (bestMelds != null) {
+						long[] best = bestMelds[Long.bitCount(hand & ((1L << id) - 1))];
+						System.arraycopy(meldSet, 0, best, 0, depth);
+						if (depth < best.length)
+							best[depth] = 0L;
+					}
+				}
+			}
+			for (int i = start; i < numMelds; i++)
+				if ((melds[i] & covered) == 0L) {
+					meldSet[depth] = melds[i];
+					enumerate(i + 1, covered | melds[i], coveredPoints + meldPoints[i], depth + 1);
+				}
+		}
 	}
 	
 	/**
-	 * Test GinRummyUtils for a given list of cards specified in the first line.
-	 * @param args (unused)
+	 * Test GinRummyUtils for a given list of cards specified in the first line, then run the self-checks of getLayoffs
+	 * against an exhaustive search of layoff orders and of getBestDeadwoodAfterDiscards against separate solves of each
+	 * discard, exiting with status 1 on a mismatch.
+	 * @param args number of random deals of the self-checks (default 20000) and random seed (default 617)
 	 */
 	public static void main(String[] args) {
 		String cardNames = "AD AS AH AC 2C 3C 4C 4H 4D 4S"; // adding these (impossible in Gin Rummy) causes great combinatorial complexity: 3S 5S 6S 7S 7D 7C 7H 8H 9H TH TC TS TD 9D JD QD KD KS KH KC";
@@ -332,6 +968,146 @@ public class GinRummyUtil {
 		System.out.println("Best meld sets:");
 		for (ArrayList<ArrayList<Card>> meldSet : cardsToBestMeldSets(cards))
 			System.out.println(getDeadwoodPoints(meldSet, cards) + ":" + meldSet);
+		long[] bestMelds = new long[MAX_MELDS];
+		int bestDeadwood = getBestMeldBitstrings(cardsToBitstring(cards), bestMelds);
+		System.out.print("Best meld bitstrings with " + bestDeadwood + " deadwood:");
+		for (int i = 0; i < bestMelds.length && bestMelds[i] != 0L; i++)
+			System.out.print(" " + bitstringToCards(bestMelds[i]));
+		System.out.println();
+
+		int numDeals = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 617);
+		checkLayoffs(numDeals, random);
+		checkBestDeadwoodAfterDiscards(10 * numDeals, random);
+	}
+
+	/**
+	 * Return a random hand, dealt from all cards or, for suit-heavy hands with more runs, from two random suits.
+	 * @param size number of cards
+	 * @param suitHeavy whether or not to deal from two suits
+	 * @param excluded bitstring of cards not to deal
+	 * @param random random number generator
+	 * @return the bitstring of the hand
+	 */
+	private static long randomHand(int size, boolean suitHeavy, long excluded, SplittableRandom random) {
+		long cards = ~excluded & ((1L << Card.NUM_CARDS) - 1);
+		if (suitHeavy)
+			cards &= SUIT_BITSTRINGS[random.nextInt(Card.NUM_SUITS)] | SUIT_BITSTRINGS[random.nextInt(Card.NUM_SUITS)];
+		long hand = 0L;
+		for (int i = Math.min(size, Long.bitCount(cards)); i > 0; i--) {
+			long card = cards;
+			for (int j = random.nextInt(Long.bitCount(cards)); j > 0; j--)
+				card &= card - 1;
+			card &= -card;
+			hand |= card;
+			cards &= ~card;
+		}
+		return hand;
+	}
+
+	/**
+	 * Check getLayoffs on random deals: the best melds of a knocking hand, half of them suit-heavy, and the opponent's
+	 * cards.  The cards laid off must be exactly those that some order of single layoffs lays off, as many as the best
+	 * order lays off, and each meld with its layoffs must be a meld.
+	 * @param numDeals number of deals
+	 * @param random random number generator
+	 */
+	private static void checkLayoffs(int numDeals, SplittableRandom random) {
+		long[] melds = new long[MAX_MELDS], layoffs = new long[MAX_MELDS];
+		long[] reachable = new long[1];
+		int numChecked = 0;
+		for (int n = 0; n < numDeals; n++) {
+			long hand = randomHand(10, n % 2 == 1, 0L, random);
+			Arrays.fill(melds, 0L);
+			getBestMeldBitstrings(hand, melds);
+			int numMelds = 0;
+			while (numMelds < MAX_MELDS && melds[numMelds] != 0L)
+				numMelds++;
+			if (numMelds == 0)
+				continue;
+			long cards = randomHand(10, n % 4 == 1, hand, random);
+			long laidOff = getLayoffs(melds, numMelds, cards, layoffs);
+			reachable[0] = 0L;
+			int mostLaidOff = mostLayoffs(melds.clone(), numMelds, cards, reachable);
+			long union = 0L;
+			for (int i = 0; i < numMelds; i++) {
+				if ((layoffs[i] & union) != 0L || (layoffs[i] & ~cards) != 0L
+						|| layoffs[i] != 0L && !isMeld(melds[i] | layoffs[i]))
+					failCheck("getLayoffs", "layoffs on " + bitstringToCards(melds[i]) + " of " + bitstringToCards(cards));
+				union |= layoffs[i];
+			}
+			if (union != laidOff || laidOff != reachable[0] || Long.bitCount(laidOff) != mostLaidOff)
+				failCheck("getLayoffs", "cards laid off of " + bitstringToCards(cards) + " on melds of " + bitstringToCards(hand));
+			numChecked++;
+		}
+		System.out.printf("getLayoffs: %d deals checked.\n", numChecked);
+	}
+
+	/**
+	 * Check getBestDeadwoodAfterDiscards on random 11-card hands, half of them suit-heavy, against computeBestDeadwood
+	 * of the hand without each card.  The melds stored for each discard must be disjoint melds of the rest of the hand
+	 * leaving that deadwood.
+	 * @param numHands number of hands
+	 * @param random random number generator
+	 */
+	private static void checkBestDeadwoodAfterDiscards(int numHands, SplittableRandom random) {
+		int[] deadwood = new int[11];
+		long[][] bestMelds = new long[11][MAX_MELDS];
+		for (int n = 0; n < numHands; n++) {
+			long hand = randomHand(11, n % 2 == 1, 0L, random);
+			int minDeadwood = getBestDeadwoodAfterDiscards(hand, deadwood, bestMelds), expectedMin = Integer.MAX_VALUE, k = 0;
+			for (long cards = hand; cards != 0L; cards &= cards - 1, k++) {
+				long rest = hand & ~(cards & -cards), unmelded = rest;
+				int expected = computeBestDeadwood(rest);
+				expectedMin = Math.min(expectedMin, expected);
+				for (int i = 0; i < MAX_MELDS && bestMelds[k][i] != 0L; i++) {
+					if (!isMeld(bestMelds[k][i]) || (bestMelds[k][i] & ~unmelded) != 0L)
+						failCheck("getBestDeadwoodAfterDiscards", "melds of " + bitstringToCards(rest));
+					unmelded &= ~bestMelds[k][i];
+				}
+				if (deadwood[k] != expected || getDeadwoodPoints(unmelded) != expected)
+					failCheck("getBestDeadwoodAfterDiscards", "deadwood of " + bitstringToCards(rest));
+			}
+			if (minDeadwood != expectedMin)
+				failCheck("getBestDeadwoodAfterDiscards", "least deadwood of " + bitstringToCards(hand));
+		}
+		System.out.printf("getBestDeadwoodAfterDiscards: %d hands checked.\n", numHands);
+	}
+
+	/**
+	 * Search all orders of single layoffs, each adding a card to a meld so that it stays a meld, and return the most
+	 * cards laid off by any order.
+	 * @param melds meld bitstrings in the first numMelds entries, extended in place during the search
+	 * @param numMelds number of melds
+	 * @param cards bitstring of the cards that may be laid off
+	 * @param reachable one-entry array to which the cards laid off by some order are added
+	 * @return the most cards laid off by any order
+	 */
+	private static int mostLayoffs(long[] melds, int numMelds, long cards, long[] reachable) {
+		int most = 0;
+		for (long remaining = cards; remaining != 0L; remaining &= remaining - 1) {
+			long card = remaining & -remaining;
+			for (int i = 0; i < numMelds; i++) {
+				long meld = melds[i];
+				if (!isMeld(meld | card))
+					continue;
+				reachable[0] |= card;
+				melds[i] = meld | card;
+				most = Math.max(most, 1 + mostLayoffs(melds, numMelds, cards & ~card, reachable));
+				melds[i] = meld;
+			}
+		}
+		return most;
+	}
+
+	/**
+	 * Report a failed self-check and exit with status 1.
+	 * @param method method checked
+	 * @param what value that differs
+	 */
+	private static void failCheck(String method, String what) {
+		System.out.println(method + ": " + what + " differs.");
+		System.exit(1);
 	}
 
 }
@@ -0,0 +1,85 @@
+/**
+ * Plays GreedyPolicy, the policy of MonteCarloEngine rollouts: draw the face-up card if it forms a meld and the best
+ * discard then lowers deadwood, discard to minimize deadwood (highest card on ties), knock as soon as deadwood allows,
+ * and meld to minimize deadwood.  As a FastGinRummyPlayer it is called with bitstrings and card id numbers, so bulk
+ * greedy self-play through GinRummyGame allocates no Card lists.  The player is deterministic, so a game seed
+ * determines the whole game.
+ */
+public class GreedyGinRummyPlayer implements FastGinRummyPlayer {
+	/**
+	 * Player number
+	 */
+	private int playerNum;
+	/**
+	 * Policy following the player's hand
+	 */
+	private final GreedyPolicy policy = new GreedyPolicy();
+	/**
+	 * Last face-up card offered and whether the player chose to draw it
+	 */
+	private int faceUpCard = -1;
+	private boolean drawFaceUp = false;
+	/**
+	 * Whether or not the opponent knocked
+	 */
+	private boolean opponentKnocked = false;
+
+	@Override
+	public void startGame(int playerNum, int startingPlayerNum, long hand) {
+		this.playerNum = playerNum;
+		policy.set(hand);
+		drawFaceUp = false;
+		opponentKnocked = false;
+	}
+
+	@Override
+	public boolean willDrawFaceUpCard(int cardId) {
+		faceUpCard = cardId;
+		drawFaceUp = policy.willDrawFaceUpCard(cardId);
+		return drawFaceUp;
+	}
+
+	@Override
+	public void reportDraw(int playerNum, int cardId) {
+		if (playerNum == this.playerNum) {
+			policy.draw(cardId, drawFaceUp && cardId == faceUpCard);
+			drawFaceUp = false;
+		}
+	}
+
+	@Override
+	public int getDiscard() {
+		return policy.getDiscard();
+	}
+
+	@Override
+	public void reportDiscard(int playerNum, int cardId) {
+		if (playerNum == this.playerNum)
+			policy.discard(cardId);
+	}
+
+	@Override
+	public int getFinalMelds(long[] melds) {
+		if (!opponentKnocked && !policy.willKnock())
+			return -1;
+		return policy.getMelds(melds);
+	}
+
+	@Override
+	public void reportFinalMelds(int playerNum, long[] melds, int numMelds) {
+		if (playerNum != this.playerNum)
+			opponentKnocked = true;
+	}
+
+	@Override
+	public void reportScores(int[] scores) {
+	}
+
+	@Override
+	public void reportLayoff(int playerNum, int cardId, long opponentMeld) {
+	}
+
+	@Override
+	public void reportFinalHand(int playerNum, long hand) {
+	}
+}
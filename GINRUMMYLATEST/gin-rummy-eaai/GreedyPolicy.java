@@ -0,0 +1,152 @@
+/**
+ * The fast greedy policy of MonteCarloEngine rollouts, as played by GreedyGinRummyPlayer: draw the face-up card if
+ * it forms a meld and the best discard then lowers deadwood, discard to minimize deadwood (highest card on ties, then
+ * lowest id), knock as soon as deadwood allows, and meld to minimize deadwood.
+ *
+ * A policy follows one player's hand as cards are drawn and discarded, with the melds of the hand maintained
+ * incrementally (see IncrementalHandEvaluator), and remembers the deadwood of the last discard it chose, so a turn
+ * usually costs a single enumeration of meld sets and nothing is allocated.  Not thread-safe; use one per player.
+ */
+public class GreedyPolicy {
+	/**
+	 * Hand and its melds
+	 */
+	private final IncrementalHandEvaluator evaluator = new IncrementalHandEvaluator();
+	/**
+	 * Best deadwood of the 10-card hand, or -1 if not known
+	 */
+	private int deadwood = -1;
+	/**
+	 * Card drawn face up in this turn, which may not be discarded, or -1
+	 */
+	private int excluded = -1;
+	/**
+	 * Last discard chosen, the hand and excluded card it was chosen with, and the deadwood it leaves
+	 */
+	private int discard = -1, discardExcluded = -1;
+	private long discardHand = -1L;
+	private int discardDeadwood;
+
+	/**
+	 * Set the hand.
+	 * @param hand bitstring of the 10-card hand, or of the 11-card hand after a face-down draw
+	 */
+	public void set(long hand) {
+		evaluator.set(hand);
+		deadwood = -1;
+		excluded = -1;
+		discardHand = -1L;
+	}
+
+	/**
+	 * Return the bitstring of the hand.
+	 * @return the bitstring of the hand
+	 */
+	public long getHand() {
+		return evaluator.getHandBitstring();
+	}
+
+	/**
+	 * Return whether to draw the face-up card: if it forms a meld with the hand and the best discard then lowers
+	 * deadwood.
+	 * @param faceUpCard id number of the face-up card
+	 * @return whether or not to draw the face-up card
+	 */
+	public boolean willDrawFaceUpCard(int faceUpCard) {
+		int bestDeadwood = getDeadwood();
+		int numMelds = evaluator.getNumMelds();
+		evaluator.add(faceUpCard);
+		boolean draw = evaluator.getNumMelds() > numMelds && chooseDiscard(faceUpCard) < bestDeadwood;
+		evaluator.remove(faceUpCard);
+		return draw;
+	}
+
+	/**
+	 * Add a drawn card to the hand.
+	 * @param cardId id number of the drawn card
+	 * @param faceUp whether or not the card was drawn face up
+	 */
+	public void draw(int cardId, boolean faceUp) {
+		evaluator.add(cardId);
+		excluded = faceUp ? cardId : -1;
+	}
+
+	/**
+	 * Return the discard leaving least deadwood, preferring higher deadwood cards on ties.  The card drawn face up
+	 * in this turn is not discarded.
+	 * @return the id number of the card to discard
+	 */
+	public int getDiscard() {
+		if (evaluator.getHandBitstring() != discardHand || excluded != discardExcluded)
+			chooseDiscard(excluded);
+		return discard;
+	}
+
+	/**
+	 * Remove a discarded card, not necessarily the one chosen by getDiscard(), from the hand.
+	 * @param cardId id number of the discarded card
+	 */
+	public void discard(int cardId) {
+		boolean known = evaluator.getHandBitstring() == discardHand && cardId == discard;
+		deadwood = known ? discardDeadwood : evaluator.getBestDeadwoodAfterDiscard(cardId);
+		evaluator.remove(cardId);
+		excluded = -1;
+	}
+
+	/**
+	 * Return whether to knock: whenever the best deadwood of the hand allows it.
+	 * @return whether or not to knock
+	 */
+	public boolean willKnock() {
+		return getDeadwood() <= GinRummyUtil.MAX_DEADWOOD;
+	}
+
+	/**
+	 * Store a set of melds of the hand leaving least deadwood and return their number.
+	 * @param melds array receiving the meld bitstrings (GinRummyUtil.MAX_MELDS entries always suffice)
+	 * @return the number of melds
+	 */
+	public int getMelds(long[] melds) {
+		GinRummyUtil.getBestMeldBitstrings(evaluator.getHandBitstring(), melds);
+		int numMelds = 0;
+		while (numMelds < melds.length && melds[numMelds] != 0L)
+			numMelds++;
+		return numMelds;
+	}
+
+	/**
+	 * Return the best deadwood of the 10-card hand, evaluating it only if not known from the last discard.
+	 * @return the best deadwood of the hand
+	 */
+	public int getDeadwood() {
+		if (deadwood < 0)
+			deadwood = evaluator.getBestDeadwood();
+		return deadwood;
+	}
+
+	/**
+	 * Choose the discard of the 11-card hand leaving least deadwood, preferring higher deadwood cards on ties, and
+	 * return the deadwood it leaves.
+	 * @param excluded id number of a card that may not be discarded, or -1
+	 * @return the best deadwood after the discard
+	 */
+	private int chooseDiscard(int excluded) {
+		int bestPoints = -1;
+		discardDeadwood = Integer.MAX_VALUE;
+		for (long cards = evaluator.getHandBitstring(); cards != 0L; cards &= cards - 1) {
+			int id = Long.numberOfTrailingZeros(cards);
+			if (id == excluded)
+				continue;
+			int deadwood = evaluator.getBestDeadwoodAfterDiscard(id);
+			int points = GinRummyUtil.getDeadwoodPoints(1L << id);
+			if (deadwood < discardDeadwood || (deadwood == discardDeadwood && points > bestPoints)) {
+				discard = id;
+				discardDeadwood = deadwood;
+				bestPoints = points;
+			}
+		}
+		discardHand = evaluator.getHandBitstring();
+		discardExcluded = excluded;
+		return discardDeadwood;
+	}
+}
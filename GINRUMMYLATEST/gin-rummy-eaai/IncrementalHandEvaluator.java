@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+
+/**
+ * Maintains a hand of cards as a bitstring (see GinRummyUtil) together with the list of all melds contained in the hand.
+ * Adding a card only checks the melds containing that card, and removing a card only drops the melds containing it,
+ * so the meld list is kept up to date in near-constant time as cards are drawn and discarded.
+ *
+ * Best deadwood is evaluated lazily in a single enumeration of the sets of disjoint melds of the hand, shared with
+ * GinRummyUtil.getBestDeadwoodAfterDiscards (see GinRummyUtil.MeldCover).  The same enumeration yields the best
+ * deadwood after discarding each card of the hand, so the discard decision for an 11-card hand costs one enumeration
+ * instead of eleven solves.  Adding or removing a card contained in no meld leaves the sets of melds, and so the
+ * evaluation, unchanged, so most draws and discards need no new enumeration.
+ */
+public class IncrementalHandEvaluator {
+	/**
+	 * Melds of the hand and their covered points
+	 */
+	private final GinRummyUtil.MeldCover cover = new GinRummyUtil.MeldCover();
+	/**
+	 * Whether or not the evaluation of the cover reflects the current hand
+	 */
+	private boolean evaluated = false;
+
+	/**
+	 * Remove all cards from the hand.
+	 */
+	public void clear() {
+		cover.clear();
+		evaluated = false;
+	}
+
+	/**
+	 * Replace the hand with the given cards.
+	 * @param cards cards of the new hand
+	 */
+	public void set(ArrayList<Card> cards) {
+		clear();
+		for (Card card : cards)
+			add(card.getId());
+	}
+
+	/**
+	 * Replace the hand with the cards of the given bitstring.
+	 * @param handBitstring bitstring of the new hand
+	 */
+	public void set(long handBitstring) {
+		cover.set(handBitstring);
+		evaluated = false;
+	}
+
+	/**
+	 * Add a card to the hand.
+	 * @param card card to add
+	 */
+	public void add(Card card) {
+		add(card.getId());
+	}
+
+	/**
+	 * Add a card to the hand.
+	 * @param id id number of the card to add
+	 */
+	public void add(int id) {
+		int numMelds = cover.numMelds;
+		if (!cover.add(id))
+			return;
+		if (cover.numMelds != numMelds)
+			evaluated = false;
+		else // no meld contains the card, so the sets of melds and the evaluation are unchanged
+			cover.maxCoveredPointsWithout[id] = cover.maxCoveredPoints;
+	}
+
+	/**
+	 * Remove a card from the hand.
+	 * @param card card to remove
+	 */
+	public void remove(Card card) {
+		remove(card.getId());
+	}
+
+	/**
+	 * Remove a card from the hand.
+	 * @param id id number of the card to remove
+	 */
+	public void remove(int id) {
+		int numMelds = cover.numMelds;
+		if (cover.remove(id) && cover.numMelds != numMelds)
+			evaluated = false;
+	}
+
+	/**
+	 * Return the bitstring of the cards in the hand.
+	 * @return the bitstring of the cards in the hand
+	 */
+	public long getHandBitstring() {
+		return cover.hand;
+	}
+
+	/**
+	 * Return the number of melds contained in the hand.
+	 * @return the number of melds contained in the hand
+	 */
+	public int getNumMelds() {
+		return cover.numMelds;
+	}
+
+	/**
+	 * Return the minimum deadwood points of the hand.
+	 * @return the minimum deadwood points of the hand
+	 */
+	public int getBestDeadwood() {
+		evaluate();
+		return GinRummyUtil.getDeadwoodPoints(cover.hand) - cover.maxCoveredPoints;
+	}
+
+	/**
+	 * Return the minimum deadwood points of the hand after discarding the given card of the hand.
+	 * @param card card of the hand to discard
+	 * @return the minimum deadwood points of the hand after discarding the card
+	 */
+	public int getBestDeadwoodAfterDiscard(Card card) {
+		return getBestDeadwoodAfterDiscard(card.getId());
+	}
+
+	/**
+	 * Return the minimum deadwood points of the hand after discarding the given card of the hand.
+	 * @param id id number of the card of the hand to discard
+	 * @return the minimum deadwood points of the hand after discarding the card
+	 */
+	public int getBestDeadwoodAfterDiscard(int id) {
+		if ((cover.hand & 1L << id) == 0L)
+			throw new IllegalArgumentException("card not in hand: " + Card.getCard(id));
+		evaluate();
+		return GinRummyUtil.getDeadwoodPoints(cover.hand & ~(1L << id)) - cover.maxCoveredPointsWithout[id];
+	}
+
+	/**
+	 * Enumerate the sets of disjoint melds of the hand once, if the hand changed since the last evaluation.
+	 */
+	private void evaluate() {
+		if (evaluated)
+			return;
+		cover.evaluate(null);
+		evaluated = true;
+	}
+}
@@ -0,0 +1,246 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Wraps a player and records the latency of each of its callbacks, and optionally the bytes each callback
+ * allocates, into a DecisionProfile.  Any GinRummyPlayer can be instrumented (through a GinRummyPlayerAdapter),
+ * and the wrapper is itself a FastGinRummyPlayer, so GinRummyGame calls it directly.
+ *
+ * When disabled, each callback costs one field test on top of the wrapped call.  When enabled, each callback
+ * costs two System.nanoTime() calls and a histogram increment; allocation tracking adds two reads of the
+ * thread's allocation counter (com.sun.management.ThreadMXBean) where the JVM supports it.
+ */
+public class InstrumentedGinRummyPlayer implements FastGinRummyPlayer {
+
+	/**
+	 * Thread allocation counter, or null if the JVM does not support it
+	 */
+	private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = allocationCounter();
+
+	/**
+	 * Return the thread allocation counter, enabling it if needed, or null if the JVM does not support it.
+	 * @return the thread allocation counter, or null
+	 */
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (!(bean instanceof com.sun.management.ThreadMXBean))
+				return null;
+			com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) bean;
+			if (!counter.isThreadAllocatedMemorySupported())
+				return null;
+			if (!counter.isThreadAllocatedMemoryEnabled())
+				counter.setThreadAllocatedMemoryEnabled(true);
+			return counter;
+		}
+		catch (UnsupportedOperationException | SecurityException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Wrapped player
+	 */
+	private final FastGinRummyPlayer player;
+
+	/**
+	 * Profile receiving the recorded calls
+	 */
+	private final DecisionProfile profile = new DecisionProfile();
+
+	/**
+	 * Whether or not calls are recorded
+	 */
+	private boolean enabled = true;
+
+	/**
+	 * Whether or not allocated bytes are recorded
+	 */
+	private boolean trackingAllocation = ALLOCATION_COUNTER != null;
+
+	/**
+	 * Start time and allocation counter of the current call
+	 */
+	private long startNs, startBytes;
+
+	/**
+	 * Instrument the given player.
+	 * @param player player to instrument
+	 */
+	public InstrumentedGinRummyPlayer(GinRummyPlayer player) {
+		this(GinRummyPlayerAdapter.adapt(player));
+	}
+
+	/**
+	 * Instrument the given player.
+	 * @param player player to instrument
+	 */
+	public InstrumentedGinRummyPlayer(FastGinRummyPlayer player) {
+		this.player = player;
+	}
+
+	/**
+	 * Return the wrapped player.
+	 * @return the wrapped player
+	 */
+	public FastGinRummyPlayer getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Return the profile of the recorded calls.
+	 * @return the profile of the recorded calls
+	 */
+	public DecisionProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Set whether or not calls are recorded.
+	 * @param enabled whether or not calls are recorded
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Set whether or not allocated bytes are recorded; ignored if the JVM cannot measure them.
+	 * @param trackingAllocation whether or not allocated bytes are recorded
+	 */
+	public void setTrackingAllocation(boolean trackingAllocation) {
+		this.trackingAllocation = trackingAllocation && ALLOCATION_COUNTER != null;
+	}
+
+	/**
+	 * Return whether or not allocated bytes are recorded.
+	 * @return whether or not allocated bytes are recorded
+	 */
+	public boolean isTrackingAllocation() {
+		return trackingAllocation;
+	}
+
+	/**
+	 * Start measuring a call.
+	 */
+	private void begin() {
+		startBytes = trackingAllocation ? ALLOCATION_COUNTER.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+		startNs = System.nanoTime();
+	}
+
+	/**
+	 * Finish measuring a call and record it.
+	 * @param callback callback number (see DecisionProfile)
+	 */
+	private void end(int callback) {
+		long latencyNs = System.nanoTime() - startNs;
+		long bytes = trackingAllocation ? ALLOCATION_COUNTER.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes : -1;
+		profile.record(callback, latencyNs, bytes);
+	}
+
+	@Override
+	public void startGame(int playerNum, int startingPlayerNum, long hand) {
+		if (!enabled) {
+			player.startGame(playerNum, startingPlayerNum, hand);
+			return;
+		}
+		begin();
+		player.startGame(playerNum, startingPlayerNum, hand);
+		end(DecisionProfile.START_GAME);
+	}
+
+	@Override
+	public boolean willDrawFaceUpCard(int cardId) {
+		if (!enabled)
+			return player.willDrawFaceUpCard(cardId);
+		begin();
+		boolean draw = player.willDrawFaceUpCard(cardId);
+		end(DecisionProfile.WILL_DRAW_FACE_UP_CARD);
+		return draw;
+	}
+
+	@Override
+	public void reportDraw(int playerNum, int cardId) {
+		if (!enabled) {
+			player.reportDraw(playerNum, cardId);
+			return;
+		}
+		begin();
+		player.reportDraw(playerNum, cardId);
+		end(DecisionProfile.REPORT_DRAW);
+	}
+
+	@Override
+	public int getDiscard() {
+		if (!enabled)
+			return player.getDiscard();
+		begin();
+		int cardId = player.getDiscard();
+		end(DecisionProfile.GET_DISCARD);
+		return cardId;
+	}
+
+	@Override
+	public void reportDiscard(int playerNum, int cardId) {
+		if (!enabled) {
+			player.reportDiscard(playerNum, cardId);
+			return;
+		}
+		begin();
+		player.reportDiscard(playerNum, cardId);
+		end(DecisionProfile.REPORT_DISCARD);
+	}
+
+	@Override
+	public int getFinalMelds(long[] melds) {
+		if (!enabled)
+			return player.getFinalMelds(melds);
+		begin();
+		int numMelds = player.getFinalMelds(melds);
+		end(DecisionProfile.GET_FINAL_MELDS);
+		return numMelds;
+	}
+
+	@Override
+	public void reportFinalMelds(int playerNum, long[] melds, int numMelds) {
+		if (!enabled) {
+			player.reportFinalMelds(playerNum, melds, numMelds);
+			return;
+		}
+		begin();
+		player.reportFinalMelds(playerNum, melds, numMelds);
+		end(DecisionProfile.REPORT_FINAL_MELDS);
+	}
+
+	@Override
+	public void reportScores(int[] scores) {
+		if (!enabled) {
+			player.reportScores(scores);
+			return;
+		}
+		begin();
+		player.reportScores(scores);
+		end(DecisionProfile.REPORT_SCORES);
+	}
+
+	@Override
+	public void reportLayoff(int playerNum, int cardId, long opponentMeld) {
+		if (!enabled) {
+			player.reportLayoff(playerNum, cardId, opponentMeld);
+			return;
+		}
+		begin();
+		player.reportLayoff(playerNum, cardId, opponentMeld);
+		end(DecisionProfile.REPORT_LAYOFF);
+	}
+
+	@Override
+	public void reportFinalHand(int playerNum, long hand) {
+		if (!enabled) {
+			player.reportFinalHand(playerNum, hand);
+			return;
+		}
+		begin();
+		player.reportFinalHand(playerNum, hand);
+		end(DecisionProfile.REPORT_FINAL_HAND);
+	}
+
+}
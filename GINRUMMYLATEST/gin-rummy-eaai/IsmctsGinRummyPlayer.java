@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+
+/**
+ * Gin Rummy player that makes its draw, discard and knock decisions by information-set Monte Carlo tree search
+ * (IsmctsSearch), determinizing the opponent's hand consistently with what Aja6082GinRummyPlayer tracks about the
+ * round (seen cards and cards known to be in the opponent's hand).  The observed moves of both players, declines of
+ * the initial face-up card included, are followed in the search trees, so each decision reuses the subtree searched
+ * for it at earlier decisions of the round.
+ * Melding and play after an opponent's knock are those of Aja6082GinRummyPlayer.
+ */
+public class IsmctsGinRummyPlayer extends Aja6082GinRummyPlayer {
+
+	//Search of the decisions, with the trees kept between decisions of a round
+	protected final IsmctsSearch search;
+
+	public IsmctsGinRummyPlayer() {
+		this(new IsmctsSearch());
+	}
+
+	public IsmctsGinRummyPlayer(IsmctsSearch search) {
+		this.search = search;
+	}
+
+	@Override
+	public void startGame(int playerNum, int startingPlayerNum, Card[] cards) {
+		super.startGame(playerNum, startingPlayerNum, cards);
+		search.reset();
+	}
+
+	@Override
+	public boolean willDrawFaceUpCard(Card card) {
+		observeFaceUpCard(card);
+		// The initial face-up card is offered before any discard: first to the starting player, then to the other
+		// player after the starting player declined it
+		int declines = -1;
+		if (knowledge.getTurn() == 0 && knowledge.getOpponentDiscardsBitstring() == 0L)
+			declines = playerNum == startingPlayerNum ? 0 : 1;
+		boolean draw = search.willDrawFaceUpCard(evaluator.getHandBitstring(), card.getId(), declines, knowledge.getSeenBitstring(), knowledge.getOpponentCardsBitstring());
+		// Declining the initial face-up card ends the turn without a draw to report
+		if (!draw && declines >= 0)
+			search.advance(0, IsmctsSearch.DECLINE);
+		return draw;
+	}
+
+	@Override
+	public void reportDraw(int playerNum, Card drawnCard) {
+		super.reportDraw(playerNum, drawnCard);
+		if (playerNum != this.playerNum)
+			search.advance(1, drawnCard == null ? IsmctsSearch.DRAW_FACE_DOWN : IsmctsSearch.DRAW_FACE_UP);
+		else if (drawnCard == faceUpCard)
+			search.advance(0, IsmctsSearch.DRAW_FACE_UP);
+		else {
+			// The starting player drawing face down before any discard declined the initial card, and so did the opponent
+			if (playerNum == startingPlayerNum && knowledge.getTurn() == 0 && knowledge.getOpponentDiscardsBitstring() == 0L)
+				search.advance(1, IsmctsSearch.DECLINE);
+			search.advance(0, IsmctsSearch.DRAW_FACE_DOWN);
+			search.advance(0, IsmctsSearch.DRAWN_CARD + drawnCard.getId());
+		}
+	}
+
+	@Override
+	public Card getDiscard() {
+		long candidates = 0L;
+		for (Card card : cards)
+			if (isLegalDiscard(card))
+				candidates |= 1L << card.getId();
+		Card discard = Card.getCard(search.getDiscard(evaluator.getHandBitstring(), candidates, knowledge.getSeenBitstring(), knowledge.getOpponentCardsBitstring()));
+		recordDrawDiscard(discard);
+		return discard;
+	}
+
+	@Override
+	public void reportDiscard(int playerNum, Card discardedCard) {
+		super.reportDiscard(playerNum, discardedCard);
+		search.advance(playerNum == this.playerNum ? 0 : 1, discardedCard.getId());
+		// The opponent continued play if it is reported anything else this round
+		if (playerNum != this.playerNum)
+			search.advance(1, IsmctsSearch.CONTINUE);
+	}
+
+	@Override
+	public ArrayList<ArrayList<Card>> getFinalMelds() {
+		// Always meld after an opponent's knock and knock on gin; otherwise knock only if the search favors it.
+		if (!opponentKnocked) {
+			int deadwood = evaluator.getBestDeadwood();
+			Card faceUp = knowledge.getFaceUp();
+			if (deadwood > GinRummyUtil.MAX_DEADWOOD
+					|| deadwood > 0 && !search.willKnock(evaluator.getHandBitstring(), faceUp == null ? -1 : faceUp.getId(), knowledge.getSeenBitstring(), knowledge.getOpponentCardsBitstring())) {
+				search.advance(0, IsmctsSearch.CONTINUE);
+				return null;
+			}
+		}
+		return super.getFinalMelds();
+	}
+
+}
@@ -0,0 +1,667 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Information-set Monte Carlo tree search (single-observer ISMCTS) of draw, discard and knock decisions over the
+ * rest of the round.
+ *
+ * Each iteration determinizes the round consistently with what the searching player knows, as MonteCarloEngine
+ * does: cards the opponent is known to hold stay in its hand, and the rest of its hand and the draw pile are dealt
+ * from the cards never seen.  The iteration then descends a tree of the searching player's observations: decisions
+ * of both players, and the cards the searching player draws face down (the opponent's face-down draws stay hidden).
+ * Moves are chosen by UCB1 over the moves legal in the determinization, with each child's availability count in
+ * place of its parent's visit count; the first untried legal move is expanded and the round is played out by
+ * GreedyPolicy, the rollout policy of MonteCarloEngine, which also orders the moves.  The value of an iteration is
+ * the round score of the searching player minus that of the opponent, with layoffs on the knocker's best melds,
+ * scaled by the goal score.
+ *
+ * Determinizations are GameStates, which apply the rules of the turn (declines of the initial face-up card, the
+ * forced face-down draw and the end of play with two cards left); each iteration copies the root state and shuffles
+ * the draw pile, so the cards drawn face down are dealt in advance.  Each worker of the root parallelization grows
+ * its own tree on its own determinizations, and the root statistics of the workers are summed.  As in
+ * MonteCarloEngine, the greedy move is made unless another move's mean value is higher by a significant margin, so a
+ * small budget degrades to the greedy policy rather than to noise (the values of round play-outs vary far more than
+ * moves differ).  The trees are kept between decisions: advance(int, int) follows the observed moves of both players,
+ * so the next decision starts from the subtree of what was observed.  Discards considered are limited to those
+ * leaving least deadwood.
+ *
+ * Player 0 is the searching player and player 1 the opponent.  A search is not thread-safe; use one per player.
+ */
+public class IsmctsSearch {
+
+	/**
+	 * Moves other than discards, which are card id numbers: the moves of GameState (drawing the face-up or a face-down
+	 * card, knocking or continuing play after a discard, and declining the initial face-up card without drawing) and
+	 * the searching player's face-down draw of a card (plus its card id number).
+	 */
+	public static final int DRAW_FACE_UP = GameState.DRAW_FACE_UP, DRAW_FACE_DOWN = GameState.DRAW_FACE_DOWN,
+			KNOCK = GameState.KNOCK, CONTINUE = GameState.CONTINUE, DECLINE = GameState.DECLINE, DRAWN_CARD = DECLINE + 1;
+
+	/**
+	 * Default time budget per decision in nanoseconds
+	 */
+	public static final long DEFAULT_BUDGET_NS = 5000000L;
+
+	/**
+	 * Hand size (before and after turn)
+	 */
+	private static final int HAND_SIZE = 10;
+
+	/**
+	 * Bitstring of all cards
+	 */
+	private static final long ALL_CARDS = (1L << Card.NUM_CARDS) - 1;
+
+	/**
+	 * Time budget per decision in nanoseconds, used if no iteration budget is set
+	 */
+	private long budgetNs;
+
+	/**
+	 * Number of iterations per decision over all workers, or 0 to use the time budget
+	 */
+	private int iterations = 0;
+
+	/**
+	 * Minimum number of iterations per worker and decision, regardless of the time budget
+	 */
+	private int minIterations = 16;
+
+	/**
+	 * Number of parallel workers, each with its own tree
+	 */
+	private int parallelism;
+
+	/**
+	 * Maximum number of discards considered, taken in order of least deadwood left
+	 */
+	private int maxDiscardCandidates = 4;
+
+	/**
+	 * UCB1 exploration constant for values scaled by the goal score
+	 */
+	private double exploration = 0.5;
+
+	/**
+	 * Number of standard errors by which a move's mean value must beat the greedy move's to be made instead
+	 */
+	private double significance = 2;
+
+	/**
+	 * Executor of the workers, or null for the common ForkJoinPool
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Random number generator from which workers split their own
+	 */
+	private SplittableRandom random = new SplittableRandom();
+
+	/**
+	 * Workers with their trees, created on first search
+	 */
+	private Worker[] workers = null;
+
+	/**
+	 * Create a search with the default time budget and one worker per available processor.
+	 */
+	public IsmctsSearch() {
+		this(DEFAULT_BUDGET_NS, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a search with the given time budget and number of workers.
+	 * @param budgetNs time budget per decision in nanoseconds
+	 * @param parallelism number of parallel workers (1 searches on the calling thread)
+	 */
+	public IsmctsSearch(long budgetNs, int parallelism) {
+		setBudgetNs(budgetNs);
+		setParallelism(parallelism);
+	}
+
+	/**
+	 * Set the time budget per decision, used if no iteration budget is set.
+	 * @param budgetNs time budget per decision in nanoseconds
+	 */
+	public void setBudgetNs(long budgetNs) {
+		this.budgetNs = budgetNs;
+	}
+
+	/**
+	 * Set the number of iterations per decision over all workers, which replaces the time budget.
+	 * @param iterations number of iterations per decision, or 0 to use the time budget
+	 */
+	public void setIterations(int iterations) {
+		if (iterations < 0)
+			throw new IllegalArgumentException("iterations must not be negative: " + iterations);
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Set the minimum number of iterations per worker and decision under the time budget.
+	 * @param minIterations minimum number of iterations per worker and decision
+	 */
+	public void setMinIterations(int minIterations) {
+		this.minIterations = minIterations;
+	}
+
+	/**
+	 * Set the number of parallel workers.  Trees kept from earlier decisions are dropped.
+	 * @param parallelism number of parallel workers (1 searches on the calling thread)
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		this.parallelism = parallelism;
+		workers = null;
+	}
+
+	/**
+	 * Set the maximum number of discards considered, taken in order of least deadwood left.
+	 * @param maxDiscardCandidates maximum number of discards considered
+	 */
+	public void setMaxDiscardCandidates(int maxDiscardCandidates) {
+		if (maxDiscardCandidates < 1)
+			throw new IllegalArgumentException("maxDiscardCandidates must be positive: " + maxDiscardCandidates);
+		this.maxDiscardCandidates = maxDiscardCandidates;
+	}
+
+	/**
+	 * Set the UCB1 exploration constant, for values scaled by the goal score.
+	 * @param exploration exploration constant
+	 */
+	public void setExploration(double exploration) {
+		this.exploration = exploration;
+	}
+
+	/**
+	 * Set the number of standard errors by which a move's mean value must beat the greedy move's to be made instead.
+	 * @param significance number of standard errors
+	 */
+	public void setSignificance(double significance) {
+		this.significance = significance;
+	}
+
+	/**
+	 * Set the executor of the workers, or null for the common ForkJoinPool.
+	 * @param executor executor of the workers
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Seed the search so that decisions on a single worker with an iteration budget are reproducible.
+	 * Trees kept from earlier decisions are dropped.
+	 * @param seed random seed
+	 */
+	public void setSeed(long seed) {
+		random = new SplittableRandom(seed);
+		workers = null;
+	}
+
+	/**
+	 * Drop the trees kept from earlier decisions, e.g. at the start of a round.
+	 */
+	public void reset() {
+		if (workers != null)
+			for (Worker worker : workers)
+				worker.root = null;
+	}
+
+	/**
+	 * Follow an observed move in the kept trees, so that the next decision reuses the subtree below it.  Trees
+	 * without the move are dropped.  A face-down draw of the searching player is followed by the move
+	 * DRAWN_CARD + card id, and every discard by KNOCK or CONTINUE.  Declines of the initial face-up card are moves
+	 * too, including the opponent's, which is not reported but known from the next offer or draw.
+	 * @param player player making the move (0: the searching player, 1: the opponent)
+	 * @param move move made
+	 */
+	public void advance(int player, int move) {
+		if (workers != null)
+			for (Worker worker : workers)
+				if (worker.root != null)
+					worker.root = worker.root.getChild(player, move);
+	}
+
+	/**
+	 * Return whether to draw the face-up card.  Not drawing the initial face-up card declines it, and after both
+	 * players decline it the starting player draws face down.
+	 * @param hand bitstring of the 10-card hand
+	 * @param faceUpCard id number of the face-up card
+	 * @param declines number of declines of the initial face-up card so far if faceUpCard is the initial face-up card
+	 * and no card was drawn in the round (0 for the starting player, 1 for the other player), or -1 otherwise
+	 * @param seen bitstring of all cards seen so far outside of the hand (discards, face-up cards, opponent draws)
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @return whether or not to draw the face-up card
+	 */
+	public boolean willDrawFaceUpCard(long hand, int faceUpCard, int declines, long seen, long opponentCards) {
+		GameState state = new GameState();
+		state.setHand(0, hand);
+		if (declines >= 0)
+			state.setTurn(0, GameState.DRAW, faceUpCard, declines, faceUpCard);
+		else
+			state.setTurn(0, GameState.DRAW, faceUpCard, 2, -1);
+		return search(state, seen, opponentCards, ALL_CARDS) == DRAW_FACE_UP;
+	}
+
+	/**
+	 * Return the discard to make.
+	 * @param hand bitstring of the 11-card hand
+	 * @param candidates bitstring of the cards of the hand that may be discarded
+	 * @param seen bitstring of all cards seen so far outside of the hand
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @return the id number of the card to discard
+	 */
+	public int getDiscard(long hand, long candidates, long seen, long opponentCards) {
+		GameState state = new GameState();
+		state.setHand(0, hand);
+		state.setTurn(0, GameState.DISCARD, -1, 2, -1);
+		return search(state, seen, opponentCards, candidates);
+	}
+
+	/**
+	 * Return whether to knock.
+	 * @param hand bitstring of the 10-card hand after discarding
+	 * @param faceUpCard id number of the card just discarded
+	 * @param seen bitstring of all cards seen so far outside of the hand
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @return whether or not to knock
+	 */
+	public boolean willKnock(long hand, int faceUpCard, long seen, long opponentCards) {
+		GameState state = new GameState();
+		state.setHand(0, hand);
+		state.setTurn(0, GameState.KNOCK_DECISION, faceUpCard, 2, -1);
+		return search(state, seen, opponentCards, ALL_CARDS) == KNOCK;
+	}
+
+	/**
+	 * Search from a state of the searching player's decision and return the move to make: the greedy move unless another
+	 * move has a mean value higher by more than the given number of standard errors, in which case the best such move.
+	 * @param state state with the searching player's hand and turn, without the draw pile
+	 * @param seen bitstring of all cards seen so far outside of the hand
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @param candidates bitstring of the cards that may be discarded at the root
+	 * @return the move to make
+	 */
+	private int search(GameState state, long seen, long opponentCards, long candidates) {
+		long unknown = ALL_CARDS & ~state.getHand(0) & ~seen & ~opponentCards;
+		if (state.getFaceUpCard() >= 0)
+			unknown &= ~(1L << state.getFaceUpCard());
+		int numHidden = Math.min(Long.bitCount(unknown), Math.max(0, HAND_SIZE - Long.bitCount(opponentCards)));
+		state.setHand(1, opponentCards);
+		int[] rootMoves = new int[Card.NUM_CARDS];
+		int numRootMoves = legalMoves(state, candidates, rootMoves, new int[Card.NUM_CARDS], new GreedyPolicy());
+		if (numRootMoves == 1)
+			return rootMoves[0];
+
+		if (workers == null) {
+			workers = new Worker[parallelism];
+			for (int i = 0; i < parallelism; i++)
+				workers[i] = new Worker(random.split());
+		}
+		long deadline = System.nanoTime() + budgetNs;
+		int workerIterations = iterations > 0 ? (iterations + parallelism - 1) / parallelism : 0;
+		for (Worker worker : workers) {
+			if (worker.root == null)
+				worker.root = new Node(-1, -1);
+			worker.prepare(state, unknown, numHidden, candidates, deadline, workerIterations);
+		}
+		if (parallelism == 1)
+			workers[0].run();
+		else {
+			ExecutorService service = executor != null ? executor : ForkJoinPool.commonPool();
+			ArrayList<Future<Worker>> futures = new ArrayList<Future<Worker>>();
+			for (Worker worker : workers)
+				futures.add(service.submit(worker::run));
+			try {
+				for (Future<Worker> future : futures)
+					future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("search interrupted", e);
+			}
+			catch (ExecutionException e) {
+				throw new IllegalStateException("search failed", e.getCause());
+			}
+		}
+
+		// sum the root statistics of the workers; the greedy move is the first root move
+		long[] visits = new long[numRootMoves];
+		double[] means = new double[numRootMoves], variances = new double[numRootMoves];
+		for (int i = 0; i < numRootMoves; i++) {
+			double sum = 0, squares = 0;
+			for (Worker worker : workers) {
+				Node child = worker.root.getChild(0, rootMoves[i]);
+				if (child != null) {
+					visits[i] += child.visits;
+					sum += child.value;
+					squares += child.squares;
+				}
+			}
+			if (visits[i] > 0) {
+				means[i] = sum / visits[i];
+				variances[i] = Math.max(0, squares / visits[i] - means[i] * means[i]);
+			}
+		}
+		int best = rootMoves[0];
+		double bestGain = 0;
+		for (int i = 1; i < numRootMoves; i++) {
+			if (visits[i] < 2 || visits[0] < 2)
+				continue;
+			double gain = means[i] - means[0];
+			double standardError = Math.sqrt(variances[i] / visits[i] + variances[0] / visits[0]);
+			if (gain > bestGain && gain > significance * standardError) {
+				best = rootMoves[i];
+				bestGain = gain;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Store the legal moves of the player to move, the move of GreedyPolicy first, and return their number.  Discards
+	 * are those leaving least deadwood (higher deadwood cards first on ties), up to maxDiscardCandidates.
+	 * @param state state, not at the end of the round
+	 * @param candidates bitstring of the cards that may be discarded
+	 * @param moves array receiving the moves
+	 * @param deadwood scratch array of at least 11 entries
+	 * @param policy scratch policy choosing the greedy draw
+	 * @return the number of legal moves
+	 */
+	private int legalMoves(GameState state, long candidates, int[] moves, int[] deadwood, GreedyPolicy policy) {
+		long hand = state.getHand(state.getCurrentPlayer());
+		switch (state.getPhase()) {
+		case GameState.DRAW:
+			if (!state.isFaceUpOffered()) {
+				moves[0] = DRAW_FACE_DOWN;
+				return 1;
+			}
+			policy.set(hand);
+			boolean faceUpFirst = policy.willDrawFaceUpCard(state.getFaceUpCard());
+			int pass = state.isLegal(DECLINE) ? DECLINE : DRAW_FACE_DOWN;
+			moves[0] = faceUpFirst ? DRAW_FACE_UP : pass;
+			moves[1] = faceUpFirst ? pass : DRAW_FACE_UP;
+			return 2;
+		case GameState.DISCARD:
+			if (state.isDrawnFaceUp())
+				candidates &= ~(1L << state.getDrawnCard());
+			GinRummyUtil.getBestDeadwoodAfterDiscards(hand, deadwood);
+			// insertion of (deadwood, -points, id) keys into the sorted first numMoves moves
+			int numMoves = 0, k = 0;
+			for (long cards = hand; cards != 0L; cards &= cards - 1, k++) {
+				int id = Long.numberOfTrailingZeros(cards);
+				if ((candidates & 1L << id) == 0L)
+					continue;
+				int key = discardKey(deadwood[k], id), i = Math.min(numMoves, maxDiscardCandidates - 1);
+				if (numMoves == maxDiscardCandidates && key >= discardKey(deadwood, hand, moves[i]))
+					continue;
+				for (; i > 0 && key < discardKey(deadwood, hand, moves[i - 1]); i--)
+					moves[i] = moves[i - 1];
+				moves[i] = id;
+				if (numMoves < maxDiscardCandidates)
+					numMoves++;
+			}
+			return numMoves;
+		default: // KNOCK_DECISION
+			int handDeadwood = GinRummyUtil.getBestDeadwood(hand);
+			if (handDeadwood > GinRummyUtil.MAX_DEADWOOD) {
+				moves[0] = CONTINUE;
+				return 1;
+			}
+			moves[0] = KNOCK;
+			moves[1] = CONTINUE;
+			return handDeadwood == 0 ? 1 : 2; // always knock on gin
+		}
+	}
+
+	/**
+	 * Return the sort key of a discard: by deadwood left, then by decreasing card points, then by card id.
+	 * @param deadwood deadwood left by the discard
+	 * @param id id number of the card discarded
+	 * @return the sort key of the discard
+	 */
+	private static int discardKey(int deadwood, int id) {
+		return deadwood << 12 | (Card.NUM_RANKS - GinRummyUtil.getDeadwoodPoints(1L << id)) << 6 | id;
+	}
+
+	/**
+	 * Return the sort key of a discard of a hand, given the deadwood left by each discard of the hand.
+	 * @param deadwood deadwood left by each discard of the hand in increasing card id order
+	 * @param hand bitstring of the hand
+	 * @param id id number of the card discarded
+	 * @return the sort key of the discard
+	 */
+	private static int discardKey(int[] deadwood, long hand, int id) {
+		return discardKey(deadwood[Long.bitCount(hand & ((1L << id) - 1))], id);
+	}
+
+	/**
+	 * A node of a search tree: the information set reached by a move.  Children are found by linear search, as
+	 * nodes have at most maxDiscardCandidates children, except chance nodes of face-down draws.
+	 */
+	private static final class Node {
+		/**
+		 * Player making the move leading to this node, and the move
+		 */
+		final int player, move;
+		/**
+		 * Children in their first numChildren entries
+		 */
+		Node[] children = null;
+		int numChildren = 0;
+		/**
+		 * Number of visits, number of visits of the parent with the move legal, and sum of values and of squared values
+		 * for the player making the move
+		 */
+		int visits = 0, availability = 0;
+		double value = 0, squares = 0;
+
+		Node(int player, int move) {
+			this.player = player;
+			this.move = move;
+		}
+
+		Node getChild(int player, int move) {
+			for (int i = 0; i < numChildren; i++)
+				if (children[i].move == move && children[i].player == player)
+					return children[i];
+			return null;
+		}
+
+		Node addChild(int player, int move) {
+			if (children == null)
+				children = new Node[4];
+			else if (numChildren == children.length)
+				children = Arrays.copyOf(children, 2 * numChildren);
+			Node child = new Node(player, move);
+			children[numChildren++] = child;
+			return child;
+		}
+	}
+
+	/**
+	 * A search worker with its own tree, random number generator and scratch arrays.
+	 */
+	private class Worker {
+		private final SplittableRandom random;
+		/**
+		 * Root of the worker's tree, kept between decisions, or null
+		 */
+		Node root = null;
+		private final GameState rootState = new GameState(), state = new GameState();
+		private long unknown, candidates, deadline;
+		private int numHidden, iterations;
+		private final byte[] unknownIds = new byte[Card.NUM_CARDS];
+		private final int[] moves = new int[Card.NUM_CARDS], untried = new int[Card.NUM_CARDS], deadwood = new int[Card.NUM_CARDS];
+		private final GreedyPolicy[] policies = {new GreedyPolicy(), new GreedyPolicy()};
+		private final long[] melds = new long[GinRummyUtil.MAX_MELDS], opponentMelds = new long[GinRummyUtil.MAX_MELDS], layoffs = new long[GinRummyUtil.MAX_MELDS];
+		private final ArrayList<Node> path = new ArrayList<Node>();
+
+		Worker(SplittableRandom random) {
+			this.random = random;
+		}
+
+		/**
+		 * Set up the next search.
+		 */
+		void prepare(GameState state, long unknown, int numHidden, long candidates, long deadline, int iterations) {
+			rootState.copy(state);
+			this.unknown = unknown;
+			this.numHidden = numHidden;
+			this.candidates = candidates;
+			this.deadline = deadline;
+			this.iterations = iterations;
+		}
+
+		/**
+		 * Run iterations until the iteration budget or the deadline.
+		 * @return this worker
+		 */
+		Worker run() {
+			int numUnknown = 0;
+			for (long cards = unknown; cards != 0L; cards &= cards - 1)
+				unknownIds[numUnknown++] = (byte) Long.numberOfTrailingZeros(cards);
+			for (int n = 0; iterations > 0 ? n < iterations : n < minIterations || System.nanoTime() < deadline; n++) {
+				// determinize: a random permutation of unknown cards gives the draw pile, then the opponent's hidden cards
+				for (int i = numUnknown - 1; i > 0; i--) {
+					int j = random.nextInt(i + 1);
+					byte id = unknownIds[i];
+					unknownIds[i] = unknownIds[j];
+					unknownIds[j] = id;
+				}
+				state.copy(rootState);
+				long hand = rootState.getHand(1);
+				for (int i = numUnknown - numHidden; i < numUnknown; i++)
+					hand |= 1L << unknownIds[i];
+				state.setHand(1, hand);
+				state.setDrawPile(unknownIds, numUnknown - numHidden);
+				iterate();
+			}
+			return this;
+		}
+
+		/**
+		 * Select moves down the tree by UCB1 over the legal moves, expand the first untried move, play out the round
+		 * greedily and add the value to the nodes of the path.
+		 */
+		private void iterate() {
+			path.clear();
+			Node node = root;
+			path.add(node);
+			boolean expanded = false;
+			while (state.getPhase() < GameState.KNOCKED && !expanded) {
+				int player = state.getCurrentPlayer();
+				int numMoves = legalMoves(state, node == root ? candidates : ALL_CARDS, moves, deadwood, policies[0]);
+				Node next = null;
+				int numUntried = 0;
+				double bestScore = Double.NEGATIVE_INFINITY;
+				for (int i = 0; i < numMoves; i++) {
+					Node child = node.getChild(player, moves[i]);
+					if (child == null) {
+						untried[numUntried++] = moves[i];
+						continue;
+					}
+					child.availability++;
+					double score = child.value / child.visits + exploration * Math.sqrt(Math.log(child.availability) / child.visits);
+					if (score > bestScore) {
+						bestScore = score;
+						next = child;
+					}
+				}
+				if (numUntried > 0) {
+					next = node.addChild(player, untried[0]); // untried moves in greedy order
+					next.availability++;
+					expanded = true;
+				}
+				state.apply(next.move);
+				node = next;
+				path.add(node);
+				if (next.move == DRAW_FACE_DOWN && player == 0) { // the searching player observes its face-down draw
+					int drawn = state.getDrawnCard();
+					Node chance = node.getChild(0, DRAWN_CARD + drawn);
+					node = chance != null ? chance : node.addChild(0, DRAWN_CARD + drawn);
+					path.add(node);
+				}
+			}
+			double value = (double) playOut() / GinRummyUtil.GOAL_SCORE;
+			for (Node n : path) {
+				n.visits++;
+				n.value += n.player == 1 ? -value : value;
+				n.squares += value * value;
+			}
+		}
+
+		/**
+		 * Play out the rest of the round by GreedyPolicy for both players: draw the face-up card if it forms a meld and
+		 * the best discard then lowers deadwood (else decline the initial face-up card), discard to leave least deadwood
+		 * (highest card on ties), and knock as soon as possible.
+		 * @return the round value for player 0
+		 */
+		private int playOut() {
+			if (state.getPhase() < GameState.KNOCKED) {
+				for (int player = 0; player < 2; player++)
+					policies[player].set(state.getHand(player));
+				// the card drawn face up may not be discarded
+				if (state.getPhase() == GameState.DISCARD && state.isDrawnFaceUp()) {
+					GreedyPolicy policy = policies[state.getCurrentPlayer()];
+					policy.set(state.getHand(state.getCurrentPlayer()) & ~(1L << state.getDrawnCard()));
+					policy.draw(state.getDrawnCard(), true);
+				}
+			}
+			while (state.getPhase() < GameState.KNOCKED) {
+				GreedyPolicy policy = policies[state.getCurrentPlayer()];
+				switch (state.getPhase()) {
+				case GameState.DRAW:
+					boolean drawFaceUp = state.isFaceUpOffered() && policy.willDrawFaceUpCard(state.getFaceUpCard());
+					if (!drawFaceUp && state.isLegal(DECLINE)) {
+						state.apply(DECLINE);
+						break;
+					}
+					state.apply(drawFaceUp ? DRAW_FACE_UP : DRAW_FACE_DOWN);
+					policy.draw(state.getDrawnCard(), drawFaceUp);
+					break;
+				case GameState.DISCARD:
+					int discard = policy.getDiscard();
+					policy.discard(discard);
+					state.apply(discard);
+					break;
+				default: // KNOCK_DECISION
+					state.apply(policy.willKnock() ? KNOCK : CONTINUE);
+				}
+			}
+			return state.getPhase() == GameState.KNOCKED ? score(state.getCurrentPlayer()) : 0;
+		}
+
+		/**
+		 * Score a knock: the knocker melds its best melds, and unless the knocker goes gin the opponent lays off its
+		 * unmelded cards on them after melding its own best melds.
+		 * @param knocker knocking player
+		 * @return the round value for player 0
+		 */
+		private int score(int knocker) {
+			long knockerHand = state.getHand(knocker), opponentHand = state.getHand(1 - knocker);
+			Arrays.fill(melds, 0L);
+			int knockingDeadwood = GinRummyUtil.getBestMeldBitstrings(knockerHand, melds);
+			Arrays.fill(opponentMelds, 0L);
+			GinRummyUtil.getBestMeldBitstrings(opponentHand, opponentMelds);
+			long unmelded = opponentHand;
+			for (int i = 0; i < opponentMelds.length && opponentMelds[i] != 0L; i++)
+				unmelded &= ~opponentMelds[i];
+			if (knockingDeadwood > 0) {
+				int numMelds = 0;
+				while (numMelds < melds.length && melds[numMelds] != 0L)
+					numMelds++;
+				unmelded &= ~GinRummyUtil.getLayoffs(melds, numMelds, unmelded, layoffs);
+			}
+			int knockerValue = GinRummyUtil.getKnockPoints(knockingDeadwood, GinRummyUtil.getDeadwoodPoints(unmelded));
+			return knocker == 0 ? knockerValue : -knockerValue;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative long values (e.g. latencies in nanoseconds) with bounded relative error, in the style
+ * of HdrHistogram: values below 128 have their own buckets, and each power-of-two range above is split into 64
+ * buckets, so any recorded value is reported within 1/64 (about 1.6%) of its true value.  Recording is a few
+ * bitwise operations and an array increment, and histograms merge by adding counts.
+ *
+ * A histogram is not thread-safe; record into one histogram per thread and merge them with add.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of bits of precision kept for each value
+	 */
+	private static final int SUB_BUCKET_BITS = 7;
+
+	/**
+	 * Number of buckets for values below 2^SUB_BUCKET_BITS, and twice the number of buckets per power-of-two range above
+	 */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Number of buckets per power-of-two range above SUB_BUCKET_COUNT
+	 */
+	private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+	/**
+	 * Number of buckets covering all non-negative long values
+	 */
+	private static final int NUM_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+	/**
+	 * Number of recorded values in each bucket
+	 */
+	private final long[] counts = new long[NUM_BUCKETS];
+
+	/**
+	 * Number of recorded values
+	 */
+	private long totalCount = 0;
+
+	/**
+	 * Sum of recorded values
+	 */
+	private long sum = 0;
+
+	/**
+	 * Least and greatest recorded values
+	 */
+	private long min = Long.MAX_VALUE, max = 0;
+
+	/**
+	 * Return the bucket of the given value.
+	 * @param value non-negative value
+	 * @return the bucket of the value
+	 */
+	private static int bucket(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+		int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+	}
+
+	/**
+	 * Return the greatest value falling into the given bucket.
+	 * @param bucket bucket
+	 * @return the greatest value falling into the bucket
+	 */
+	private static long highestValue(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT)
+			return bucket;
+		int shift = bucket / HALF_SUB_BUCKET_COUNT - 1;
+		long subBucket = bucket - shift * HALF_SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Record a value.  Negative values are recorded as 0.
+	 * @param value value to record
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[bucket(value)]++;
+		totalCount++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Add the recorded values of another histogram to this one.
+	 * @param other other histogram
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			counts[i] += other.counts[i];
+		totalCount += other.totalCount;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Remove all recorded values.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0L);
+		totalCount = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/**
+	 * Return the number of recorded values.
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Return the sum of recorded values.
+	 * @return the sum of recorded values
+	 */
+	public long getSum() {
+		return sum;
+	}
+
+	/**
+	 * Return the mean of recorded values, or 0 if none.
+	 * @return the mean of recorded values
+	 */
+	public double getMean() {
+		return totalCount == 0 ? 0 : (double) sum / totalCount;
+	}
+
+	/**
+	 * Return the least recorded value, or 0 if none.
+	 * @return the least recorded value
+	 */
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	/**
+	 * Return the greatest recorded value, or 0 if none.
+	 * @return the greatest recorded value
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Return a value such that the given percentage of recorded values are at most that value (within the
+	 * precision of the histogram), or 0 if no values are recorded.
+	 * @param percentile percentage between 0 and 100
+	 * @return the value at the percentile
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * totalCount));
+		long count = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			count += counts[i];
+			if (count >= rank)
+				return Math.min(highestValue(i), max);
+		}
+		return max;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d", totalCount, getMean(), getValueAtPercentile(50), getValueAtPercentile(99), getMax());
+	}
+}
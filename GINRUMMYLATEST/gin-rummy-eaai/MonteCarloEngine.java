@@ -0,0 +1,427 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Monte Carlo evaluation of draw, discard and knock decisions by rollouts of the rest of the round.
+ *
+ * Each rollout samples the hidden cards consistently with what the deciding player knows: cards the opponent is
+ * known to hold stay in the opponent's hand, the rest of the opponent's hand and the draw pile are dealt from the
+ * cards never seen.  All actions of a decision are evaluated on the same sampled deals (common random numbers),
+ * and the round is then played out by both players with a fast greedy policy (GreedyPolicy): draw the face-up card if
+ * it forms a meld lowering deadwood, discard to minimize deadwood (highest card on ties), knock as soon as possible.  The value of a rollout
+ * is the round score of the deciding player minus that of the opponent, with layoffs ignored.
+ *
+ * Each decision has a default action, that of the rollout policy, and rollouts only overturn it in favor of an
+ * action whose mean value per deal is higher by a significant margin, so a small number of rollouts degrades to
+ * the greedy policy rather than to noise.  Rollouts run on parallel workers until a per-decision time budget is
+ * spent, so decision latency is bounded and strength grows with the budget and the number of processors.
+ */
+public class MonteCarloEngine {
+
+	/**
+	 * Default time budget per decision in nanoseconds
+	 */
+	public static final long DEFAULT_BUDGET_NS = 5000000L;
+
+	/**
+	 * Hand size (before and after turn)
+	 */
+	private static final int HAND_SIZE = 10;
+
+	/**
+	 * Bitstring of all cards
+	 */
+	private static final long ALL_CARDS = (1L << Card.NUM_CARDS) - 1;
+
+	/**
+	 * Decision kinds
+	 */
+	private static final int DRAW = 0, DISCARD = 1, KNOCK = 2;
+
+	/**
+	 * Draw choices of a rollout turn
+	 */
+	private static final int FACE_UP = 0, FACE_DOWN = 1, GREEDY = 2;
+
+	/**
+	 * Time budget per decision in nanoseconds
+	 */
+	private long budgetNs;
+
+	/**
+	 * Number of parallel rollout workers
+	 */
+	private int parallelism;
+
+	/**
+	 * Minimum number of sampled deals per decision, regardless of the time budget
+	 */
+	private int minRollouts = 16;
+
+	/**
+	 * Maximum number of discards evaluated by rollouts, taken in order of least deadwood left
+	 */
+	private int maxDiscardCandidates = 4;
+
+	/**
+	 * Number of standard errors by which an action must beat the default action to be chosen instead
+	 */
+	private double significance = 2;
+
+	/**
+	 * Executor of the rollout workers, or null for the common ForkJoinPool
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Random number generator from which workers split their own
+	 */
+	private SplittableRandom random = new SplittableRandom();
+
+	/**
+	 * Create an engine with the default time budget and one worker per available processor.
+	 */
+	public MonteCarloEngine() {
+		this(DEFAULT_BUDGET_NS, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create an engine with the given time budget and number of workers.
+	 * @param budgetNs time budget per decision in nanoseconds
+	 * @param parallelism number of parallel rollout workers (1 runs rollouts on the calling thread)
+	 */
+	public MonteCarloEngine(long budgetNs, int parallelism) {
+		setBudgetNs(budgetNs);
+		setParallelism(parallelism);
+	}
+
+	/**
+	 * Set the time budget per decision.
+	 * @param budgetNs time budget per decision in nanoseconds
+	 */
+	public void setBudgetNs(long budgetNs) {
+		this.budgetNs = budgetNs;
+	}
+
+	/**
+	 * Set the number of parallel rollout workers.
+	 * @param parallelism number of parallel rollout workers (1 runs rollouts on the calling thread)
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Set the minimum number of sampled deals per decision, on which each action is rolled out even if the time budget is exceeded.
+	 * @param minRollouts minimum number of sampled deals per decision
+	 */
+	public void setMinRollouts(int minRollouts) {
+		this.minRollouts = minRollouts;
+	}
+
+	/**
+	 * Set the maximum number of discards evaluated by rollouts, taken in order of least deadwood left.
+	 * @param maxDiscardCandidates maximum number of discards evaluated by rollouts
+	 */
+	public void setMaxDiscardCandidates(int maxDiscardCandidates) {
+		if (maxDiscardCandidates < 1)
+			throw new IllegalArgumentException("maxDiscardCandidates must be positive: " + maxDiscardCandidates);
+		this.maxDiscardCandidates = maxDiscardCandidates;
+	}
+
+	/**
+	 * Set the number of standard errors by which an action must beat the default action to be chosen instead.
+	 * @param significance number of standard errors
+	 */
+	public void setSignificance(double significance) {
+		this.significance = significance;
+	}
+
+	/**
+	 * Set the executor of the rollout workers, or null for the common ForkJoinPool.
+	 * @param executor executor of the rollout workers
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Seed the engine so that decisions on a single worker are reproducible.
+	 * @param seed random seed
+	 */
+	public void setSeed(long seed) {
+		random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Return whether to draw the face-up card.  The default is to draw it if it forms a meld and lowers deadwood,
+	 * and rollouts overturn the default if the other choice is significantly better.
+	 * @param hand bitstring of the 10-card hand
+	 * @param faceUpCard id number of the face-up card
+	 * @param seen bitstring of all cards seen so far outside of the hand (discards, face-up cards, opponent draws)
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @return whether or not to draw the face-up card
+	 */
+	public boolean willDrawFaceUpCard(long hand, int faceUpCard, long seen, long opponentCards) {
+		GreedyPolicy policy = new GreedyPolicy();
+		policy.set(hand);
+		int[] actions = policy.willDrawFaceUpCard(faceUpCard) ? new int[] {1, 0} : new int[] {0, 1};
+		return actions[choose(DRAW, hand, faceUpCard, seen, opponentCards, actions)] == 1;
+	}
+
+	/**
+	 * Return the discard to make.  The default is the discard leaving least deadwood (highest card on ties), and
+	 * rollouts overturn the default if one of the next discards in that order is significantly better.
+	 * @param hand bitstring of the 11-card hand
+	 * @param candidates bitstring of the cards of the hand that may be discarded
+	 * @param seen bitstring of all cards seen so far outside of the hand
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @return the id number of the card to discard
+	 */
+	public int getDiscard(long hand, long candidates, long seen, long opponentCards) {
+		// rank candidates greedily by the deadwood their discard leaves, then by decreasing card points
+		IncrementalHandEvaluator evaluator = new IncrementalHandEvaluator();
+		evaluator.set(hand);
+		long[] keys = new long[Long.bitCount(candidates)];
+		int numCandidates = 0;
+		for (long cards = candidates; cards != 0L; cards &= cards - 1) {
+			int id = Long.numberOfTrailingZeros(cards);
+			int deadwood = evaluator.getBestDeadwoodAfterDiscard(id);
+			keys[numCandidates++] = (long) deadwood << 16 | (Card.NUM_RANKS - GinRummyUtil.getDeadwoodPoints(1L << id)) << 8 | id;
+		}
+		Arrays.sort(keys);
+		int[] actions = new int[Math.min(numCandidates, maxDiscardCandidates)];
+		for (int i = 0; i < actions.length; i++)
+			actions[i] = (int) (keys[i] & 0xFF);
+		return actions[choose(DISCARD, hand, -1, seen, opponentCards, actions)];
+	}
+
+	/**
+	 * Return whether to knock.  The default is to knock, and rollouts overturn it if continuing play is significantly better.
+	 * @param hand bitstring of the 10-card hand after discarding
+	 * @param faceUpCard id number of the card just discarded
+	 * @param seen bitstring of all cards seen so far outside of the hand
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @return whether or not to knock
+	 */
+	public boolean willKnock(long hand, int faceUpCard, long seen, long opponentCards) {
+		return choose(KNOCK, hand, faceUpCard, seen, opponentCards, new int[] {1, 0}) == 0;
+	}
+
+	/**
+	 * Return the index of the action to take: the default action 0 unless another action has a mean rollout value
+	 * higher by more than the given number of standard errors, in which case the best such action.
+	 * Values are compared per sampled deal, since all actions are rolled out on the same deals.
+	 * @param decision decision kind
+	 * @param hand bitstring of the deciding player's hand
+	 * @param faceUpCard id number of the face-up card, or -1 if not applicable
+	 * @param seen bitstring of all cards seen so far outside of the hand
+	 * @param opponentCards bitstring of cards known to be in the opponent's hand
+	 * @param actions actions: 1 (draw face up / knock) or 0 (draw face down / continue), or card id numbers to discard
+	 * @return the index of the action to take
+	 */
+	private int choose(int decision, long hand, int faceUpCard, long seen, long opponentCards, int[] actions) {
+		if (actions.length == 1)
+			return 0;
+		long unknown = ALL_CARDS & ~hand & ~seen & ~opponentCards;
+		if (faceUpCard >= 0)
+			unknown &= ~(1L << faceUpCard);
+		long deadline = System.nanoTime() + budgetNs;
+		Worker[] workers = new Worker[parallelism];
+		for (int i = 0; i < parallelism; i++)
+			workers[i] = new Worker(random.split(), decision, hand, faceUpCard, unknown, opponentCards, actions, deadline);
+		if (parallelism == 1)
+			workers[0].run();
+		else {
+			ExecutorService service = executor != null ? executor : ForkJoinPool.commonPool();
+			ArrayList<Future<Worker>> futures = new ArrayList<Future<Worker>>();
+			for (Worker worker : workers)
+				futures.add(service.submit(worker::run));
+			try {
+				for (Future<Worker> future : futures)
+					future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("rollouts interrupted", e);
+			}
+			catch (ExecutionException e) {
+				throw new IllegalStateException("rollout failed", e.getCause());
+			}
+		}
+		long numDeals = 0;
+		double[] sums = new double[actions.length], squares = new double[actions.length];
+		for (Worker worker : workers) {
+			numDeals += worker.numDeals;
+			for (int a = 1; a < actions.length; a++) {
+				sums[a] += worker.sums[a];
+				squares[a] += worker.squares[a];
+			}
+		}
+		int best = 0;
+		double bestGain = 0;
+		for (int a = 1; a < actions.length; a++) {
+			double gain = sums[a] / numDeals;
+			double standardError = Math.sqrt(Math.max(0, squares[a] / numDeals - gain * gain) / numDeals);
+			if (gain > bestGain && gain > significance * standardError) {
+				best = a;
+				bestGain = gain;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * A rollout worker with its own random number generator, greedy policies and card arrays.
+	 * Player 0 is the deciding player and player 1 the opponent.
+	 */
+	private class Worker {
+		private final SplittableRandom random;
+		private final int decision;
+		private final long hand;
+		private final int faceUpCard;
+		private final long unknown;
+		private final long opponentCards;
+		private final int[] actions;
+		private final long deadline;
+
+		private final GreedyPolicy[] policies = {new GreedyPolicy(), new GreedyPolicy()};
+		private final byte[] unknownIds = new byte[Card.NUM_CARDS];
+		private final byte[] deck = new byte[Card.NUM_CARDS];
+		private int deckSize;
+		private int faceUp;
+		private long sampledOpponentHand;
+		// Number of sampled deals, and sums and sums of squares of the value of each action minus that of action 0
+		private long numDeals;
+		private final double[] sums, squares;
+
+		Worker(SplittableRandom random, int decision, long hand, int faceUpCard, long unknown, long opponentCards, int[] actions, long deadline) {
+			this.random = random;
+			this.decision = decision;
+			this.hand = hand;
+			this.faceUpCard = faceUpCard;
+			this.unknown = unknown;
+			this.opponentCards = opponentCards;
+			this.actions = actions;
+			this.deadline = deadline;
+			sums = new double[actions.length];
+			squares = new double[actions.length];
+		}
+
+		/**
+		 * Run rollouts of every action on common sampled deals until the deadline.
+		 * @return this worker
+		 */
+		Worker run() {
+			int numUnknown = 0;
+			for (long cards = unknown; cards != 0L; cards &= cards - 1)
+				unknownIds[numUnknown++] = (byte) Long.numberOfTrailingZeros(cards);
+			int numHidden = Math.max(0, HAND_SIZE - Long.bitCount(opponentCards));
+			for (numDeals = 0; numDeals < minRollouts || System.nanoTime() < deadline; numDeals++) {
+				// sample a deal: a random permutation of unknown cards gives the opponent's hidden cards, then the draw pile
+				for (int i = numUnknown - 1; i > 0; i--) {
+					int j = random.nextInt(i + 1);
+					byte id = unknownIds[i];
+					unknownIds[i] = unknownIds[j];
+					unknownIds[j] = id;
+				}
+				sampledOpponentHand = opponentCards;
+				for (int i = 0; i < numHidden && i < numUnknown; i++)
+					sampledOpponentHand |= 1L << unknownIds[i];
+				double defaultValue = 0;
+				for (int a = 0; a < actions.length; a++) {
+					deckSize = 0;
+					for (int i = numHidden; i < numUnknown; i++)
+						deck[deckSize++] = unknownIds[i];
+					double value = rollout(actions[a]);
+					if (a == 0)
+						defaultValue = value;
+					else {
+						sums[a] += value - defaultValue;
+						squares[a] += (value - defaultValue) * (value - defaultValue);
+					}
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Play out the round from the sampled deal after taking the given action.
+		 * @param action action of the decision
+		 * @return the round value for player 0
+		 */
+		private double rollout(int action) {
+			policies[0].set(hand);
+			policies[1].set(sampledOpponentHand);
+			faceUp = faceUpCard;
+			switch (decision) {
+			case DRAW:
+				if (deckSize <= 2)
+					return 0;
+				return turn(0, action == 1 ? FACE_UP : FACE_DOWN) ? score(0) : playOut(1);
+			case DISCARD:
+				return endTurn(0, action) ? score(0) : playOut(1);
+			default: // KNOCK
+				return action == 1 ? score(0) : playOut(1);
+			}
+		}
+
+		/**
+		 * Alternate greedy turns starting with the given player until a knock or until the draw pile is down to two cards.
+		 * @param player player to move
+		 * @return the round value for player 0
+		 */
+		private double playOut(int player) {
+			while (deckSize > 2) {
+				if (turn(player, GREEDY))
+					return score(player);
+				player = 1 - player;
+			}
+			return 0;
+		}
+
+		/**
+		 * Draw for the given player, discard greedily and return whether the player then knocks.
+		 * @param player player to move
+		 * @param draw FACE_UP, FACE_DOWN or GREEDY
+		 * @return whether or not the player knocks
+		 */
+		private boolean turn(int player, int draw) {
+			GreedyPolicy policy = policies[player];
+			if (draw == FACE_UP || draw == GREEDY && policy.willDrawFaceUpCard(faceUp))
+				policy.draw(faceUp, true);
+			else
+				policy.draw(deck[--deckSize], false);
+			return endTurn(player, policy.getDiscard());
+		}
+
+		/**
+		 * Discard the given card and return whether the player then knocks.
+		 * @param player player to move
+		 * @param discard id number of the card to discard
+		 * @return whether or not the player knocks
+		 */
+		private boolean endTurn(int player, int discard) {
+			policies[player].discard(discard);
+			faceUp = discard;
+			return policies[player].willKnock();
+		}
+
+		/**
+		 * Score a knock by the given player from the point of view of player 0, ignoring layoffs.
+		 * @param knocker knocking player
+		 * @return the round value for player 0
+		 */
+		private double score(int knocker) {
+			int knockerValue = GinRummyUtil.getKnockPoints(policies[knocker].getDeadwood(), policies[1 - knocker].getDeadwood());
+			return knocker == 0 ? knockerValue : -knockerValue;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+
+/**
+ * Gin Rummy player that makes its draw, discard and knock decisions with a MonteCarloEngine, sampling the
+ * opponent's hand consistently with what Aja6082GinRummyPlayer tracks about the round (seen cards and
+ * cards known to be in the opponent's hand) and playing out rollouts within a per-decision time budget.
+ * Melding and play after an opponent's knock are those of Aja6082GinRummyPlayer.
+ */
+public class MonteCarloGinRummyPlayer extends Aja6082GinRummyPlayer {
+
+	//Engine evaluating decisions by rollouts
+	protected final MonteCarloEngine engine;
+
+	public MonteCarloGinRummyPlayer() {
+		this(new MonteCarloEngine());
+	}
+
+	public MonteCarloGinRummyPlayer(MonteCarloEngine engine) {
+		this.engine = engine;
+	}
+
+	@Override
+	public boolean willDrawFaceUpCard(Card card) {
+		observeFaceUpCard(card);
+		return engine.willDrawFaceUpCard(evaluator.getHandBitstring(), card.getId(), knowledge.getSeenBitstring(), knowledge.getOpponentCardsBitstring());
+	}
+
+	@Override
+	public Card getDiscard() {
+		long candidates = 0L;
+		for (Card card : cards)
+			if (isLegalDiscard(card))
+				candidates |= 1L << card.getId();
+		Card discard = Card.getCard(engine.getDiscard(evaluator.getHandBitstring(), candidates, knowledge.getSeenBitstring(), knowledge.getOpponentCardsBitstring()));
+		recordDrawDiscard(discard);
+		return discard;
+	}
+
+	@Override
+	public ArrayList<ArrayList<Card>> getFinalMelds() {
+		// Always meld after an opponent's knock and knock on gin; otherwise knock only if rollouts favor it.
+		if (!opponentKnocked) {
+			int deadwood = evaluator.getBestDeadwood();
+			if (deadwood > GinRummyUtil.MAX_DEADWOOD)
+				return null;
+			Card faceUp = knowledge.getFaceUp();
+			if (deadwood > 0 && !engine.willKnock(evaluator.getHandBitstring(), faceUp == null ? -1 : faceUp.getId(), knowledge.getSeenBitstring(), knowledge.getOpponentCardsBitstring()))
+				return null;
+		}
+		return super.getFinalMelds();
+	}
+
+}
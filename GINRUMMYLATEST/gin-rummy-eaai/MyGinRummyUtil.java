@@ -3,29 +3,24 @@ import java.util.ArrayList;
 public class MyGinRummyUtil {
 
     //Given a hand determines the amount of deadwood points it contains
+    //Hands are solved as bitstrings through the deadwood cache of GinRummyUtil, so repeated hands are looked up
     public static int getBestDeadwoodPoints(ArrayList<Card> myCards){
         if(myCards.size() != 10)
             throw new IllegalArgumentException();
-        ArrayList<ArrayList<ArrayList<Card>>> bestMeldConfigs = GinRummyUtil.cardsToBestMeldSets(myCards);
-        return bestMeldConfigs.isEmpty() ? GinRummyUtil.getDeadwoodPoints(myCards) : GinRummyUtil.getDeadwoodPoints(bestMeldConfigs.get(0), myCards);
+        return GinRummyUtil.getBestDeadwood(GinRummyUtil.cardsToBitstring(myCards));
     }
 
     //Best deadwood points possible after a discard
     public static int getBestDeadwoodPointsAfterDiscard(ArrayList<Card> myCards){
         if(myCards.size() < 11)
             throw new IllegalArgumentException();
-        int minDeadwood = Integer.MAX_VALUE;
-        for(Card card: myCards){
-            //Clone the hand and remove the current card
-            ArrayList<Card> remainingCards = (ArrayList<Card>) myCards.clone();
-            remainingCards.remove(card);
-            ArrayList<ArrayList<ArrayList<Card>>> bestMeldSets = GinRummyUtil.cardsToBestMeldSets(remainingCards);
-            int deadwoodPoints = bestMeldSets.isEmpty() ? GinRummyUtil.getDeadwoodPoints(remainingCards) : GinRummyUtil.getDeadwoodPoints(bestMeldSets.get(0), remainingCards);
-            if(deadwoodPoints < minDeadwood)
-                minDeadwood = deadwoodPoints;
-        }
+        return getBestDeadwoodPointsAfterDiscard(GinRummyUtil.cardsToBitstring(myCards));
+    }
 
-        return minDeadwood;
+    //Best deadwood points possible after discarding any one card of a hand bitstring
+    //All discards are evaluated in one enumeration of the hand's melds by GinRummyUtil.getBestDeadwoodAfterDiscards
+    public static int getBestDeadwoodPointsAfterDiscard(long hand){
+        return GinRummyUtil.getBestDeadwoodAfterDiscards(hand, new int[Long.bitCount(hand)]);
     }
 
     //How many cards would make gin given a current hand
@@ -70,84 +65,37 @@ public class MyGinRummyUtil {
 
     //Methods from assignment
     //Determine whether opponent can make meld with a particular card
-    //Strategy adopted: Check if the number of times a given card that can help the opponent make a meld or run with
-    //the card object passed to the function appears in seen, and then do the same for the opponent's hand.
-    //Simple comparison yields who holds the cards likely to result in the opponent's hand
-    //This method doesn't work the way it should. Come back to it in a short bit
+    //The opponent cannot make a meld with the card if every meld containing it has another card that was seen
+    //and is not in the opponent's hand (i.e. is in our hand or the discard pile). Each card has its meld list in
+    //GinRummyUtil, so this is a few bitwise operations per meld. For the probability that the opponent can make
+    //a meld with the card, see OpponentModel.getMeldProbability
     public static boolean opponentCannotMakeMeld(ArrayList<Card> seen, ArrayList<Card> opponentCards, Card card){
-        int seenMeldCount = 0;
-        int seenRunCount = 0;
-        int opponentMeldCount = 0;
-        int opponentRunCount = 0;
-        boolean canMakeMeld = false;
-
-        for(Card seenCard: seen){
-            //Seen meld check
-            if(seenCard.getRank() == card.getRank())
-                seenMeldCount++;
-
-            //Seen run check
-            if(seenCard.getSuit() == card.getSuit()){
-                if(Math.abs(seenCard.getRank() - card.getRank()) <= 2)
-                    seenRunCount++;
-            }
-        }
-
-        for(Card opponentCard: opponentCards){
-            //Opponent meld check
-            if(opponentCard.getRank() == card.getRank())
-                opponentMeldCount++;
-
-            //Opponent run check
-            if(opponentCard.getSuit() == card.getSuit()){
-                if(Math.abs(opponentCard.getRank() - card.getRank()) == 1)
-                    opponentRunCount++;
-            }
-        }
+        return opponentCannotMakeMeld(GinRummyUtil.cardsToBitstring(seen), GinRummyUtil.cardsToBitstring(opponentCards), card.getId());
+    }
 
-        if(seenMeldCount > opponentMeldCount || seenRunCount > opponentRunCount) {
-            canMakeMeld = false;
+    //Bitstring version of opponentCannotMakeMeld
+    public static boolean opponentCannotMakeMeld(long seen, long opponentCards, int cardId){
+        long unavailable = seen & ~opponentCards & ~(1L << cardId);
+        for(int i = 0; i < GinRummyUtil.getNumCardMelds(cardId); i++){
+            if((GinRummyUtil.getCardMeldBitstring(cardId, i) & unavailable) == 0L)
+                return false;
         }
-
-        return canMakeMeld;
+        return true;
     }
 
     //Determine whether a given card would form a new meld in the hand.
     //If so, find the drop in deadwood
+    //The best deadwood after drawing each card is looked up in the draw value table of the hand, which is computed
+    //once per hand (see GinRummyUtil.getDrawValueTable)
     public static int checkMeldAndDeadwoodDrop(ArrayList<Card> myCards, Card card){
-        int originalMinDeadwood = Integer.MAX_VALUE;
-        int newMinDeadwood = Integer.MAX_VALUE;
-
-
-        //newCards is the hand that contains the new card
-        ArrayList<Card> newCards = (ArrayList<Card>) myCards.clone();
-        newCards.add(card);
+        DrawValueTable table = GinRummyUtil.getDrawValueTable(GinRummyUtil.cardsToBitstring(myCards));
 
         //If no melds are formed after the card is added, don't go any further
-        ArrayList<ArrayList<ArrayList<Card>>> bestMeldConfigs = GinRummyUtil.cardsToBestMeldSets(newCards);
-        if(bestMeldConfigs.isEmpty())
+        if(!table.hasMeld() && (table.getMeldingCards() & 1L << card.getId()) == 0L)
             return 0;
 
-        //Find the minimum deadwood for the original card configuration
-        for(Card originalCard: myCards){
-            ArrayList<Card> placeholder = (ArrayList<Card>) myCards.clone();
-            placeholder.remove(originalCard);
-            ArrayList<ArrayList<ArrayList<Card>>> bestMelds = GinRummyUtil.cardsToBestMeldSets(placeholder);
-            int originalDeadwood = bestMelds.isEmpty() ? GinRummyUtil.getDeadwoodPoints(placeholder) : GinRummyUtil.getDeadwoodPoints(bestMelds.get(0), placeholder);
-            if(originalDeadwood < originalMinDeadwood)
-                originalMinDeadwood = originalDeadwood;
-        }
-
-        //Find the minimum deadwood for new card configuration
-        for(Card iterCard: newCards){
-            ArrayList<Card> remainingCards = (ArrayList<Card>) newCards.clone();
-            remainingCards.remove(iterCard);
-            int newDeadwood = GinRummyUtil.getDeadwoodPoints(bestMeldConfigs.get(0), remainingCards);
-            if(newDeadwood < newMinDeadwood)
-                newMinDeadwood = newDeadwood;
-        }
-
-        return (originalMinDeadwood - newMinDeadwood);
+        //Minimum deadwood for the original card configuration minus minimum deadwood for the new card configuration
+        return table.getBestDeadwoodAfterDiscard() - table.getBestDeadwoodAfterDraw(card.getId());
     }
 
     //Based on the cards that you have seen, determine which cards in your hand cannot be made into any melds
@@ -248,40 +196,22 @@ public class MyGinRummyUtil {
         //A card in the opponent's hand that you're sure about, would be a card that you've already seen
         //I can draw any of the unseen cards
         // I can draw any of the cards that I know that the opponent has
-        ArrayList<Card> allCards = new ArrayList<>();
-        for(int i = 0; i < 52; i++){
-            //To initialize allCards with all cards in a standard French deck of cards
-            allCards.add(Card.getCard(i));
-        }
+        long hand = GinRummyUtil.cardsToBitstring(myCards);
 
-        //Remove cards that are in my hand
-        //Remove cards that were discarded by the opponent
+        //Remove cards that are in my hand and cards that were discarded by the opponent
         //The remaining cards would be either the unseen cards or cards in the opponent's hand that we don't know about
-        for(Card card: myCards){
-            //This removed cards in my hand from allCards
-            allCards.remove(card);
-        }
-
-        for(Card card: opponentDiscards){
-            allCards.remove(card);
-        }
-
         //Just for safe code execution, we should also add the cards that we know for sure that the opponent has
-        for(Card card: opponentCards){
-            allCards.add(card);
-        }
+        long drawable = (~GinRummyUtil.cardsToBitstring(opponentDiscards) | GinRummyUtil.cardsToBitstring(opponentCards))
+                & ~hand & ((1L << Card.NUM_CARDS) - 1);
 
-        //Now allCards contains (1) all unseen cards, (2) all the cards that the opponent might have
-        //We can run a for loop, find the best deadwood points for drawing each of the cards from the allCards list
-        //Then divide it by the size of the allCards list, finally return this number
+        //Sum the best deadwood points after drawing each drawable card from the draw value table of the hand,
+        //then divide it by the number of drawable cards
+        DrawValueTable table = GinRummyUtil.getDrawValueTable(hand);
         int deadwoodCount = 0;
-        for(Card card: allCards){
-            ArrayList<Card> remainingCards = (ArrayList<Card>) myCards.clone();
-            remainingCards.add(card);
-            deadwoodCount += getBestDeadwoodPoints(remainingCards);
-        }
+        for(long cards = drawable; cards != 0L; cards &= cards - 1)
+            deadwoodCount += table.getBestDeadwoodAfterDraw(Long.numberOfTrailingZeros(cards));
 
-        return (deadwoodCount)/allCards.size();
+        return (deadwoodCount)/Long.bitCount(drawable);
     }
 
 }
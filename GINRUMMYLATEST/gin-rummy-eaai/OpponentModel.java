@@ -0,0 +1,238 @@
+import java.util.Arrays;
+
+/**
+ * Model of the opponent's hand: the probability that each card is in the opponent's hand, kept up to date from
+ * the draws and discards a player observes.
+ *
+ * Cards the opponent picked up face up and has not discarded are in its hand (probability 1); cards in this player's
+ * hand and discarded cards are not (probability 0).  The opponent's other cards are among the unknown cards, which
+ * each have a weight: the opponent holds each unknown card with probability proportional to its weight, scaled so
+ * that the probabilities add up to the number of the opponent's cards not known.  Weights start equal and follow
+ * the opponent's choices as likelihood factors: a card the opponent picks up face up makes the cards melding with it
+ * more likely, and a card it discards or declines face up makes them less likely.  Each observation changes at most
+ * the weights of the seven cards melding with one card (three of its rank and two on each side in its suit), and
+ * probabilities are scaled on demand, so updates and queries take constant time without allocation.
+ *
+ * getMeldProbability(cardId) estimates the probability that the opponent holds two cards making a meld with a card,
+ * e.g. a discard candidate, treating the cards of each pair as independent.
+ */
+public class OpponentModel {
+
+	/**
+	 * Number of cards of the opponent's hand between turns
+	 */
+	private static final int HAND_SIZE = 10;
+
+	/**
+	 * Weight factors of the cards melding with a card the opponent picks up face up, and with a card it discards or declines
+	 */
+	public static final float PICKUP_FACTOR = 2.0f, DISCARD_FACTOR = 0.5f;
+
+	/**
+	 * This player's number
+	 */
+	private int playerNum;
+
+	/**
+	 * Bitstring of the cards known to be in the opponent's hand
+	 */
+	private long known = 0L;
+
+	/**
+	 * Bitstring of the cards known not to be in the opponent's hand
+	 */
+	private long excluded = 0L;
+
+	/**
+	 * Weight of each card, indexed by card id number; only the weights of unknown cards are used
+	 */
+	private final float[] weights = new float[Card.NUM_CARDS];
+
+	/**
+	 * Sum of the weights of the unknown cards
+	 */
+	private float unknownWeight;
+
+	/**
+	 * Card id numbers of the discard pile, bottom first, in the first numDiscards entries
+	 */
+	private final int[] discards = new int[Card.NUM_CARDS];
+	private int numDiscards = 0;
+
+	/**
+	 * Whether or not a card has been drawn in the round
+	 */
+	private boolean drawn = false;
+
+	/**
+	 * Start modeling a round.
+	 * @param playerNum this player's number
+	 * @param hand bitstring of this player's dealt cards
+	 */
+	public void startRound(int playerNum, long hand) {
+		this.playerNum = playerNum;
+		known = 0L;
+		excluded = 0L;
+		Arrays.fill(weights, 1f);
+		unknownWeight = Card.NUM_CARDS;
+		numDiscards = 0;
+		drawn = false;
+		exclude(hand);
+	}
+
+	/**
+	 * Observe the initial face-up card.  Has no effect after the first call of a round.
+	 * @param cardId id number of the initial face-up card
+	 */
+	public void setInitialFaceUpCard(int cardId) {
+		if (numDiscards > 0)
+			return;
+		discards[numDiscards++] = cardId;
+		exclude(1L << cardId);
+	}
+
+	/**
+	 * Observe the opponent declining the face-up card without drawing, as with the initial face-up card.
+	 * @param cardId id number of the declined card
+	 */
+	public void opponentDeclined(int cardId) {
+		scaleMeldingCards(cardId, DISCARD_FACTOR);
+	}
+
+	/**
+	 * Observe a draw, as reported to players.  The opponent's first draw of a round, if face down, is the starter's
+	 * forced draw after both players declined the initial face-up card, which opponentDeclined already observed.
+	 * @param playerNum number of the player drawing
+	 * @param cardId id number of the card drawn, or -1 for a face-down card drawn by the opponent
+	 */
+	public void reportDraw(int playerNum, int cardId) {
+		boolean firstDraw = !drawn;
+		drawn = true;
+		boolean faceUp = numDiscards > 0 && cardId == discards[numDiscards - 1];
+		if (faceUp)
+			numDiscards--;
+		if (playerNum == this.playerNum) {
+			if (!faceUp)
+				exclude(1L << cardId);
+		}
+		else if (cardId >= 0) { // the opponent's draws are only reported face up
+			known |= 1L << cardId;
+			excluded &= ~(1L << cardId);
+			scaleMeldingCards(cardId, PICKUP_FACTOR);
+		}
+		else if (numDiscards > 0 && !firstDraw) // drawing face down declines the face-up card
+			scaleMeldingCards(discards[numDiscards - 1], DISCARD_FACTOR);
+	}
+
+	/**
+	 * Observe a discard, as reported to players.
+	 * @param playerNum number of the player discarding
+	 * @param cardId id number of the card discarded
+	 */
+	public void reportDiscard(int playerNum, int cardId) {
+		discards[numDiscards++] = cardId;
+		if (playerNum != this.playerNum)
+			scaleMeldingCards(cardId, DISCARD_FACTOR);
+		exclude(1L << cardId);
+	}
+
+	/**
+	 * Return the bitstring of the cards known to be in the opponent's hand.
+	 * @return the bitstring of the cards known to be in the opponent's hand
+	 */
+	public long getKnownBitstring() {
+		return known;
+	}
+
+	/**
+	 * Return the probability that a card is in the opponent's hand.
+	 * @param cardId card id number
+	 * @return the probability that the card is in the opponent's hand
+	 */
+	public float getProbability(int cardId) {
+		long card = 1L << cardId;
+		if ((known & card) != 0L)
+			return 1f;
+		if ((excluded & card) != 0L || unknownWeight <= 0f)
+			return 0f;
+		return Math.min(1f, weights[cardId] * (HAND_SIZE - Long.bitCount(known)) / unknownWeight);
+	}
+
+	/**
+	 * Store the probability that each card is in the opponent's hand.
+	 * @param probabilities array receiving the probabilities, indexed by card id number
+	 */
+	public void getProbabilities(float[] probabilities) {
+		for (int id = 0; id < Card.NUM_CARDS; id++)
+			probabilities[id] = getProbability(id);
+	}
+
+	/**
+	 * Return the probability that the opponent holds two cards making a meld with a card: two other cards of its rank,
+	 * or two cards of its suit making a run of three with it.
+	 * @param cardId card id number
+	 * @return the probability that the opponent can meld the card
+	 */
+	public float getMeldProbability(int cardId) {
+		int rank = cardId % Card.NUM_RANKS, suitBase = cardId - rank;
+		float none = 1f; // probability that no pair makes a meld
+		// sets: pairs of the other three cards of the rank
+		int a = -1, b = -1, c = -1;
+		for (int suit = 0; suit < Card.NUM_SUITS; suit++) {
+			int id = suit * Card.NUM_RANKS + rank;
+			if (id != cardId) {
+				if (a < 0)
+					a = id;
+				else if (b < 0)
+					b = id;
+				else
+					c = id;
+			}
+		}
+		float pa = getProbability(a), pb = getProbability(b), pc = getProbability(c);
+		none *= (1f - pa * pb) * (1f - pa * pc) * (1f - pb * pc);
+		// runs: the two cards below, one on each side, and the two cards above
+		float below2 = rank >= 2 ? getProbability(suitBase + rank - 2) : 0f, below1 = rank >= 1 ? getProbability(suitBase + rank - 1) : 0f;
+		float above1 = rank + 1 < Card.NUM_RANKS ? getProbability(suitBase + rank + 1) : 0f;
+		float above2 = rank + 2 < Card.NUM_RANKS ? getProbability(suitBase + rank + 2) : 0f;
+		none *= (1f - below2 * below1) * (1f - below1 * above1) * (1f - above1 * above2);
+		return 1f - none;
+	}
+
+	/**
+	 * Make cards known not to be in the opponent's hand.
+	 * @param cards bitstring of the cards
+	 */
+	private void exclude(long cards) {
+		for (long unknown = cards & ~known & ~excluded; unknown != 0L; unknown &= unknown - 1)
+			unknownWeight -= weights[Long.numberOfTrailingZeros(unknown)];
+		excluded |= cards;
+		known &= ~cards;
+	}
+
+	/**
+	 * Multiply the weights of the unknown cards making a meld with a card by a factor.
+	 * @param cardId card id number
+	 * @param factor weight factor
+	 */
+	private void scaleMeldingCards(int cardId, float factor) {
+		int rank = cardId % Card.NUM_RANKS, suitBase = cardId - rank;
+		for (int suit = 0; suit < Card.NUM_SUITS; suit++)
+			scale(suit * Card.NUM_RANKS + rank, cardId, factor);
+		for (int r = Math.max(0, rank - 2); r <= Math.min(Card.NUM_RANKS - 1, rank + 2); r++)
+			scale(suitBase + r, cardId, factor);
+	}
+
+	/**
+	 * Multiply the weight of a card other than the given card by a factor if the card is unknown.
+	 * @param id id number of the card
+	 * @param cardId id number of the card observed
+	 * @param factor weight factor
+	 */
+	private void scale(int id, int cardId, float factor) {
+		if (id == cardId || ((known | excluded) & 1L << id) != 0L)
+			return;
+		unknownWeight += weights[id] * (factor - 1f);
+		weights[id] *= factor;
+	}
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+
+/**
+ * What a player has learned about the current round: turn count, remaining face-down deck size, the face-up card,
+ * and sets of seen cards, cards known to be in the opponent's hand and cards the opponent discarded.
+ *
+ * Card sets are kept as bitstrings (see GinRummyUtil), so adding, removing and membership tests are single
+ * bitwise operations.  Each player owns its own instance, so any number of players may play concurrently.
+ */
+public class PlayerKnowledge {
+	//The current turn:
+	private int turn;
+	//No. of cards remaining in face-down deck:
+	private int remainingDeck;
+	//The top card of the discard pile:
+	private Card faceUp;
+	//Bitstring of seen cards:
+	private long seen;
+	//Bitstring of cards that were seen and the opponent drew:
+	private long opponentCards;
+	//Bitstring of cards that the opponent discarded:
+	private long opponentDiscards;
+
+	//Setters
+	public void increaseTurn(){
+		turn++;
+	}
+
+	public void setTurn(int val){
+		turn = val;
+	}
+
+	public void setRemainingDeck(int val){
+		remainingDeck = val;
+	}
+
+	public void decreaseRemainingDeck(){
+		remainingDeck--;
+	}
+
+	public void increaseRemainingDeck(){
+		remainingDeck++;
+	}
+
+	public void setFaceUp(Card card){
+		faceUp = card;
+	}
+
+	public void addSeen(Card seenCard){
+		seen |= 1L << seenCard.getId();
+	}
+
+	public void addOpponentCard(Card opponentCard){
+		opponentCards |= 1L << opponentCard.getId();
+	}
+
+	public void removeOpponentCard(Card opponentCard){
+		opponentCards &= ~(1L << opponentCard.getId());
+	}
+
+	public void addOpponentDiscard(Card opponentCard){
+		opponentDiscards |= 1L << opponentCard.getId();
+	}
+
+	//Method to reset all values at the end of a round
+	public void reset(){
+		setTurn(0);
+		setRemainingDeck(52);
+		seen = 0L;
+		opponentCards = 0L;
+		opponentDiscards = 0L;
+	}
+
+	//Getters
+	public int getTurn(){
+		return turn;
+	}
+
+	public int getRemainingDeck(){
+		return remainingDeck;
+	}
+
+	public Card getFaceUp(){
+		return faceUp;
+	}
+
+	public boolean isSeen(Card card){
+		return (seen & 1L << card.getId()) != 0L;
+	}
+
+	public boolean isOpponentCard(Card card){
+		return (opponentCards & 1L << card.getId()) != 0L;
+	}
+
+	public boolean isOpponentDiscard(Card card){
+		return (opponentDiscards & 1L << card.getId()) != 0L;
+	}
+
+	public long getSeenBitstring(){
+		return seen;
+	}
+
+	public long getOpponentCardsBitstring(){
+		return opponentCards;
+	}
+
+	public long getOpponentDiscardsBitstring(){
+		return opponentDiscards;
+	}
+
+	//List getters for the ArrayList-based methods of MyGinRummyUtil
+	public ArrayList<Card> getSeen(){
+		return GinRummyUtil.bitstringToCards(seen);
+	}
+
+	public ArrayList<Card> getOpponentCards(){
+		return GinRummyUtil.bitstringToCards(opponentCards);
+	}
+
+	public ArrayList<Card> getOpponentDiscards(){
+		return GinRummyUtil.bitstringToCards(opponentDiscards);
+	}
+}
@@ -0,0 +1,509 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Regression harness replaying recorded games (see GameLogWriter) to a player and comparing its decisions with
+ * the recorded ones, without playing games.
+ *
+ * The events of each game are turned into the player callbacks GinRummyGame would make, in the same order, so the
+ * player sees exactly the recorded history.  At each decision point of a replayed seat (drawing face up, discarding,
+ * knocking, and the melds of a knock or of the opponent of the knocking player) the player is asked for its
+ * decision, which is compared with the recorded one; the recorded action is then applied whatever the player
+ * chose, so that later decisions are asked in their recorded positions.  Decisions of players that break ties
+ * randomly (e.g. between equally good discards) can differ between replays.
+ *
+ * Each log file is replayed by one task with its own players, and tasks run on a ForkJoinPool with one thread
+ * per available processor unless another ExecutorService is given.
+ */
+public class ReplayHarness {
+
+	/**
+	 * Decision types: whether to draw face up, which card to discard, whether to knock, and which melds to make
+	 */
+	public static final int DRAW = 0, DISCARD = 1, KNOCK = 2, MELDS = 3, NUM_DECISION_TYPES = 4;
+
+	/**
+	 * Names of the decision types
+	 */
+	public static final String[] DECISION_NAMES = {"draw", "discard", "knock", "melds"};
+
+	/**
+	 * Factory creating the replayed player of each seat for each log file
+	 */
+	private final Supplier<GinRummyPlayer> playerFactory;
+
+	/**
+	 * Number of the replayed seat, or -1 for both seats
+	 */
+	private int seat = -1;
+
+	/**
+	 * Number of threads of the default ForkJoinPool
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Executor replaying log files, or null to use a ForkJoinPool for each run
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Maximum number of decision differences kept per log file
+	 */
+	private int maxDiffs = 100;
+
+	/**
+	 * Create a harness replaying games to players created by the given factory.
+	 * @param playerFactory factory creating the replayed player of each seat for each log file
+	 */
+	public ReplayHarness(Supplier<GinRummyPlayer> playerFactory) {
+		this.playerFactory = playerFactory;
+	}
+
+	/**
+	 * Set the replayed seat.  Decisions of the other seat are neither asked nor compared.
+	 * @param seat player number of the replayed seat, or -1 for both seats
+	 */
+	public void setSeat(int seat) {
+		if (seat < -1 || seat > 1)
+			throw new IllegalArgumentException("seat must be 0, 1 or -1: " + seat);
+		this.seat = seat;
+	}
+
+	/**
+	 * Set the number of threads used when no executor is given.
+	 * @param parallelism number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Set the executor replaying log files, or null to use a ForkJoinPool for each run.
+	 * The executor is not shut down by the harness.
+	 * @param executor executor replaying log files
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the maximum number of decision differences kept per log file.  All differences are counted.
+	 * @param maxDiffs maximum number of decision differences kept per log file
+	 */
+	public void setMaxDiffs(int maxDiffs) {
+		this.maxDiffs = maxDiffs;
+	}
+
+	/**
+	 * Replay all games of the given log files and return the aggregated results.
+	 * @param files log files
+	 * @return the aggregated results, with differences in file order
+	 */
+	public Result run(List<Path> files) {
+		ExecutorService service = executor != null ? executor : new ForkJoinPool(parallelism);
+		long startNs = System.nanoTime();
+		try {
+			ArrayList<Future<Result>> tasks = new ArrayList<Future<Result>>();
+			for (Path file : files)
+				tasks.add(service.submit(() -> replayFile(file)));
+			Result result = new Result();
+			for (Future<Result> task : tasks)
+				result.add(task.get());
+			result.elapsedNs = System.nanoTime() - startNs;
+			return result;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("replay interrupted", e);
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("replay failed", e.getCause());
+		}
+		finally {
+			if (service != executor)
+				service.shutdown();
+		}
+	}
+
+	/**
+	 * Replay all games of a log file with newly created players.
+	 * @param file log file
+	 * @return the results of the file
+	 * @throws IOException if the log cannot be read
+	 */
+	private Result replayFile(Path file) throws IOException {
+		Result result = new Result();
+		result.numFiles = 1;
+		Replayer replayer = new Replayer(file.toString(), result);
+		long startNs = System.nanoTime();
+		try (GameLogReader reader = new GameLogReader(file)) {
+			while (reader.next(replayer))
+				result.numGames++;
+		}
+		result.replayNs = System.nanoTime() - startNs;
+		return result;
+	}
+
+	/**
+	 * Difference between a recorded decision and the decision of the replayed player
+	 */
+	public static class Diff {
+		/**
+		 * Log file name
+		 */
+		public final String file;
+		/**
+		 * Number of the game in the log file (starting at 0), of the round in the game (starting at 0), and of the
+		 * turn in the round (starting at 0, counting declines)
+		 */
+		public final int game, round, turn;
+		/**
+		 * Player number deciding
+		 */
+		public final int player;
+		/**
+		 * Decision type (DRAW, DISCARD, KNOCK or MELDS)
+		 */
+		public final int type;
+		/**
+		 * Recorded and replayed decisions as text
+		 */
+		public final String recorded, replayed;
+
+		Diff(String file, int game, int round, int turn, int player, int type, String recorded, String replayed) {
+			this.file = file;
+			this.game = game;
+			this.round = round;
+			this.turn = turn;
+			this.player = player;
+			this.type = type;
+			this.recorded = recorded;
+			this.replayed = replayed;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return String.format("%s game %d round %d turn %d: player %d %s %s, replayed %s", file, game, round, turn, player,
+					DECISION_NAMES[type], recorded, replayed);
+		}
+	}
+
+	/**
+	 * Aggregated results of a replay
+	 */
+	public static class Result {
+		/**
+		 * Number of log files and games replayed
+		 */
+		public int numFiles, numGames;
+		/**
+		 * Number of decisions compared and of differences, indexed by decision type
+		 */
+		public final long[] decisions = new long[NUM_DECISION_TYPES], numDiffs = new long[NUM_DECISION_TYPES];
+		/**
+		 * Kept decision differences
+		 */
+		public final ArrayList<Diff> diffs = new ArrayList<Diff>();
+		/**
+		 * Total time spent replaying files over all threads in nanoseconds
+		 */
+		public long replayNs;
+		/**
+		 * Wall-clock time of the replay in nanoseconds
+		 */
+		public long elapsedNs;
+
+		/**
+		 * Add the counts, differences and replay time of other results to these.
+		 * @param other other results
+		 */
+		void add(Result other) {
+			numFiles += other.numFiles;
+			numGames += other.numGames;
+			for (int i = 0; i < NUM_DECISION_TYPES; i++) {
+				decisions[i] += other.decisions[i];
+				numDiffs[i] += other.numDiffs[i];
+			}
+			diffs.addAll(other.diffs);
+			replayNs += other.replayNs;
+		}
+
+		/**
+		 * Return the total number of decisions compared.
+		 * @return the total number of decisions compared
+		 */
+		public long getNumDecisions() {
+			long n = 0;
+			for (long d : decisions)
+				n += d;
+			return n;
+		}
+
+		/**
+		 * Return the total number of decision differences.
+		 * @return the total number of decision differences
+		 */
+		public long getNumDiffs() {
+			long n = 0;
+			for (long d : numDiffs)
+				n += d;
+			return n;
+		}
+
+		/**
+		 * Return the number of decisions compared per second of wall-clock time.
+		 * @return the number of decisions compared per second of wall-clock time
+		 */
+		public double getDecisionsPerSecond() {
+			return elapsedNs == 0 ? 0 : getNumDecisions() * 1e9 / elapsedNs;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			StringBuilder sb = new StringBuilder(String.format("%d games of %d files replayed in %d ms (%.0f decisions/s, speedup %.2f).",
+					numGames, numFiles, elapsedNs / 1000000, getDecisionsPerSecond(), elapsedNs == 0 ? 0 : (double) replayNs / elapsedNs));
+			for (int i = 0; i < NUM_DECISION_TYPES; i++)
+				sb.append(String.format("\n%s: %d of %d decisions differ.", DECISION_NAMES[i], numDiffs[i], decisions[i]));
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * GameEventSink turning the events of the games of one log file into player callbacks and comparing decisions
+	 */
+	private class Replayer implements GameEventSink {
+		private final String file;
+		private final Result result;
+		/**
+		 * Replayed players indexed by player number, null for seats not replayed
+		 */
+		private final FastGinRummyPlayer[] players = new FastGinRummyPlayer[2];
+		private final long[] hands = new long[2];
+		private final int[] discards = new int[Card.NUM_CARDS];
+		private int numDiscards, firstFaceUpCard, turnsTaken;
+		private int game = -1, round;
+		/**
+		 * Player whose knock decision is to be compared with the next event, or -1, and the number of melds it returned
+		 */
+		private int pendingKnock = -1, pendingNumMelds;
+		/**
+		 * Player whose melds are to be compared with the next opponent melds event, or -1, and the number of melds it returned
+		 */
+		private int pendingMelds = -1;
+		private final long[] melds = new long[GinRummyUtil.MAX_MELDS];
+
+		Replayer(String file, Result result) {
+			this.file = file;
+			this.result = result;
+			for (int i = 0; i < 2; i++)
+				if (seat < 0 || seat == i)
+					players[i] = GinRummyPlayerAdapter.adapt(playerFactory.get());
+		}
+
+		public void gameStart(long gameSeed) {
+			game++;
+			round = -1;
+		}
+
+		public void roundStart(int startingPlayer, long hand0, long hand1, int faceUpCard) {
+			round++;
+			hands[0] = hand0;
+			hands[1] = hand1;
+			for (int i = 0; i < 2; i++)
+				if (players[i] != null)
+					players[i].startGame(i, startingPlayer, hands[i]);
+			discards[0] = firstFaceUpCard = faceUpCard;
+			numDiscards = 1;
+			turnsTaken = 0;
+			pendingKnock = pendingMelds = -1;
+		}
+
+		public void decline(int player, int cardId) {
+			compareDraw(player, false);
+			turnsTaken++;
+		}
+
+		public void draw(int player, int cardId, boolean faceUp) {
+			resolveKnock(-1);
+			int faceUpCard = discards[numDiscards - 1];
+			// GinRummyGame does not offer the first face-up card on the third turn
+			if (!(turnsTaken == 2 && faceUpCard == firstFaceUpCard))
+				compareDraw(player, faceUp);
+			if (faceUp)
+				numDiscards--;
+			hands[player] |= 1L << cardId;
+			for (int i = 0; i < 2; i++)
+				if (players[i] != null)
+					players[i].reportDraw(player, (i == player || faceUp) ? cardId : -1);
+		}
+
+		public void discard(int player, int cardId) {
+			if (players[player] != null) {
+				int replayed = players[player].getDiscard();
+				compare(player, DISCARD, replayed == cardId, () -> Card.getCard(cardId).toString(),
+						() -> replayed < 0 || replayed >= Card.NUM_CARDS ? "illegal card " + replayed : Card.getCard(replayed).toString());
+			}
+			hands[player] &= ~(1L << cardId);
+			discards[numDiscards++] = cardId;
+			for (int i = 0; i < 2; i++)
+				if (players[i] != null)
+					players[i].reportDiscard(player, cardId);
+			if (players[player] != null) {
+				pendingNumMelds = players[player].getFinalMelds(melds);
+				pendingKnock = player;
+			}
+			turnsTaken++;
+		}
+
+		public void knock(int player, long[] knockMelds, int numMelds) {
+			resolveKnock(player);
+			if (pendingNumMelds >= 0 && players[player] != null)
+				compareMelds(player, knockMelds, numMelds);
+			for (int i = 0; i < 2; i++)
+				if (players[i] != null)
+					players[i].reportFinalMelds(player, knockMelds, numMelds);
+			int opponent = 1 - player;
+			if (players[opponent] != null) {
+				pendingNumMelds = Math.max(0, players[opponent].getFinalMelds(melds));
+				pendingMelds = opponent;
+			}
+		}
+
+		public void opponentMelds(int player, long[] opponentMelds, int numMelds) {
+			if (pendingMelds == player)
+				compareMelds(player, opponentMelds, numMelds);
+			pendingMelds = -1;
+			for (int i = 0; i < 2; i++)
+				if (players[i] != null)
+					players[i].reportFinalMelds(player, opponentMelds, numMelds);
+		}
+
+		public void layoff(int player, int cardId, long meld) {
+			for (int i = 0; i < 2; i++)
+				if (players[i] != null)
+					players[i].reportLayoff(player, cardId, meld);
+		}
+
+		public void roundEnd(int[] scores) {
+			resolveKnock(-1);
+			for (int i = 0; i < 2; i++)
+				if (players[i] != null) {
+					for (int j = 0; j < 2; j++)
+						players[i].reportFinalHand(j, hands[j]);
+					players[i].reportScores(scores);
+				}
+		}
+
+		public void forfeit(int player) {
+			// a player forfeiting right after its discard knocked with illegal melds
+			resolveKnock(player);
+		}
+
+		public void gameEnd(int winner) {
+		}
+
+		/**
+		 * Compare the pending knock decision, if any, with the recorded one.
+		 * @param knockingPlayer player knocking in the recorded game, or -1 if the next event is no knock
+		 */
+		private void resolveKnock(int knockingPlayer) {
+			if (pendingKnock < 0)
+				return;
+			int player = pendingKnock;
+			boolean recorded = knockingPlayer == player, replayed = pendingNumMelds >= 0;
+			compare(player, KNOCK, recorded == replayed, () -> recorded ? "knock" : "no knock", () -> replayed ? "knock" : "no knock");
+			pendingKnock = -1;
+		}
+
+		/**
+		 * Ask a replayed player whether to draw the face-up card and compare with the recorded choice.
+		 * @param player player deciding
+		 * @param recorded whether the face-up card was drawn in the recorded game
+		 */
+		private void compareDraw(int player, boolean recorded) {
+			if (players[player] == null)
+				return;
+			boolean replayed = players[player].willDrawFaceUpCard(discards[numDiscards - 1]);
+			compare(player, DRAW, replayed == recorded, () -> recorded ? "face up" : "face down", () -> replayed ? "face up" : "face down");
+		}
+
+		/**
+		 * Compare the pending melds of a player, regardless of order, with the recorded ones.
+		 * @param player player melding
+		 * @param recordedMelds recorded meld bitstrings in the first numRecorded entries
+		 * @param numRecorded number of recorded melds
+		 */
+		private void compareMelds(int player, long[] recordedMelds, int numRecorded) {
+			long[] recorded = Arrays.copyOf(recordedMelds, numRecorded);
+			long[] replayed = Arrays.copyOf(melds, pendingNumMelds);
+			Arrays.sort(recorded);
+			Arrays.sort(replayed);
+			compare(player, MELDS, Arrays.equals(recorded, replayed), () -> toMeldLists(recorded).toString(), () -> toMeldLists(replayed).toString());
+		}
+
+		/**
+		 * Count a compared decision and keep its difference, if any and if fewer than maxDiffs are kept.
+		 * @param player player deciding
+		 * @param type decision type
+		 * @param same whether the replayed decision equals the recorded one
+		 * @param recorded text of the recorded decision, built only for differences
+		 * @param replayed text of the replayed decision, built only for differences
+		 */
+		private void compare(int player, int type, boolean same, Supplier<String> recorded, Supplier<String> replayed) {
+			result.decisions[type]++;
+			if (same)
+				return;
+			result.numDiffs[type]++;
+			if (result.diffs.size() < maxDiffs)
+				result.diffs.add(new Diff(file, game, round, turnsTaken, player, type, recorded.get(), replayed.get()));
+		}
+	}
+
+	/**
+	 * Return the list of card melds of the given meld bitstrings, for printing.
+	 * @param melds meld bitstrings
+	 * @return the list of card melds
+	 */
+	private static ArrayList<ArrayList<Card>> toMeldLists(long[] melds) {
+		ArrayList<ArrayList<Card>> meldLists = new ArrayList<ArrayList<Card>>();
+		for (long meld : melds)
+			meldLists.add(GinRummyUtil.bitstringToCards(meld));
+		return meldLists;
+	}
+
+	/**
+	 * Replay log files to Aja6082GinRummyPlayer in both seats and print the results and the first differences.
+	 * @param args log files written by GameLogWriter
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("usage: java ReplayHarness <log file>...");
+			System.exit(1);
+		}
+		ArrayList<Path> files = new ArrayList<Path>();
+		for (String arg : args)
+			files.add(Paths.get(arg));
+		ReplayHarness harness = new ReplayHarness(Aja6082GinRummyPlayer::new);
+		harness.setMaxDiffs(20);
+		Result result = harness.run(files);
+		System.out.println(result);
+		for (int i = 0; i < Math.min(20, result.diffs.size()); i++)
+			System.out.println(result.diffs.get(i));
+	}
+}
@@ -74,12 +74,14 @@ public class SimpleGinRummyPlayer implements GinRummyPlayer {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public Card getDiscard() {
 		// Discard a random card (not just drawn face up) leaving minimal deadwood points.
 		int minDeadwood = Integer.MAX_VALUE;
 		ArrayList<Card> candidateCards = new ArrayList<Card>();
+		// Best deadwood after each discard, indexed by the card's position in the hand in increasing id order
+		long handBitstring = GinRummyUtil.cardsToBitstring(cards);
+		int[] deadwoodAfterDiscard = GinRummyUtil.getBestDeadwoodAfterDiscards(handBitstring);
 		for (Card card : cards) {
 			// Cannot draw and discard face up card.
 			if (card == drawnCard && drawnCard == faceUpCard)
@@ -91,10 +93,7 @@ public class SimpleGinRummyPlayer implements GinRummyPlayer {
 			if (drawDiscardBitstrings.contains(GinRummyUtil.cardsToBitstring(drawDiscard)))
 				continue;
 			
-			ArrayList<Card> remainingCards = (ArrayList<Card>) cards.clone();
-			remainingCards.remove(card);
-			ArrayList<ArrayList<ArrayList<Card>>> bestMeldSets = GinRummyUtil.cardsToBestMeldSets(remainingCards);
-			int deadwood = bestMeldSets.isEmpty() ? GinRummyUtil.getDeadwoodPoints(remainingCards) : GinRummyUtil.getDeadwoodPoints(bestMeldSets.get(0), remainingCards);
+			int deadwood = deadwoodAfterDiscard[Long.bitCount(handBitstring & ((1L << card.getId()) - 1))];
 			if (deadwood <= minDeadwood) {
 				if (deadwood < minDeadwood) {
 					minDeadwood = deadwood;
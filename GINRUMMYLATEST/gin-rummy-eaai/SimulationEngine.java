@@ -0,0 +1,155 @@
+import java.util.SplittableRandom;
+
+/**
+ * Plays games between two GreedyPolicy players directly on a GameState, without the refereeing, player callbacks and
+ * logging of GinRummyGame.  Moves are trusted rather than checked, hands are kept as bitstrings and the melds of each
+ * hand are maintained incrementally, so a game allocates nothing.
+ *
+ * Games are dealt from a game seed exactly as GinRummyGame.play(long) deals them, and GreedyGinRummyPlayer plays the
+ * same policy through the referee, so a game of two GreedyGinRummyPlayers refereed by GinRummyGame has the same winner
+ * and scores as the engine's game of the same seed.  main checks this conformance seed for seed and compares the
+ * throughput of both.  Most of the time of a game goes to the policy's meld enumeration, which both share, so the
+ * engine is only moderately faster than the referee with the same players.
+ *
+ * Not thread-safe; use one engine per thread.
+ */
+public class SimulationEngine {
+
+	/**
+	 * State of the game being played
+	 */
+	private final GameState state = new GameState();
+
+	/**
+	 * Policies of the players, indexed by player number
+	 */
+	private final GreedyPolicy[] policies = {new GreedyPolicy(), new GreedyPolicy()};
+
+	/**
+	 * Meld bitstrings of the knocking player and of the opponent, and the cards laid off on each knocking meld
+	 */
+	private final long[] knockMelds = new long[GinRummyUtil.MAX_MELDS], opponentMelds = new long[GinRummyUtil.MAX_MELDS];
+	private final long[] layoffs = new long[GinRummyUtil.MAX_MELDS];
+
+	/**
+	 * Play a game and return the winning player number 0 or 1.  The starting player and all shuffles are determined by
+	 * the game seed as in GinRummyGame.play(long).
+	 * @param gameSeed seed of the game
+	 * @return the winning player number 0 or 1
+	 */
+	public int play(long gameSeed) {
+		SplittableRandom random = new SplittableRandom(gameSeed);
+		state.startGame(random.nextInt(2));
+		while (!state.isGameOver())
+			playRound(random);
+		return state.getScore(0) >= GinRummyUtil.GOAL_SCORE ? 0 : 1;
+	}
+
+	/**
+	 * Return a player's score at the end of the most recent game.
+	 * @param player player number
+	 * @return the player's score
+	 */
+	public int getScore(int player) {
+		return state.getScore(player);
+	}
+
+	/**
+	 * Deal and play a round, adding its points to the scores.
+	 * @param random random number generator of the game
+	 */
+	private void playRound(SplittableRandom random) {
+		state.deal(random);
+		policies[0].set(state.getHand(0));
+		policies[1].set(state.getHand(1));
+		while (state.getPhase() == GameState.DRAW) {
+			int player = state.getCurrentPlayer();
+			GreedyPolicy policy = policies[player];
+			boolean drawFaceUp = state.isFaceUpOffered() && policy.willDrawFaceUpCard(state.getFaceUpCard());
+			if (!drawFaceUp && state.isLegal(GameState.DECLINE)) {
+				state.apply(GameState.DECLINE);
+				continue;
+			}
+			state.apply(drawFaceUp ? GameState.DRAW_FACE_UP : GameState.DRAW_FACE_DOWN);
+			policy.draw(state.getDrawnCard(), drawFaceUp);
+			int discard = policy.getDiscard();
+			policy.discard(discard);
+			state.apply(discard);
+			if (policy.willKnock()) {
+				score(player);
+				state.apply(GameState.KNOCK);
+				return;
+			}
+			state.apply(GameState.CONTINUE);
+		}
+	}
+
+	/**
+	 * Meld both hands, lay off on the knocking melds and add the points of the round to the scores.
+	 * @param knocker knocking player
+	 */
+	private void score(int knocker) {
+		int opponent = 1 - knocker;
+		int numKnockMelds = policies[knocker].getMelds(knockMelds);
+		long unmelded = state.getHand(knocker);
+		for (int i = 0; i < numKnockMelds; i++)
+			unmelded &= ~knockMelds[i];
+		int knockingDeadwood = GinRummyUtil.getDeadwoodPoints(unmelded);
+		int numOpponentMelds = policies[opponent].getMelds(opponentMelds);
+		long opponentUnmelded = state.getHand(opponent);
+		for (int i = 0; i < numOpponentMelds; i++)
+			opponentUnmelded &= ~opponentMelds[i];
+		if (knockingDeadwood > 0)
+			opponentUnmelded &= ~GinRummyUtil.getLayoffs(knockMelds, numKnockMelds, opponentUnmelded, layoffs);
+		int points = GinRummyUtil.getKnockPoints(knockingDeadwood, GinRummyUtil.getDeadwoodPoints(opponentUnmelded));
+		if (points >= 0)
+			state.addScore(knocker, points);
+		else
+			state.addScore(opponent, -points);
+	}
+
+	/**
+	 * Check that the engine and GinRummyGame with two GreedyGinRummyPlayers agree on the winner and scores of the games
+	 * of the same seeds, exiting with status 1 on any mismatch, then compare the throughput of both.
+	 * @param args number of games (default 1000) and seed of the game seeds (default 42)
+	 */
+	public static void main(String[] args) {
+		int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		GinRummyGame.setPlayVerbose(false);
+		SimulationEngine engine = new SimulationEngine();
+		GinRummyGame referee = new GinRummyGame(new GreedyGinRummyPlayer(), new GreedyGinRummyPlayer());
+		SplittableRandom seeds = new SplittableRandom(seed);
+		int mismatches = 0;
+		for (int i = 0; i < numGames; i++) {
+			long gameSeed = seeds.nextLong();
+			int winner = referee.play(gameSeed);
+			int[] scores = referee.getScores();
+			if (engine.play(gameSeed) != winner || engine.getScore(0) != scores[0] || engine.getScore(1) != scores[1]) {
+				mismatches++;
+				System.out.printf("Game seed %d: referee %d-%d, engine %d-%d.\n", gameSeed, scores[0], scores[1],
+						engine.getScore(0), engine.getScore(1));
+			}
+		}
+		System.out.printf("%d of %d games conform.\n", numGames - mismatches, numGames);
+		if (mismatches > 0)
+			System.exit(1);
+
+		for (int pass = 0; pass < 2; pass++) { // the first pass warms up
+			seeds = new SplittableRandom(seed);
+			long startNs = System.nanoTime();
+			for (int i = 0; i < numGames; i++)
+				engine.play(seeds.nextLong());
+			long engineNs = System.nanoTime() - startNs;
+			seeds = new SplittableRandom(seed);
+			startNs = System.nanoTime();
+			for (int i = 0; i < numGames; i++)
+				referee.play(seeds.nextLong());
+			long refereeNs = System.nanoTime() - startNs;
+			if (pass == 1) {
+				System.out.printf("SimulationEngine:                   %9.0f games/s\n", numGames * 1e9 / engineNs);
+				System.out.printf("GinRummyGame, GreedyGinRummyPlayer: %9.0f games/s\n", numGames * 1e9 / refereeNs);
+			}
+		}
+	}
+}
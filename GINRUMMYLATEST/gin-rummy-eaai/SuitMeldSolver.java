@@ -0,0 +1,254 @@
+import java.util.SplittableRandom;
+
+/**
+ * Meld solver working on the four 13-bit suit masks of a hand (see GinRummyUtil for card bitstrings).
+ *
+ * Runs lie within one suit and sets within one rank.  Once it is decided which cards form sets, the cards left
+ * in each suit are best melded by making a run of every block of three or more consecutive ranks, so the points
+ * covered by runs in a suit depend only on its 13-bit mask and are read from an 8192-entry table.  Sets are only
+ * possible at ranks held in three or four suits, of which a 10- or 11-card hand has at most three, and each such
+ * rank has two (three cards: set or no set) or six (four cards: no set, all four, or any three) set choices.
+ * Best deadwood is therefore found by trying the few combinations of set choices, each costing four table lookups.
+ *
+ * Results are the same as those of the GinRummyUtil branch-and-bound solver; GinRummyUtil.setSuitMeldSolverEnabled
+ * selects this solver behind GinRummyUtil.getBestDeadwood, getBestMeldBitstrings and cardsToBestMeldSets.
+ * No objects are allocated.
+ */
+public class SuitMeldSolver {
+
+	/**
+	 * Mask of the 13 ranks of a suit
+	 */
+	private static final int SUIT_MASK = (1 << Card.NUM_RANKS) - 1;
+
+	/**
+	 * Deadwood points of the cards of each rank mask
+	 */
+	private static final int[] POINTS = new int[1 << Card.NUM_RANKS];
+
+	/**
+	 * Deadwood points covered by runs in each rank mask of a suit, i.e. the points of all blocks of at least three consecutive ranks
+	 */
+	private static final int[] RUN_POINTS = new int[1 << Card.NUM_RANKS];
+
+	/**
+	 * Ranks of each rank mask of a suit that are covered by runs
+	 */
+	private static final int[] RUN_RANKS = new int[1 << Card.NUM_RANKS];
+
+	static {
+		for (int mask = 1; mask <= SUIT_MASK; mask++) {
+			int rank = Integer.numberOfTrailingZeros(mask);
+			POINTS[mask] = POINTS[mask & (mask - 1)] + Math.min(rank + 1, 10);
+		}
+		for (int mask = 0; mask <= SUIT_MASK; mask++) {
+			int runRanks = 0;
+			for (int ranks = mask; ranks != 0; ) {
+				// block of consecutive ranks starting at the lowest rank left
+				int low = ranks & -ranks;
+				int block = ranks & ~(ranks + low);
+				if (Integer.bitCount(block) >= 3)
+					runRanks |= block;
+				ranks &= ~block;
+			}
+			RUN_RANKS[mask] = runRanks;
+			RUN_POINTS[mask] = POINTS[runRanks];
+		}
+	}
+
+	/**
+	 * Return the minimum deadwood points over all ways of melding the cards of a card set bitstring.
+	 * @param handBitstring card set bitstring of the hand
+	 * @return the minimum deadwood points for the hand
+	 */
+	public static int getBestDeadwood(long handBitstring) {
+		int a = suit(handBitstring, 0), b = suit(handBitstring, 1), c = suit(handBitstring, 2), d = suit(handBitstring, 3);
+		int total = POINTS[a] + POINTS[b] + POINTS[c] + POINTS[d];
+		return total - maxCovered(setRanks(a, b, c, d), a, b, c, d);
+	}
+
+	/**
+	 * Return the minimum deadwood points over all ways of melding the cards of a card set bitstring, and
+	 * store one set of meld bitstrings achieving it, as GinRummyUtil.getBestMeldBitstrings does.
+	 * @param handBitstring card set bitstring of the hand
+	 * @param bestMelds array receiving the best meld bitstrings (GinRummyUtil.MAX_MELDS entries always suffice)
+	 * @return the minimum deadwood points for the hand
+	 */
+	public static int getBestMeldBitstrings(long handBitstring, long[] bestMelds) {
+		int a = suit(handBitstring, 0), b = suit(handBitstring, 1), c = suit(handBitstring, 2), d = suit(handBitstring, 3);
+		int total = POINTS[a] + POINTS[b] + POINTS[c] + POINTS[d];
+		int covered = maxCovered(setRanks(a, b, c, d), a, b, c, d);
+		int numMelds = storeMelds(setRanks(a, b, c, d), a, b, c, d, covered, bestMelds, 0);
+		if (numMelds < bestMelds.length)
+			bestMelds[numMelds] = 0L;
+		return total - covered;
+	}
+
+	/**
+	 * Return the rank mask of the given suit of a card set bitstring.
+	 * @param handBitstring card set bitstring
+	 * @param suit suit number
+	 * @return the rank mask of the suit
+	 */
+	private static int suit(long handBitstring, int suit) {
+		return (int) (handBitstring >>> (suit * Card.NUM_RANKS)) & SUIT_MASK;
+	}
+
+	/**
+	 * Return the mask of ranks held in at least three of the given suit masks.
+	 * @param a rank mask of clubs
+	 * @param b rank mask of hearts
+	 * @param c rank mask of spades
+	 * @param d rank mask of diamonds
+	 * @return the mask of ranks held in at least three suits
+	 */
+	private static int setRanks(int a, int b, int c, int d) {
+		return (a & b & (c | d)) | (c & d & (a | b));
+	}
+
+	/**
+	 * Return the most deadwood points covered by melds, deciding set choices for the given ranks from the lowest up.
+	 * @param pending mask of ranks held in at least three suits whose set choice is not yet decided
+	 * @param a rank mask of clubs not in sets
+	 * @param b rank mask of hearts not in sets
+	 * @param c rank mask of spades not in sets
+	 * @param d rank mask of diamonds not in sets
+	 * @return the most deadwood points covered by melds
+	 */
+	private static int maxCovered(int pending, int a, int b, int c, int d) {
+		if (pending == 0)
+			return RUN_POINTS[a] + RUN_POINTS[b] + RUN_POINTS[c] + RUN_POINTS[d];
+		int bit = pending & -pending;
+		pending &= pending - 1;
+		int points = POINTS[bit];
+		// no set at this rank
+		int best = maxCovered(pending, a, b, c, d);
+		int held = ((a & bit) != 0 ? 1 : 0) | ((b & bit) != 0 ? 2 : 0) | ((c & bit) != 0 ? 4 : 0) | ((d & bit) != 0 ? 8 : 0);
+		// set of all cards of this rank, and if there are four, of each three of them
+		best = Math.max(best, Integer.bitCount(held) * points + maxCovered(pending, a & ~bit, b & ~bit, c & ~bit, d & ~bit));
+		if (held == 15) {
+			best = Math.max(best, 3 * points + maxCovered(pending, a, b & ~bit, c & ~bit, d & ~bit));
+			best = Math.max(best, 3 * points + maxCovered(pending, a & ~bit, b, c & ~bit, d & ~bit));
+			best = Math.max(best, 3 * points + maxCovered(pending, a & ~bit, b & ~bit, c, d & ~bit));
+			best = Math.max(best, 3 * points + maxCovered(pending, a & ~bit, b & ~bit, c & ~bit, d));
+		}
+		return best;
+	}
+
+	/**
+	 * Store the melds of a combination of set choices covering the given points, found as in maxCovered.
+	 * @param pending mask of ranks held in at least three suits whose set choice is not yet decided
+	 * @param a rank mask of clubs not in sets
+	 * @param b rank mask of hearts not in sets
+	 * @param c rank mask of spades not in sets
+	 * @param d rank mask of diamonds not in sets
+	 * @param covered points covered by melds of the combination to store
+	 * @param melds array receiving meld bitstrings
+	 * @param numMelds number of melds already stored
+	 * @return the number of melds stored, or -1 if no combination below this choice covers the given points
+	 */
+	private static int storeMelds(int pending, int a, int b, int c, int d, int covered, long[] melds, int numMelds) {
+		if (pending == 0) {
+			if (RUN_POINTS[a] + RUN_POINTS[b] + RUN_POINTS[c] + RUN_POINTS[d] != covered)
+				return -1;
+			numMelds = storeRuns(a, 0, melds, numMelds);
+			numMelds = storeRuns(b, 1, melds, numMelds);
+			numMelds = storeRuns(c, 2, melds, numMelds);
+			return storeRuns(d, 3, melds, numMelds);
+		}
+		int bit = pending & -pending;
+		pending &= pending - 1;
+		int points = POINTS[bit];
+		int rank = Integer.numberOfTrailingZeros(bit);
+		int result = storeMelds(pending, a, b, c, d, covered, melds, numMelds);
+		if (result >= 0)
+			return result;
+		int held = ((a & bit) != 0 ? 1 : 0) | ((b & bit) != 0 ? 2 : 0) | ((c & bit) != 0 ? 4 : 0) | ((d & bit) != 0 ? 8 : 0);
+		for (int used = held; ; used = (used - 1) & held) {
+			// all cards of this rank, then (if there are four) each three of them
+			if (used == held || Integer.bitCount(used) == 3) {
+				int setPoints = Integer.bitCount(used) * points;
+				if (setPoints <= covered && numMelds < melds.length) {
+					long set = 0L;
+					for (int suit = 0; suit < Card.NUM_SUITS; suit++)
+						if ((used & 1 << suit) != 0)
+							set |= 1L << (suit * Card.NUM_RANKS + rank);
+					melds[numMelds] = set;
+					result = storeMelds(pending, (used & 1) != 0 ? a & ~bit : a, (used & 2) != 0 ? b & ~bit : b,
+							(used & 4) != 0 ? c & ~bit : c, (used & 8) != 0 ? d & ~bit : d, covered - setPoints, melds, numMelds + 1);
+					if (result >= 0)
+						return result;
+				}
+			}
+			if (used == 0)
+				return -1;
+		}
+	}
+
+	/**
+	 * Store a run meld for each block of at least three consecutive ranks of a suit mask.
+	 * @param mask rank mask of the suit
+	 * @param suit suit number
+	 * @param melds array receiving meld bitstrings
+	 * @param numMelds number of melds already stored
+	 * @return the number of melds stored
+	 */
+	private static int storeRuns(int mask, int suit, long[] melds, int numMelds) {
+		for (int ranks = RUN_RANKS[mask]; ranks != 0 && numMelds < melds.length; ) {
+			int low = ranks & -ranks;
+			int block = ranks & ~(ranks + low);
+			melds[numMelds++] = (long) block << (suit * Card.NUM_RANKS);
+			ranks &= ~block;
+		}
+		return numMelds;
+	}
+
+	/**
+	 * Check the solver against the GinRummyUtil branch-and-bound solver on random 10- and 11-card hands, half of them
+	 * dealt from five random ranks so that set choices matter: the same best deadwood, and best melds that are
+	 * disjoint melds of the hand leaving it.  Exits with status 1 on the first mismatch.
+	 * @param args number of hands (default 200000) and random seed (default 617)
+	 */
+	public static void main(String[] args) {
+		int numHands = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 617);
+		GinRummyUtil.setSuitMeldSolverEnabled(false);
+		long[] melds = new long[GinRummyUtil.MAX_MELDS];
+		for (int n = 0; n < numHands; n++) {
+			long cards = (1L << Card.NUM_CARDS) - 1;
+			if (n % 2 == 1) {
+				cards = 0L;
+				for (int i = 0; i < 5; i++)
+					for (int suit = 0, rank = random.nextInt(Card.NUM_RANKS); suit < Card.NUM_SUITS; suit++)
+						cards |= 1L << (suit * Card.NUM_RANKS + rank);
+			}
+			long hand = 0L;
+			for (int size = Math.min(10 + n % 4 / 2, Long.bitCount(cards)); Long.bitCount(hand) < size; ) {
+				int id = random.nextInt(Card.NUM_CARDS);
+				if ((cards & 1L << id) != 0L)
+					hand |= 1L << id;
+			}
+			int expected = GinRummyUtil.computeBestDeadwood(hand);
+			long unmelded = hand;
+			int deadwood = getBestMeldBitstrings(hand, melds);
+			for (int i = 0; i < melds.length && melds[i] != 0L; i++) {
+				if (!GinRummyUtil.isMeld(melds[i]) || (melds[i] & ~unmelded) != 0L)
+					fail(hand, "melds");
+				unmelded &= ~melds[i];
+			}
+			if (getBestDeadwood(hand) != expected || deadwood != expected || GinRummyUtil.getDeadwoodPoints(unmelded) != expected)
+				fail(hand, "deadwood");
+		}
+		System.out.printf("%d hands checked.\n", numHands);
+	}
+
+	/**
+	 * Report a mismatch with the branch-and-bound solver and exit with status 1.
+	 * @param hand bitstring of the hand
+	 * @param what value that differs
+	 */
+	private static void fail(long hand, String what) {
+		System.out.printf("%s: %s differs.\n", GinRummyUtil.bitstringToCards(hand), what);
+		System.exit(1);
+	}
+}
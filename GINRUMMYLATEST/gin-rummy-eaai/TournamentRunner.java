@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Plays many non-verbose games of Gin Rummy between two kinds of players in parallel.
+ *
+ * Games are split into batches, and each batch creates its own players (through the given player factories)
+ * and its own GinRummyGame, so no player or game is used by two threads.  Game i is dealt from a seed
+ * derived from the tournament seed by a SplittableRandom, so the deals of a tournament are the same
+ * regardless of the number of threads or the order in which batches run, and game i can be dealt again
+ * with GinRummyGame.play(getGameSeeds(numGames)[i]).
+ *
+ * Batches run on a ForkJoinPool with one thread per available processor unless another ExecutorService is
+ * given.  Players must not share mutable static state.  GinRummyUtil keeps its deadwood cache (512 KB by default),
+ * meld cover and draw value table per thread, so each new thread starts with cold caches of its own: prefer an
+ * executor with a few long-lived threads to one creating a thread per batch, or share one deadwood cache among
+ * threads with GinRummyUtil.setSharedDeadwoodCache.
+ */
+public class TournamentRunner {
+
+	/**
+	 * Number of batches per thread, so that threads finishing early can take further batches
+	 */
+	private static final int BATCHES_PER_THREAD = 4;
+
+	/**
+	 * Factories creating Player 0 and Player 1 for each batch of games
+	 */
+	private final Supplier<GinRummyPlayer> player0Factory, player1Factory;
+
+	/**
+	 * Number of threads of the default ForkJoinPool and basis of the number of batches
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Executor running batches of games, or null to use a ForkJoinPool for each tournament
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Tournament seed from which game seeds are derived
+	 */
+	private long seed = System.nanoTime();
+
+	/**
+	 * Whether or not player callbacks are profiled by InstrumentedGinRummyPlayer wrappers
+	 */
+	private boolean profiling = false;
+
+	/**
+	 * Statistics receiving the events of all games, or null
+	 */
+	private TournamentStatistics statistics = null;
+
+	/**
+	 * Create a tournament runner for players created by the given factories.
+	 * @param player0Factory factory creating Player 0 for each batch of games
+	 * @param player1Factory factory creating Player 1 for each batch of games
+	 */
+	public TournamentRunner(Supplier<GinRummyPlayer> player0Factory, Supplier<GinRummyPlayer> player1Factory) {
+		this.player0Factory = player0Factory;
+		this.player1Factory = player1Factory;
+	}
+
+	/**
+	 * Set the number of threads used when no executor is given.
+	 * @param parallelism number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Set the executor running batches of games, or null to use a ForkJoinPool for each tournament.
+	 * The executor is not shut down by the tournament runner.
+	 * @param executor executor running batches of games
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the tournament seed from which game seeds are derived.
+	 * @param seed tournament seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Set whether or not player callbacks are profiled.  Profiles of each player are merged into the results.
+	 * @param profiling whether or not player callbacks are profiled
+	 */
+	public void setProfiling(boolean profiling) {
+		this.profiling = profiling;
+	}
+
+	/**
+	 * Set the statistics receiving the events of all games, or null for none.  Each batch records through its own
+	 * recorder (see TournamentStatistics), released when the batch ends, and the statistics may be snapshot while the
+	 * tournament runs.
+	 * @param statistics statistics receiving the events of all games, or null
+	 */
+	public void setStatistics(TournamentStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Return the seed of each game of a tournament of the given number of games.
+	 * @param numGames number of games
+	 * @return the seed of each game, indexed by game number
+	 */
+	public long[] getGameSeeds(int numGames) {
+		SplittableRandom seeds = new SplittableRandom(seed);
+		long[] gameSeeds = new long[numGames];
+		for (int i = 0; i < numGames; i++)
+			gameSeeds[i] = seeds.nextLong();
+		return gameSeeds;
+	}
+
+	/**
+	 * Play the given number of games and return the aggregated results.
+	 * @param numGames number of games
+	 * @return the aggregated results
+	 */
+	public Result run(int numGames) {
+		long[] gameSeeds = getGameSeeds(numGames);
+		int numBatches = Math.max(1, Math.min(numGames, parallelism * BATCHES_PER_THREAD));
+		ExecutorService service = executor != null ? executor : new ForkJoinPool(parallelism);
+		long startNs = System.nanoTime();
+		try {
+			ArrayList<Future<Result>> batches = new ArrayList<Future<Result>>();
+			for (int b = 0; b < numBatches; b++) {
+				int first = (int) ((long) numGames * b / numBatches);
+				int last = (int) ((long) numGames * (b + 1) / numBatches);
+				batches.add(service.submit(() -> playBatch(gameSeeds, first, last)));
+			}
+			Result result = new Result();
+			for (Future<Result> batch : batches)
+				result.add(batch.get());
+			result.elapsedNs = System.nanoTime() - startNs;
+			return result;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("tournament interrupted", e);
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("game failed", e.getCause());
+		}
+		finally {
+			if (service != executor)
+				service.shutdown();
+		}
+	}
+
+	/**
+	 * Play a batch of games with newly created players.
+	 * @param gameSeeds seeds of all games of the tournament
+	 * @param first number of the first game of the batch
+	 * @param last number after the last game of the batch
+	 * @return the results of the batch
+	 */
+	private Result playBatch(long[] gameSeeds, int first, int last) {
+		FastGinRummyPlayer player0 = GinRummyPlayerAdapter.adapt(player0Factory.get());
+		FastGinRummyPlayer player1 = GinRummyPlayerAdapter.adapt(player1Factory.get());
+		InstrumentedGinRummyPlayer[] instrumented = null;
+		if (profiling) {
+			instrumented = new InstrumentedGinRummyPlayer[] {new InstrumentedGinRummyPlayer(player0), new InstrumentedGinRummyPlayer(player1)};
+			player0 = instrumented[0];
+			player1 = instrumented[1];
+		}
+		GinRummyGame game = new GinRummyGame(player0, player1);
+		game.setVerbose(false);
+		GameEventSink recorder = statistics != null ? statistics.newRecorder() : null;
+		if (recorder != null)
+			game.setEventSink(recorder);
+		Result result = new Result();
+		for (int i = first; i < last; i++) {
+			long startNs = System.nanoTime();
+			int winner = game.play(gameSeeds[i]);
+			result.gameNs += System.nanoTime() - startNs;
+			int[] scores = game.getScores();
+			result.numGames++;
+			result.wins[winner]++;
+			result.points[0] += scores[0];
+			result.points[1] += scores[1];
+		}
+		if (recorder != null)
+			statistics.release(recorder);
+		if (instrumented != null)
+			for (int i = 0; i < 2; i++)
+				result.profiles[i].add(instrumented[i].getProfile());
+		return result;
+	}
+
+	/**
+	 * Aggregated results of a tournament, indexed by player number where applicable
+	 */
+	public static class Result {
+		/**
+		 * Number of games played
+		 */
+		public int numGames;
+		/**
+		 * Number of games won by each player
+		 */
+		public final int[] wins = new int[2];
+		/**
+		 * Total final game scores of each player
+		 */
+		public final long[] points = new long[2];
+		/**
+		 * Total time spent playing games over all threads in nanoseconds
+		 */
+		public long gameNs;
+		/**
+		 * Wall-clock time of the tournament in nanoseconds
+		 */
+		public long elapsedNs;
+		/**
+		 * Callback profile of each player, empty unless the tournament was profiled
+		 */
+		public final DecisionProfile[] profiles = {new DecisionProfile(), new DecisionProfile()};
+
+		/**
+		 * Add the counts and game time of other results to these.
+		 * @param other other results
+		 */
+		void add(Result other) {
+			numGames += other.numGames;
+			for (int i = 0; i < 2; i++) {
+				wins[i] += other.wins[i];
+				points[i] += other.points[i];
+			}
+			gameNs += other.gameNs;
+			for (int i = 0; i < 2; i++)
+				profiles[i].add(other.profiles[i]);
+		}
+
+		/**
+		 * Return the number of games played per second of wall-clock time.
+		 * @return the number of games played per second of wall-clock time
+		 */
+		public double getGamesPerSecond() {
+			return elapsedNs == 0 ? 0 : numGames * 1e9 / elapsedNs;
+		}
+
+		/**
+		 * Return the ratio of game time over all threads to wall-clock time, i.e. the effective number of busy threads.
+		 * @return the ratio of game time over all threads to wall-clock time
+		 */
+		public double getSpeedup() {
+			return elapsedNs == 0 ? 0 : (double) gameNs / elapsedNs;
+		}
+
+		/**
+		 * Return the callback profiles of both players as CSV with a header line.
+		 * @return the callback profiles as CSV
+		 */
+		public String profilesToCsv() {
+			StringBuilder sb = new StringBuilder(DecisionProfile.getCsvHeader()).append(System.lineSeparator());
+			for (int i = 0; i < 2; i++)
+				profiles[i].appendCsv("P" + i, sb);
+			return sb.toString();
+		}
+
+		/**
+		 * Return the callback profiles of both players as a JSON object keyed by player.
+		 * @return the callback profiles as JSON
+		 */
+		public String profilesToJson() {
+			return "{\"P0\":" + profiles[0].toJson() + ",\"P1\":" + profiles[1].toJson() + "}";
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return String.format("%d games played in %d ms (%.1f games/s, speedup %.2f).\nGames Won: P0:%d, P1:%d.\nPoints: P0:%d, P1:%d.",
+					numGames, elapsedNs / 1000000, getGamesPerSecond(), getSpeedup(), wins[0], wins[1], points[0], points[1]);
+		}
+	}
+
+	/**
+	 * Play a tournament between SimpleGinRummyPlayer and Aja6082GinRummyPlayer on all available processors.
+	 * If a profile file is given, player callbacks are profiled and the profiles are written to the file,
+	 * as JSON if its name ends with .json and as CSV otherwise.
+	 * @param args optional number of games, optional tournament seed and optional profile file
+	 * @throws IOException if the profile file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		TournamentRunner runner = new TournamentRunner(SimpleGinRummyPlayer::new, Aja6082GinRummyPlayer::new);
+		if (args.length > 1)
+			runner.setSeed(Long.parseLong(args[1]));
+		runner.setProfiling(args.length > 2);
+		Result result = runner.run(numGames);
+		System.out.println(result);
+		if (args.length > 2) {
+			Files.write(Paths.get(args[2]), (args[2].endsWith(".json") ? result.profilesToJson() : result.profilesToCsv()).getBytes(StandardCharsets.UTF_8));
+			System.out.print(result.profilesToCsv());
+		}
+	}
+}
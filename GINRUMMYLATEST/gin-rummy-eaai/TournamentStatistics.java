@@ -0,0 +1,380 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the games of a tournament, collected from the events of games played in parallel (see
+ * GinRummyGame.setEventSink) without locks: wins, final scores, rounds, turns, knocks, gin and undercut counts, and
+ * histograms of the winning score margin, the rounds per game, the turns per round and the deadwood at knock.
+ *
+ * Each game (or batch of games on one thread) records through its own Recorder from newRecorder().  Counters are
+ * LongAdders shared by all recorders, which spread concurrent increments over cells instead of contending on one
+ * value, and each recorder keeps its own histograms, so recording never waits for another thread.  A recorder whose
+ * games are over is given back with release(GameEventSink), which folds its histograms into totals, so the recorders
+ * tracked stay those of the games in progress.  snapshot() sums the counters and merges the totals and the histograms
+ * of the tracked recorders while games go on; counts recorded or released during the snapshot may or may not be
+ * included, so a snapshot taken while running is a close estimate rather than a cut at one instant.
+ */
+public class TournamentStatistics {
+
+	/**
+	 * Greatest value of each histogram; greater values are counted as this value
+	 */
+	private static final int MAX_MARGIN = 255, MAX_ROUNDS = 63, MAX_TURNS = 255, MAX_KNOCK_DEADWOOD = GinRummyUtil.MAX_DEADWOOD;
+
+	/**
+	 * Counters of games, wins and final scores of each player, rounds, turns, knocks, gins, undercuts, cancelled rounds
+	 * and forfeits
+	 */
+	private final LongAdder games = new LongAdder(), rounds = new LongAdder(), turns = new LongAdder(), knocks = new LongAdder(),
+			gins = new LongAdder(), undercuts = new LongAdder(), cancelledRounds = new LongAdder(), forfeits = new LongAdder();
+	private final LongAdder[] wins = {new LongAdder(), new LongAdder()}, points = {new LongAdder(), new LongAdder()};
+
+	/**
+	 * Recorders created and not yet released, whose histograms are merged by snapshot()
+	 */
+	private final ConcurrentLinkedQueue<Recorder> recorders = new ConcurrentLinkedQueue<Recorder>();
+
+	/**
+	 * Histograms of the released recorders
+	 */
+	private final Histogram margins = new Histogram(MAX_MARGIN), roundsPerGame = new Histogram(MAX_ROUNDS),
+			turnsPerRound = new Histogram(MAX_TURNS), knockDeadwood = new Histogram(MAX_KNOCK_DEADWOOD);
+
+	/**
+	 * Return a new recorder of the events of games, to be given to one GinRummyGame with setEventSink.
+	 * @return a new recorder adding to these statistics
+	 */
+	public GameEventSink newRecorder() {
+		Recorder recorder = new Recorder();
+		recorders.add(recorder);
+		return recorder;
+	}
+
+	/**
+	 * Release a recorder whose game will record no more events, e.g. at the end of a batch of games: fold its
+	 * histograms into the totals and stop tracking it.  Recorders not from newRecorder() or already released are
+	 * ignored.
+	 * @param recorder recorder returned by newRecorder()
+	 */
+	public void release(GameEventSink recorder) {
+		if (!recorders.remove(recorder))
+			return;
+		Recorder released = (Recorder) recorder;
+		margins.add(released.margins);
+		roundsPerGame.add(released.roundsPerGame);
+		turnsPerRound.add(released.turnsPerRound);
+		knockDeadwood.add(released.knockDeadwood);
+	}
+
+	/**
+	 * Return the statistics recorded so far.  Recording may continue during the call.
+	 * @return a snapshot of the statistics
+	 */
+	public Snapshot snapshot() {
+		Snapshot snapshot = new Snapshot();
+		snapshot.margins.add(margins);
+		snapshot.roundsPerGame.add(roundsPerGame);
+		snapshot.turnsPerRound.add(turnsPerRound);
+		snapshot.knockDeadwood.add(knockDeadwood);
+		for (Recorder recorder : recorders) {
+			snapshot.margins.add(recorder.margins);
+			snapshot.roundsPerGame.add(recorder.roundsPerGame);
+			snapshot.turnsPerRound.add(recorder.turnsPerRound);
+			snapshot.knockDeadwood.add(recorder.knockDeadwood);
+		}
+		snapshot.games = games.sum();
+		for (int i = 0; i < 2; i++) {
+			snapshot.wins[i] = wins[i].sum();
+			snapshot.points[i] = points[i].sum();
+		}
+		snapshot.rounds = rounds.sum();
+		snapshot.turns = turns.sum();
+		snapshot.knocks = knocks.sum();
+		snapshot.gins = gins.sum();
+		snapshot.undercuts = undercuts.sum();
+		snapshot.cancelledRounds = cancelledRounds.sum();
+		snapshot.forfeits = forfeits.sum();
+		return snapshot;
+	}
+
+	/**
+	 * Histogram of the integer values from 0 to a greatest value, one bucket per value.  Buckets are atomic, so a
+	 * histogram can be read and merged while another thread records into it, and histograms merge by adding counts.
+	 */
+	public static class Histogram {
+		/**
+		 * Number of recorded values equal to each bucket index
+		 */
+		private final AtomicLongArray counts;
+
+		/**
+		 * Create an empty histogram of the values from 0 to the given greatest value.
+		 * @param maxValue greatest value; greater values are recorded as this value
+		 */
+		public Histogram(int maxValue) {
+			counts = new AtomicLongArray(maxValue + 1);
+		}
+
+		/**
+		 * Record a value.  Negative values are recorded as 0 and values above the greatest value as the greatest value.
+		 * @param value value to record
+		 */
+		public void record(int value) {
+			counts.getAndIncrement(Math.max(0, Math.min(value, counts.length() - 1)));
+		}
+
+		/**
+		 * Add the recorded values of another histogram of the same range to this one.
+		 * @param other other histogram
+		 */
+		public void add(Histogram other) {
+			for (int i = 0; i < counts.length(); i++)
+				counts.getAndAdd(i, other.counts.get(i));
+		}
+
+		/**
+		 * Return the number of recorded values.
+		 * @return the number of recorded values
+		 */
+		public long getCount() {
+			long count = 0;
+			for (int i = 0; i < counts.length(); i++)
+				count += counts.get(i);
+			return count;
+		}
+
+		/**
+		 * Return the number of recorded values equal to a value.
+		 * @param value value
+		 * @return the number of recorded values equal to the value
+		 */
+		public long getCount(int value) {
+			return counts.get(value);
+		}
+
+		/**
+		 * Return the mean of the recorded values, or 0 if no values are recorded.
+		 * @return the mean of the recorded values
+		 */
+		public double getMean() {
+			long count = 0, sum = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				long n = counts.get(i);
+				count += n;
+				sum += n * i;
+			}
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * Return the least value such that the given percentage of recorded values are at most that value, or 0 if no
+		 * values are recorded.
+		 * @param percentile percentage between 0 and 100
+		 * @return the value at the percentile
+		 */
+		public int getValueAtPercentile(double percentile) {
+			long total = getCount();
+			if (total == 0)
+				return 0;
+			long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+			long count = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				count += counts.get(i);
+				if (count >= rank)
+					return i;
+			}
+			return counts.length() - 1;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d", getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99));
+		}
+	}
+
+	/**
+	 * Statistics recorded up to the time of a snapshot, indexed by player number where applicable
+	 */
+	public static class Snapshot {
+		/**
+		 * Number of games ended, and games won by each player
+		 */
+		public long games;
+		public final long[] wins = new long[2];
+		/**
+		 * Total final game scores of each player
+		 */
+		public final long[] points = new long[2];
+		/**
+		 * Number of rounds ended and of turns taken in them, counting declines of the initial face-up card
+		 */
+		public long rounds, turns;
+		/**
+		 * Number of knocks, of gins and undercuts among them, of rounds cancelled without a knock, and of forfeits
+		 */
+		public long knocks, gins, undercuts, cancelledRounds, forfeits;
+		/**
+		 * Final score margin of the winner of each game not forfeited
+		 */
+		public final Histogram margins = new Histogram(MAX_MARGIN);
+		/**
+		 * Rounds of each game not forfeited
+		 */
+		public final Histogram roundsPerGame = new Histogram(MAX_ROUNDS);
+		/**
+		 * Turns of each round
+		 */
+		public final Histogram turnsPerRound = new Histogram(MAX_TURNS);
+		/**
+		 * Deadwood points of the knocking player after melding, before layoffs
+		 */
+		public final Histogram knockDeadwood = new Histogram(MAX_KNOCK_DEADWOOD);
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return String.format("Games: %d (P0 won %d, P1 won %d, %d forfeits). Points: P0:%d, P1:%d.\n"
+					+ "Rounds: %d (%d knocks, %d gins, %d undercuts, %d cancelled), %d turns.\n"
+					+ "Winning margin:   %s\nRounds per game:  %s\nTurns per round:  %s\nKnock deadwood:   %s",
+					games, wins[0], wins[1], forfeits, points[0], points[1],
+					rounds, knocks, gins, undercuts, cancelledRounds, turns,
+					margins, roundsPerGame, turnsPerRound, knockDeadwood);
+		}
+	}
+
+	/**
+	 * Recorder of the events of the games of one GinRummyGame, following hands to measure the deadwood at knock.
+	 * Histograms are the recorder's own; counters are those of the statistics.
+	 */
+	private class Recorder implements GameEventSink {
+		private final Histogram margins = new Histogram(MAX_MARGIN), roundsPerGame = new Histogram(MAX_ROUNDS),
+				turnsPerRound = new Histogram(MAX_TURNS), knockDeadwood = new Histogram(MAX_KNOCK_DEADWOOD);
+		/**
+		 * Hands of the current round as bitstrings, indexed by player number
+		 */
+		private final long[] hands = new long[2];
+		/**
+		 * Scores at the end of the last round, indexed by player number
+		 */
+		private final int[] scores = new int[2];
+		/**
+		 * Knocking player of the current round, or -1; deadwood of the knock; turns of the round; rounds of the game
+		 */
+		private int knocker, deadwood, roundTurns, gameRounds;
+		/**
+		 * Whether or not a player forfeited the current game, which then has no final margin or number of rounds
+		 */
+		private boolean forfeited;
+
+		@Override
+		public void gameStart(long gameSeed) {
+			scores[0] = scores[1] = 0;
+			gameRounds = 0;
+			forfeited = false;
+		}
+
+		@Override
+		public void roundStart(int startingPlayer, long hand0, long hand1, int faceUpCard) {
+			hands[0] = hand0;
+			hands[1] = hand1;
+			knocker = -1;
+			roundTurns = 0;
+		}
+
+		@Override
+		public void decline(int player, int cardId) {
+			roundTurns++;
+		}
+
+		@Override
+		public void draw(int player, int cardId, boolean faceUp) {
+			hands[player] |= 1L << cardId;
+		}
+
+		@Override
+		public void discard(int player, int cardId) {
+			hands[player] &= ~(1L << cardId);
+			roundTurns++;
+		}
+
+		@Override
+		public void knock(int player, long[] melds, int numMelds) {
+			long unmelded = hands[player];
+			for (int i = 0; i < numMelds; i++)
+				unmelded &= ~melds[i];
+			knocker = player;
+			deadwood = GinRummyUtil.getDeadwoodPoints(unmelded);
+			knockDeadwood.record(deadwood);
+			knocks.increment();
+		}
+
+		@Override
+		public void opponentMelds(int player, long[] melds, int numMelds) {
+		}
+
+		@Override
+		public void layoff(int player, int cardId, long meld) {
+		}
+
+		@Override
+		public void roundEnd(int[] scores) {
+			gameRounds++;
+			rounds.increment();
+			turns.add(roundTurns);
+			turnsPerRound.record(roundTurns);
+			if (knocker < 0)
+				cancelledRounds.increment();
+			else if (deadwood == 0)
+				gins.increment();
+			else if (scores[1 - knocker] > this.scores[1 - knocker])
+				undercuts.increment();
+			this.scores[0] = scores[0];
+			this.scores[1] = scores[1];
+		}
+
+		@Override
+		public void forfeit(int player) {
+			forfeits.increment();
+			forfeited = true;
+		}
+
+		@Override
+		public void gameEnd(int winner) {
+			games.increment();
+			wins[winner].increment();
+			points[0].add(scores[0]);
+			points[1].add(scores[1]);
+			if (!forfeited) {
+				margins.record(scores[winner] - scores[1 - winner]);
+				roundsPerGame.record(gameRounds);
+			}
+		}
+	}
+
+	/**
+	 * Play a tournament between SimpleGinRummyPlayer and Aja6082GinRummyPlayer on all available processors and print
+	 * a snapshot of its statistics every second while it runs, and at the end.
+	 * @param args optional number of games and optional tournament seed
+	 * @throws InterruptedException if interrupted while waiting for the tournament
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		TournamentStatistics statistics = new TournamentStatistics();
+		TournamentRunner runner = new TournamentRunner(SimpleGinRummyPlayer::new, Aja6082GinRummyPlayer::new);
+		if (args.length > 1)
+			runner.setSeed(Long.parseLong(args[1]));
+		runner.setStatistics(statistics);
+		Thread tournament = new Thread(() -> System.out.println(runner.run(numGames)));
+		tournament.start();
+		while (tournament.isAlive()) {
+			tournament.join(1000);
+			if (tournament.isAlive())
+				System.out.printf("%d games so far.\n", statistics.snapshot().games);
+		}
+		System.out.println(statistics.snapshot());
+	}
+}
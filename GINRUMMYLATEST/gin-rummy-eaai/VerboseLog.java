@@ -0,0 +1,280 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous printf-style log for verbose game output.
+ *
+ * printf stores the format and arguments in a bounded ring buffer and returns; a background daemon thread takes
+ * all buffered records at once, formats them and writes them to the output stream in one batch.  Producers block
+ * only while the ring buffer is full.  A record that fails to format is logged as its exception; should the writer
+ * thread still die, printf and flush throw IllegalStateException instead of waiting for it.  Arguments are formatted on the writer thread, so they must not change after
+ * printf: cards(), melds() and hand() wrap card bitstrings in immutable arguments that build their card lists (and,
+ * for hand(), solve the hand's best melds) only when formatted.  Records of one producer thread are written in order.
+ *
+ * The default log writes to System.out and is flushed on JVM shutdown; call flush() before printing to System.out
+ * directly so that output is not interleaved.
+ */
+public class VerboseLog {
+
+	/**
+	 * Log levels: no output, game play, and game play with each player's best melds and deadwood after each discard
+	 */
+	public static final int NONE = 0, PLAY = 1, DIAGNOSTIC = 2;
+
+	/**
+	 * Default number of records of the ring buffer
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	/**
+	 * Default log writing to System.out, created on first use
+	 */
+	private static VerboseLog defaultLog = null;
+
+	/**
+	 * Return the default log, writing to System.out.
+	 * @return the default log
+	 */
+	public static synchronized VerboseLog getDefault() {
+		if (defaultLog == null) {
+			VerboseLog log = new VerboseLog(System.out, DEFAULT_CAPACITY);
+			Runtime.getRuntime().addShutdownHook(new Thread(log::flush, "verbose-log-shutdown"));
+			defaultLog = log;
+		}
+		return defaultLog;
+	}
+
+	/**
+	 * Output stream written by the writer thread
+	 */
+	private final PrintStream out;
+
+	/**
+	 * Ring buffer of formats and argument arrays; record i is at index i % capacity
+	 */
+	private final String[] formats;
+	private final Object[][] args;
+
+	/**
+	 * Number of records put and number of records taken by the writer thread
+	 */
+	private long putCount = 0, takeCount = 0;
+
+	/**
+	 * Number of records written to the output stream
+	 */
+	private long writtenCount = 0;
+
+	/**
+	 * Throwable that ended the writer thread, or null while it runs
+	 */
+	private Throwable writerFailure = null;
+
+	/**
+	 * Lock guarding the ring buffer and counts, with conditions signaling records put, space freed and records written
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition(), notFull = lock.newCondition(), written = lock.newCondition();
+
+	/**
+	 * Create a log writing to the given stream through a ring buffer of the given number of records, and start its
+	 * writer thread.
+	 * @param out output stream
+	 * @param capacity number of records of the ring buffer
+	 */
+	public VerboseLog(PrintStream out, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.out = out;
+		formats = new String[capacity];
+		args = new Object[capacity][];
+		Thread writer = new Thread(this::writeRecords, "verbose-log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Log a formatted record, as System.out.printf would print it.  Blocks while the ring buffer is full.
+	 * @param format format string
+	 * @param args arguments, not changed afterwards
+	 * @throws IllegalStateException if the writer thread died
+	 */
+	public void printf(String format, Object... args) {
+		lock.lock();
+		try {
+			checkWriter();
+			while (putCount - takeCount == formats.length) {
+				notFull.awaitUninterruptibly();
+				checkWriter();
+			}
+			int i = (int) (putCount % formats.length);
+			formats[i] = format;
+			this.args[i] = args;
+			if (putCount++ == takeCount)
+				notEmpty.signal();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until all records logged so far are written and flush the output stream.
+	 * @throws IllegalStateException if the writer thread died
+	 */
+	public void flush() {
+		lock.lock();
+		try {
+			long target = putCount;
+			while (writtenCount < target) {
+				checkWriter();
+				written.awaitUninterruptibly();
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Throw if the writer thread died.  Called holding the lock.
+	 * @throws IllegalStateException if the writer thread died
+	 */
+	private void checkWriter() {
+		if (writerFailure != null)
+			throw new IllegalStateException("verbose log writer failed", writerFailure);
+	}
+
+	/**
+	 * Writer thread: write records until a failure outside the formatting of a record, then record the failure and
+	 * wake waiting producers so that they fail instead of blocking forever.
+	 */
+	private void writeRecords() {
+		try {
+			writeBatches();
+		}
+		catch (Throwable e) {
+			lock.lock();
+			try {
+				writerFailure = e;
+				notFull.signalAll();
+				written.signalAll();
+			}
+			finally {
+				lock.unlock();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Writer thread loop: take all buffered records, format them outside the lock and write them in one batch.
+	 */
+	private void writeBatches() {
+		int capacity = formats.length;
+		String[] batchFormats = new String[capacity];
+		Object[][] batchArgs = new Object[capacity][];
+		StringBuilder sb = new StringBuilder();
+		Formatter formatter = new Formatter(sb);
+		while (true) {
+			int n;
+			lock.lock();
+			try {
+				while (putCount == takeCount)
+					notEmpty.awaitUninterruptibly();
+				n = (int) (putCount - takeCount);
+				for (int k = 0; k < n; k++) {
+					int i = (int) ((takeCount + k) % capacity);
+					batchFormats[k] = formats[i];
+					batchArgs[k] = args[i];
+					formats[i] = null;
+					args[i] = null;
+				}
+				takeCount += n;
+				notFull.signalAll();
+			}
+			finally {
+				lock.unlock();
+			}
+			for (int k = 0; k < n; k++) {
+				try {
+					formatter.format(batchFormats[k], batchArgs[k]);
+				}
+				catch (Throwable e) { // a bad record, e.g. a toString overflowing the stack, must not stop the log
+					sb.append(e).append(System.lineSeparator());
+				}
+				batchFormats[k] = null;
+				batchArgs[k] = null;
+			}
+			out.print(sb);
+			sb.setLength(0);
+			lock.lock();
+			try {
+				writtenCount += n;
+				written.signalAll();
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Return an argument formatted as the list of cards of a card set bitstring.
+	 * @param cards card set bitstring
+	 * @return an argument formatted as the list of cards
+	 */
+	public static Object cards(long cards) {
+		return new Object() {
+			public String toString() {
+				return GinRummyUtil.bitstringToCards(cards).toString();
+			}
+		};
+	}
+
+	/**
+	 * Return an argument formatted as the list of card melds of meld bitstrings, copying the bitstrings.
+	 * @param melds meld bitstrings in the first numMelds entries
+	 * @param numMelds number of melds
+	 * @return an argument formatted as the list of card melds
+	 */
+	public static Object melds(long[] melds, int numMelds) {
+		long[] copy = Arrays.copyOf(melds, numMelds);
+		return new Object() {
+			public String toString() {
+				StringBuilder sb = new StringBuilder("[");
+				for (int i = 0; i < copy.length; i++)
+					sb.append(i == 0 ? "" : ", ").append(GinRummyUtil.bitstringToCards(copy[i]));
+				return sb.append(']').toString();
+			}
+		};
+	}
+
+	/**
+	 * Return an argument formatted as a hand's best melds followed by its unmelded cards, and its deadwood,
+	 * e.g. "[[AC, 2C, 3C], [5H, 9S]] with 14 deadwood".  The hand is solved only when formatted.
+	 * @param hand card set bitstring of the hand
+	 * @return an argument formatted as the hand's best melds and deadwood
+	 */
+	public static Object hand(long hand) {
+		return new Object() {
+			public String toString() {
+				long[] bestMelds = new long[GinRummyUtil.MAX_MELDS];
+				int deadwood = GinRummyUtil.getBestMeldBitstrings(hand, bestMelds);
+				long unmelded = hand;
+				StringBuilder sb = new StringBuilder("[");
+				for (int i = 0; i < bestMelds.length && bestMelds[i] != 0L; i++) {
+					sb.append(GinRummyUtil.bitstringToCards(bestMelds[i])).append(", ");
+					unmelded &= ~bestMelds[i];
+				}
+				if (sb.length() == 1) // no melds: the unmelded cards alone
+					return GinRummyUtil.bitstringToCards(unmelded) + " with " + deadwood + " deadwood";
+				return sb.append(GinRummyUtil.bitstringToCards(unmelded)).append("] with ").append(deadwood).append(" deadwood").toString();
+			}
+		};
+	}
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import ginrummy.benchmarks.Workloads;
+
+/**
+ * Default-package implementation of the benchmark workloads, calling the game classes directly.
+ * See ginrummy.benchmarks.Workloads.
+ */
+public class BenchmarkWorkloads implements Workloads {
+	/**
+	 * Number of cards known to have been discarded in each corpus entry
+	 */
+	private static final int NUM_DISCARDS = 6;
+
+	private ArrayList<ArrayList<Card>> hands;
+	private long[] handBitstrings;
+	private Card[] drawnCards;
+	private ArrayList<ArrayList<Card>> discards;
+	private ArrayList<ArrayList<ArrayList<Card>>> bestMelds;
+	private final ArrayList<Card> noCards = new ArrayList<Card>();
+	private GinRummyGame game;
+
+	@Override
+	public void setUp(long seed, int size) {
+		Random random = new Random(seed);
+		hands = new ArrayList<ArrayList<Card>>();
+		handBitstrings = new long[size];
+		drawnCards = new Card[size];
+		discards = new ArrayList<ArrayList<Card>>();
+		bestMelds = new ArrayList<ArrayList<ArrayList<Card>>>();
+		ArrayList<Card> deck = new ArrayList<Card>();
+		Collections.addAll(deck, Card.allCards);
+		for (int i = 0; i < size; i++) {
+			Collections.shuffle(deck, random);
+			ArrayList<Card> hand = new ArrayList<Card>(deck.subList(0, 10));
+			hands.add(hand);
+			handBitstrings[i] = GinRummyUtil.cardsToBitstring(hand);
+			drawnCards[i] = deck.get(10);
+			discards.add(new ArrayList<Card>(deck.subList(11, 11 + NUM_DISCARDS)));
+			ArrayList<ArrayList<ArrayList<Card>>> bestMeldSets = GinRummyUtil.cardsToBestMeldSets(hand);
+			bestMelds.add(bestMeldSets.isEmpty() ? new ArrayList<ArrayList<Card>>() : bestMeldSets.get(0));
+		}
+		GinRummyGame.setPlayVerbose(false);
+		game = new GinRummyGame(new SimpleGinRummyPlayer(), new Aja6082GinRummyPlayer());
+	}
+
+	@Override
+	public void setDeadwoodCacheEnabled(boolean enabled) {
+		GinRummyUtil.setDeadwoodCacheEnabled(enabled);
+	}
+
+	@Override
+	public void setSuitMeldSolverEnabled(boolean enabled) {
+		GinRummyUtil.setSuitMeldSolverEnabled(enabled);
+	}
+
+	@Override
+	public Object cardsToBestMeldSets(int index) {
+		return GinRummyUtil.cardsToBestMeldSets(hands.get(index));
+	}
+
+	@Override
+	public Object cardsToAllMeldBitstrings(int index) {
+		return GinRummyUtil.cardsToAllMeldBitstrings(hands.get(index));
+	}
+
+	@Override
+	public int getDeadwoodPoints(int index) {
+		return GinRummyUtil.getDeadwoodPoints(bestMelds.get(index), hands.get(index));
+	}
+
+	@Override
+	public int getBestDeadwood(int index) {
+		return GinRummyUtil.getBestDeadwood(handBitstrings[index]);
+	}
+
+	@Override
+	public int checkMeldAndDeadwoodDrop(int index) {
+		return MyGinRummyUtil.checkMeldAndDeadwoodDrop(hands.get(index), drawnCards[index]);
+	}
+
+	@Override
+	public int averageDeadwoodAfterDraw(int index) {
+		return MyGinRummyUtil.averageDeadwoodAfterDraw(hands.get(index), discards.get(index), noCards);
+	}
+
+	@Override
+	public int playGame(long seed) {
+		return game.play(seed);
+	}
+}
@@ -0,0 +1,50 @@
+package ginrummy.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Games per second of SimpleGinRummyPlayer against Aja6082GinRummyPlayer.  Games are dealt from a seeded
+ * sequence of game seeds, so every run plays the same games.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameBenchmark {
+
+	/**
+	 * Random seed of the sequence of game seeds
+	 */
+	@Param("2020")
+	public long seed;
+
+	private Workloads workloads;
+	private SplittableRandom gameSeeds;
+
+	@Setup
+	public void setUp() {
+		workloads = Workloads.create();
+		workloads.setUp(seed, 1);
+		gameSeeds = new SplittableRandom(seed);
+	}
+
+	@Benchmark
+	public int playGame() {
+		return workloads.playGame(gameSeeds.nextLong());
+	}
+}
@@ -0,0 +1,101 @@
+package ginrummy.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-hand costs of GinRummyUtil and MyGinRummyUtil on a fixed corpus of seeded random 10-card hands.
+ * Each invocation evaluates the next hand of the corpus.  Run with -prof gc to see allocation per call (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandBenchmark {
+
+	/**
+	 * Number of hands in the corpus
+	 */
+	private static final int CORPUS_SIZE = 1024;
+
+	/**
+	 * Random seed of the corpus
+	 */
+	@Param("2020")
+	public long seed;
+
+	/**
+	 * Whether or not GinRummyUtil caches best deadwood by hand bitstring
+	 */
+	@Param({"false", "true"})
+	public boolean deadwoodCache;
+
+	/**
+	 * Whether or not GinRummyUtil solves melds with SuitMeldSolver instead of branch and bound
+	 */
+	@Param({"false", "true"})
+	public boolean suitMeldSolver;
+
+	private Workloads workloads;
+	private int index;
+
+	@Setup
+	public void setUp() {
+		workloads = Workloads.create();
+		workloads.setUp(seed, CORPUS_SIZE);
+		workloads.setDeadwoodCacheEnabled(deadwoodCache);
+		workloads.setSuitMeldSolverEnabled(suitMeldSolver);
+	}
+
+	/**
+	 * Return the index of the next hand of the corpus.
+	 * @return the index of the next hand of the corpus
+	 */
+	private int nextIndex() {
+		index = (index + 1) & (CORPUS_SIZE - 1);
+		return index;
+	}
+
+	@Benchmark
+	public Object cardsToBestMeldSets() {
+		return workloads.cardsToBestMeldSets(nextIndex());
+	}
+
+	@Benchmark
+	public Object cardsToAllMeldBitstrings() {
+		return workloads.cardsToAllMeldBitstrings(nextIndex());
+	}
+
+	@Benchmark
+	public int getDeadwoodPoints() {
+		return workloads.getDeadwoodPoints(nextIndex());
+	}
+
+	@Benchmark
+	public int getBestDeadwood() {
+		return workloads.getBestDeadwood(nextIndex());
+	}
+
+	@Benchmark
+	public int checkMeldAndDeadwoodDrop() {
+		return workloads.checkMeldAndDeadwoodDrop(nextIndex());
+	}
+
+	@Benchmark
+	public int averageDeadwoodAfterDraw() {
+		return workloads.averageDeadwoodAfterDraw(nextIndex());
+	}
+}
@@ -0,0 +1,98 @@
+package ginrummy.benchmarks;
+
+/**
+ * Benchmark workloads over the default-package game classes.
+ *
+ * JMH benchmarks must be in a named package, which cannot refer to default-package classes, so benchmarks call the
+ * game code through this interface.  The implementation, BenchmarkWorkloads, is a default-package class loaded by
+ * name.  Workloads operate on a corpus of seeded random hands selected by index, so each benchmark invocation
+ * measures a single call on a fixed, reproducible input.
+ */
+public interface Workloads {
+
+	/**
+	 * Name of the default-package implementation class
+	 */
+	String IMPLEMENTATION = "BenchmarkWorkloads";
+
+	/**
+	 * Create the default-package implementation of the workloads.
+	 * @return the workloads
+	 */
+	static Workloads create() {
+		try {
+			return (Workloads) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("cannot create " + IMPLEMENTATION, e);
+		}
+	}
+
+	/**
+	 * Deal the hand corpus: for each index, a 10-card hand, an 11th drawn card and cards known to have been discarded.
+	 * @param seed random seed of the corpus
+	 * @param size number of hands
+	 */
+	void setUp(long seed, int size);
+
+	/**
+	 * Set whether or not GinRummyUtil caches best deadwood by hand bitstring.
+	 * @param enabled whether or not GinRummyUtil caches best deadwood
+	 */
+	void setDeadwoodCacheEnabled(boolean enabled);
+
+	/**
+	 * Set whether or not GinRummyUtil solves melds with SuitMeldSolver instead of branch and bound.
+	 * @param enabled whether or not SuitMeldSolver is used
+	 */
+	void setSuitMeldSolverEnabled(boolean enabled);
+
+	/**
+	 * GinRummyUtil.cardsToBestMeldSets of the 10-card hand at the given index.
+	 * @param index hand index
+	 * @return the best meld sets
+	 */
+	Object cardsToBestMeldSets(int index);
+
+	/**
+	 * GinRummyUtil.cardsToAllMeldBitstrings of the 10-card hand at the given index.
+	 * @param index hand index
+	 * @return all meld bitstrings of the hand
+	 */
+	Object cardsToAllMeldBitstrings(int index);
+
+	/**
+	 * GinRummyUtil.getDeadwoodPoints of precomputed best melds and the 10-card hand at the given index.
+	 * @param index hand index
+	 * @return the deadwood points
+	 */
+	int getDeadwoodPoints(int index);
+
+	/**
+	 * GinRummyUtil.getBestDeadwood of the 10-card hand bitstring at the given index.
+	 * @param index hand index
+	 * @return the best deadwood points
+	 */
+	int getBestDeadwood(int index);
+
+	/**
+	 * MyGinRummyUtil.checkMeldAndDeadwoodDrop of the 10-card hand and drawn card at the given index.
+	 * @param index hand index
+	 * @return the drop in deadwood
+	 */
+	int checkMeldAndDeadwoodDrop(int index);
+
+	/**
+	 * MyGinRummyUtil.averageDeadwoodAfterDraw of the 10-card hand and known discards at the given index.
+	 * @param index hand index
+	 * @return the average deadwood after a draw
+	 */
+	int averageDeadwoodAfterDraw(int index);
+
+	/**
+	 * Play a game of SimpleGinRummyPlayer (player 0) against Aja6082GinRummyPlayer (player 1) dealt from the given seed.
+	 * @param seed random seed of the game
+	 * @return the winning player number
+	 */
+	int playGame(long seed);
+}